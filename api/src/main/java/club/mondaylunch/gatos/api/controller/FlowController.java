@@ -1,8 +1,13 @@
 package club.mondaylunch.gatos.api.controller;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
 import javax.validation.Valid;
@@ -11,11 +16,14 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import jakarta.servlet.http.HttpServletResponse;
 import org.hibernate.validator.constraints.Length;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PatchMapping;
@@ -24,22 +32,30 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import club.mondaylunch.gatos.api.ApiApplication;
 import club.mondaylunch.gatos.api.exception.InvalidBodyException;
+import club.mondaylunch.gatos.api.exception.flow.FlowConflictException;
 import club.mondaylunch.gatos.api.exception.flow.FlowExecutionException;
+import club.mondaylunch.gatos.api.exception.flow.FlowNotFoundException;
 import club.mondaylunch.gatos.api.exception.flow.InvalidConnectionException;
 import club.mondaylunch.gatos.api.exception.flow.InvalidNodeSettingException;
 import club.mondaylunch.gatos.api.exception.flow.InvalidNodeTypeException;
 import club.mondaylunch.gatos.api.exception.flow.NodeNotFoundException;
+import club.mondaylunch.gatos.api.exception.flow.RunNotFoundException;
 import club.mondaylunch.gatos.api.repository.FlowRepository;
+import club.mondaylunch.gatos.api.repository.FlowRunRepository;
 import club.mondaylunch.gatos.api.repository.UserRepository;
 import club.mondaylunch.gatos.core.codec.SerializationUtils;
+import club.mondaylunch.gatos.core.collection.FlowCollection;
 import club.mondaylunch.gatos.core.data.DataBox;
+import club.mondaylunch.gatos.core.executor.ExecutionTrace;
 import club.mondaylunch.gatos.core.executor.GraphExecutor;
 import club.mondaylunch.gatos.core.graph.Graph;
 import club.mondaylunch.gatos.core.graph.GraphValidityError;
+import club.mondaylunch.gatos.core.graph.Node;
 import club.mondaylunch.gatos.core.graph.NodeMetadata;
 import club.mondaylunch.gatos.core.graph.WebhookStartNodeInput;
 import club.mondaylunch.gatos.core.graph.connector.NodeConnection;
@@ -52,13 +68,24 @@ import club.mondaylunch.gatos.core.models.User;
 @RestController
 @RequestMapping("api/v1/flows")
 public class FlowController {
+    private static final int BATCH_PARALLELISM = 16;
+    private static final int MAX_BATCH_SIZE = 1000;
+    private static final long MAX_RUN_WAIT_MILLIS = 30_000;
+    /**
+     * The header graph edits take the expected revision of the flow in, and
+     * return its new revision in.
+     */
+    private static final String REVISION_HEADER = "x-flow-revision";
+
     private final FlowRepository flowRepository;
     private final UserRepository userRepository;
+    private final FlowRunRepository flowRunRepository;
 
     @Autowired
-    public FlowController(FlowRepository flowRepository, UserRepository userRepository) {
+    public FlowController(FlowRepository flowRepository, UserRepository userRepository, FlowRunRepository flowRunRepository) {
         this.flowRepository = flowRepository;
         this.userRepository = userRepository;
+        this.flowRunRepository = flowRunRepository;
     }
 
     /**
@@ -164,10 +191,7 @@ public class FlowController {
         @PathVariable UUID nodeId
     ) {
         User user = this.userRepository.getOrCreateUser(userEmail);
-        var flow = this.flowRepository.getFlow(user, flowId);
-        var graph = flow.getGraph();
-        var node = graph.getNode(nodeId)
-            .orElseThrow(NodeNotFoundException::new);
+        var node = this.flowRepository.getNode(user, flowId, nodeId);
         return SerializationUtils.toJson(node);
     }
 
@@ -179,17 +203,16 @@ public class FlowController {
     @PostMapping(value = "{flowId}/nodes", produces = MediaType.APPLICATION_JSON_VALUE)
     public String addNode(
         @RequestHeader("x-user-email") String userEmail,
+        @RequestHeader(name = REVISION_HEADER, required = false) @Nullable Long expectedRevision,
         @PathVariable UUID flowId,
-        @Valid @RequestBody BodyAddNode body
+        @Valid @RequestBody BodyAddNode body,
+        HttpServletResponse response
     ) {
         User user = this.userRepository.getOrCreateUser(userEmail);
         var flow = this.flowRepository.getFlow(user, flowId);
-        var graph = flow.getGraph();
-        var nodeType = NodeType.REGISTRY.get(body.nodeType)
-            .orElseThrow(InvalidNodeTypeException::new);
-        graph.addNode(nodeType);
+        addNode(flow.getGraph(), body.nodeType);
         var changes = flow.getGraph().observer().getChanges();
-        Flow.objects.updateGraph(flow);
+        saveGraph(flow, expectedRevision, response);
         return SerializationUtils.toJson(changes);
     }
 
@@ -201,9 +224,11 @@ public class FlowController {
     @PatchMapping(value = "{flowId}/nodes/{nodeId}/settings", produces = MediaType.APPLICATION_JSON_VALUE)
     public String modifyNodeSettings(
         @RequestHeader("x-user-email") String userEmail,
+        @RequestHeader(name = REVISION_HEADER, required = false) @Nullable Long expectedRevision,
         @PathVariable UUID flowId,
         @PathVariable UUID nodeId,
-        @RequestBody String body
+        @RequestBody String body,
+        HttpServletResponse response
     ) {
         User user = this.userRepository.getOrCreateUser(userEmail);
         var flow = this.flowRepository.getFlow(user, flowId);
@@ -211,27 +236,9 @@ public class FlowController {
         if (!graph.containsNode(nodeId)) {
             throw new NodeNotFoundException();
         }
-        Map<String, DataBox<?>> newSettings;
-        try {
-            @SuppressWarnings("unchecked")
-            var type = (Class<DataBox<?>>) (Object) DataBox.class;
-            newSettings = SerializationUtils.readMap(body, Function.identity(), type);
-        } catch (Exception e) {
-            throw new InvalidBodyException();
-        }
-        for (var entry : newSettings.entrySet()) {
-            var key = entry.getKey();
-            var dataBox = entry.getValue();
-            graph.modifyNode(nodeId, node -> {
-                try {
-                    return node.modifySetting(key, dataBox);
-                } catch (Exception e) {
-                    throw new InvalidNodeSettingException(e.getMessage());
-                }
-            });
-        }
+        modifySettings(graph, nodeId, readSettings(body));
         var changes = flow.getGraph().observer().getChanges();
-        Flow.objects.updateGraph(flow);
+        saveGraph(flow, expectedRevision, response);
         return SerializationUtils.toJson(changes);
     }
 
@@ -243,15 +250,17 @@ public class FlowController {
     @DeleteMapping("{flowId}/nodes/{nodeId}")
     public String deleteNode(
         @RequestHeader("x-user-email") String userEmail,
+        @RequestHeader(name = REVISION_HEADER, required = false) @Nullable Long expectedRevision,
         @PathVariable UUID flowId,
-        @PathVariable UUID nodeId
+        @PathVariable UUID nodeId,
+        HttpServletResponse response
     ) {
         User user = this.userRepository.getOrCreateUser(userEmail);
         var flow = this.flowRepository.getFlow(user, flowId);
         var graph = flow.getGraph();
         graph.removeNode(nodeId);
         var changes = flow.getGraph().observer().getChanges();
-        Flow.objects.updateGraph(flow);
+        saveGraph(flow, expectedRevision, response);
         return SerializationUtils.toJson(changes);
     }
 
@@ -267,13 +276,8 @@ public class FlowController {
         @PathVariable UUID nodeId
     ) {
         User user = this.userRepository.getOrCreateUser(userEmail);
-        var flow = this.flowRepository.getFlow(user, flowId);
-        var graph = flow.getGraph();
-        if (!graph.containsNode(nodeId)) {
-            throw new NodeNotFoundException();
-        }
         var connectionsJson = new JsonArray();
-        var connections = graph.getConnectionsForNode(nodeId);
+        var connections = this.flowRepository.getConnections(user, flowId, nodeId);
         for (var connection : connections) {
             var connectionJsonString = SerializationUtils.toJson(connection);
             var connectionJson = JsonParser.parseString(connectionJsonString);
@@ -299,8 +303,10 @@ public class FlowController {
     @PostMapping(value = "{flowId}/connections", produces = MediaType.APPLICATION_JSON_VALUE)
     public String addConnection(
         @RequestHeader("x-user-email") String userEmail,
+        @RequestHeader(name = REVISION_HEADER, required = false) @Nullable Long expectedRevision,
         @PathVariable UUID flowId,
-        @RequestBody BodyConnection body
+        @RequestBody BodyConnection body,
+        HttpServletResponse response
     ) {
         User user = this.userRepository.getOrCreateUser(userEmail);
         var flow = this.flowRepository.getFlow(user, flowId);
@@ -312,7 +318,7 @@ public class FlowController {
             throw new InvalidConnectionException(e.getMessage());
         }
         var changes = flow.getGraph().observer().getChanges();
-        Flow.objects.updateGraph(flow);
+        saveGraph(flow, expectedRevision, response);
         return SerializationUtils.toJson(changes);
     }
 
@@ -324,8 +330,10 @@ public class FlowController {
     @DeleteMapping("{flowId}/connections")
     public String deleteConnection(
         @RequestHeader("x-user-email") String userEmail,
+        @RequestHeader(name = REVISION_HEADER, required = false) @Nullable Long expectedRevision,
         @PathVariable UUID flowId,
-        @RequestBody BodyConnection body
+        @RequestBody BodyConnection body,
+        HttpServletResponse response
     ) {
         User user = this.userRepository.getOrCreateUser(userEmail);
         var flow = this.flowRepository.getFlow(user, flowId);
@@ -337,10 +345,65 @@ public class FlowController {
             throw new InvalidConnectionException(e.getMessage());
         }
         var changes = flow.getGraph().observer().getChanges();
-        Flow.objects.updateGraph(flow);
+        saveGraph(flow, expectedRevision, response);
         return SerializationUtils.toJson(changes);
     }
 
+    private static Node addNode(Graph graph, String nodeTypeName) {
+        var nodeType = NodeType.REGISTRY.get(nodeTypeName)
+            .orElseThrow(InvalidNodeTypeException::new);
+        return graph.addNode(nodeType);
+    }
+
+    private static Map<String, DataBox<?>> readSettings(String json) {
+        try {
+            @SuppressWarnings("unchecked")
+            var type = (Class<DataBox<?>>) (Object) DataBox.class;
+            return SerializationUtils.readMap(json, Function.identity(), type);
+        } catch (Exception e) {
+            throw new InvalidBodyException();
+        }
+    }
+
+    private static void modifySettings(Graph graph, UUID nodeId, Map<String, DataBox<?>> newSettings) {
+        for (var entry : newSettings.entrySet()) {
+            var key = entry.getKey();
+            var dataBox = entry.getValue();
+            graph.modifyNode(nodeId, node -> {
+                try {
+                    return node.modifySetting(key, dataBox);
+                } catch (Exception e) {
+                    throw new InvalidNodeSettingException(e.getMessage());
+                }
+            });
+        }
+    }
+
+    /**
+     * Saves the changes made to a flow's graph, and sends the flow's new
+     * revision in the {@value #REVISION_HEADER} response header.
+     *
+     * @param flow             The flow.
+     * @param expectedRevision The revision the client made its changes to, from the {@value #REVISION_HEADER}
+     *                         request header, or null to use the revision of the flow as it was loaded.
+     * @param response         The response.
+     * @throws FlowNotFoundException If the flow was deleted, or changed owner, since it was loaded.
+     * @throws FlowConflictException If the flow is not at the expected revision.
+     */
+    private static void saveGraph(Flow flow, @Nullable Long expectedRevision, HttpServletResponse response) {
+        if (expectedRevision != null && expectedRevision != flow.getRevision()) {
+            throw new FlowConflictException();
+        }
+        try {
+            Flow.objects.updateGraph(flow);
+        } catch (FlowCollection.RevisionConflictException e) {
+            throw new FlowConflictException();
+        } catch (FlowCollection.FlowNotFoundException e) {
+            throw new FlowNotFoundException();
+        }
+        response.setHeader(REVISION_HEADER, Long.toString(flow.getRevision()));
+    }
+
     private static NodeConnection<?> createConnection(Graph graph, BodyConnection body) {
         var fromNode = graph.getNode(body.fromNodeId)
             .orElseThrow(() -> new NodeNotFoundException(body.fromNodeId));
@@ -370,12 +433,7 @@ public class FlowController {
         @PathVariable UUID nodeId
     ) {
         User user = this.userRepository.getOrCreateUser(userEmail);
-        var flow = this.flowRepository.getFlow(user, flowId);
-        var graph = flow.getGraph();
-        if (!graph.containsNode(nodeId)) {
-            throw new NodeNotFoundException();
-        }
-        var metadata = graph.getOrCreateMetadataForNode(nodeId);
+        var metadata = this.flowRepository.getMetadata(user, flowId, nodeId);
         return SerializationUtils.toJson(metadata);
     }
 
@@ -402,9 +460,11 @@ public class FlowController {
     @PatchMapping(value = "{flowId}/nodes/{nodeId}/metadata", produces = MediaType.APPLICATION_JSON_VALUE)
     public String modifyNodeMetadata(
         @RequestHeader("x-user-email") String userEmail,
+        @RequestHeader(name = REVISION_HEADER, required = false) @Nullable Long expectedRevision,
         @PathVariable UUID flowId,
         @PathVariable UUID nodeId,
-        @RequestBody NodeMetadata metadata
+        @RequestBody NodeMetadata metadata,
+        HttpServletResponse response
     ) {
         User user = this.userRepository.getOrCreateUser(userEmail);
         var flow = this.flowRepository.getFlow(user, flowId);
@@ -414,12 +474,148 @@ public class FlowController {
         }
         graph.setMetadata(nodeId, metadata);
         var changes = flow.getGraph().observer().getChanges();
-        Flow.objects.updateGraph(flow);
+        saveGraph(flow, expectedRevision, response);
         return SerializationUtils.toJson(changes);
     }
 
     /**
-     * Executes a flow.
+     * Applies a list of graph operations in order, and saves them together.
+     * Each operation is a JSON object with an {@code op}, one of:
+     * <ul>
+     *     <li>{@code add_node}, with a node {@code type};</li>
+     *     <li>{@code delete_node}, with a {@code node_id};</li>
+     *     <li>{@code modify_settings}, with a {@code node_id} and {@code settings}, as for {@link #modifyNodeSettings};</li>
+     *     <li>{@code modify_metadata}, with a {@code node_id} and {@code metadata}, as for {@link #modifyNodeMetadata};</li>
+     *     <li>{@code add_connection} and {@code delete_connection}, with the fields of a connection.</li>
+     * </ul>
+     * An {@code add_node} operation may also have a {@code ref}, which later
+     * operations in the batch can use in place of the new node's ID.
+     * <p>
+     * If any operation fails, none of them are saved. Otherwise the flow is
+     * written once, however many operations there are. At most
+     * {@value #MAX_BATCH_SIZE} operations may be sent at once.
+     * </p>
+     *
+     * @return The combined changes that were made to the graph, with the ID
+     * of each node added with a {@code ref} under {@code node_refs}.
+     */
+    @PostMapping(value = "{flowId}/graph/batch", produces = MediaType.APPLICATION_JSON_VALUE)
+    public String editGraphBatch(
+        @RequestHeader("x-user-email") String userEmail,
+        @RequestHeader(name = REVISION_HEADER, required = false) @Nullable Long expectedRevision,
+        @PathVariable UUID flowId,
+        @RequestBody String body,
+        HttpServletResponse response
+    ) {
+        JsonArray operations;
+        try {
+            operations = JsonParser.parseString(body).getAsJsonArray();
+        } catch (Exception e) {
+            throw new InvalidBodyException("Body must be a JSON array", e);
+        }
+        if (operations.size() > MAX_BATCH_SIZE) {
+            throw new InvalidBodyException("Batch cannot contain more than " + MAX_BATCH_SIZE + " operations");
+        }
+        User user = this.userRepository.getOrCreateUser(userEmail);
+        var flow = this.flowRepository.getFlow(user, flowId);
+        var graph = flow.getGraph();
+        Map<String, UUID> nodeRefs = new HashMap<>();
+        for (var element : operations) {
+            if (!element.isJsonObject()) {
+                throw new InvalidBodyException("Every batch operation must be a JSON object");
+            }
+            applyOperation(graph, element.getAsJsonObject(), nodeRefs);
+        }
+        var changes = graph.observer().getChanges();
+        saveGraph(flow, expectedRevision, response);
+        var changesJson = JsonParser.parseString(SerializationUtils.toJson(changes)).getAsJsonObject();
+        var nodeRefsJson = new JsonObject();
+        nodeRefs.forEach((ref, nodeId) -> nodeRefsJson.addProperty(ref, nodeId.toString()));
+        changesJson.add("node_refs", nodeRefsJson);
+        return changesJson.toString();
+    }
+
+    private static void applyOperation(Graph graph, JsonObject operation, Map<String, UUID> nodeRefs) {
+        var op = getString(operation, "op");
+        switch (op) {
+            case "add_node" -> {
+                var node = addNode(graph, getString(operation, "type"));
+                if (operation.has("ref")) {
+                    nodeRefs.put(getString(operation, "ref"), node.id());
+                }
+            }
+            case "delete_node" -> graph.removeNode(getNodeId(graph, operation, "node_id", nodeRefs));
+            case "modify_settings" -> {
+                var nodeId = getNodeId(graph, operation, "node_id", nodeRefs);
+                if (!(operation.get("settings") instanceof JsonObject settings)) {
+                    throw new InvalidBodyException("Operation " + op + " must have a settings object");
+                }
+                modifySettings(graph, nodeId, readSettings(settings.toString()));
+            }
+            case "modify_metadata" -> {
+                var nodeId = getNodeId(graph, operation, "node_id", nodeRefs);
+                NodeMetadata metadata;
+                try {
+                    var metadataJson = operation.getAsJsonObject("metadata");
+                    metadata = new NodeMetadata(metadataJson.get("x_pos").getAsFloat(), metadataJson.get("y_pos").getAsFloat());
+                } catch (Exception e) {
+                    throw new InvalidBodyException("Operation " + op + " must have metadata with x_pos and y_pos", e);
+                }
+                graph.setMetadata(nodeId, metadata);
+            }
+            case "add_connection", "delete_connection" -> {
+                var connection = createConnection(graph, new BodyConnection(
+                    getNodeId(graph, operation, "from_node_id", nodeRefs),
+                    getString(operation, "from_name"),
+                    getNodeId(graph, operation, "to_node_id", nodeRefs),
+                    getString(operation, "to_name")
+                ));
+                try {
+                    if (op.equals("add_connection")) {
+                        graph.addConnection(connection);
+                    } else {
+                        graph.removeConnection(connection);
+                    }
+                } catch (Exception e) {
+                    throw new InvalidConnectionException(e.getMessage());
+                }
+            }
+            default -> throw new InvalidBodyException("Unknown graph operation: " + op);
+        }
+    }
+
+    private static String getString(JsonObject operation, String key) {
+        try {
+            return operation.get(key).getAsString();
+        } catch (Exception e) {
+            throw new InvalidBodyException("Batch operation is missing " + key, e);
+        }
+    }
+
+    /**
+     * Gets a node ID from a batch operation, which is either the ID of a node
+     * in the graph, or the {@code ref} of a node added earlier in the batch.
+     */
+    private static UUID getNodeId(Graph graph, JsonObject operation, String key, Map<String, UUID> nodeRefs) {
+        var value = getString(operation, key);
+        var nodeId = nodeRefs.get(value);
+        if (nodeId == null) {
+            try {
+                nodeId = UUID.fromString(value);
+            } catch (IllegalArgumentException e) {
+                throw new InvalidBodyException("Invalid node ID or ref: " + value, e);
+            }
+        }
+        if (!graph.containsNode(nodeId)) {
+            throw new NodeNotFoundException(nodeId);
+        }
+        return nodeId;
+    }
+
+    /**
+     * Executes a flow. If {@code trace} is set, the response instead has the
+     * flow output under {@code output}, and the timing of each node under
+     * {@code trace}.
      *
      * @return The flow output.
      */
@@ -427,8 +623,148 @@ public class FlowController {
     public String executeFlow(
         @PathVariable UUID flowId,
         @PathVariable UUID startNodeId,
+        @RequestParam(name = "trace", defaultValue = "false") boolean trace,
+        @RequestBody(required = false) @Nullable String input
+    ) {
+        var flow = getWebhookFlow(flowId, startNodeId);
+        var executor = new GraphExecutor(Flow.objects.getExecutionPlan(flow));
+        var executionTrace = trace ? new ExecutionTrace() : null;
+        var executeFunction = executor.execute(flow.getAuthorId(), startNodeId, executionTrace);
+        var inputJson = parseWebhookInput(input);
+        var outputReference = new JsonObjectReference();
+        var webhookStartInput = new WebhookStartNodeInput(inputJson, outputReference);
+        try {
+            executeFunction.apply(webhookStartInput).join();
+        } catch (Exception e) {
+            ApiApplication.LOGGER.error("Error while executing flow", e);
+            throw new FlowExecutionException(e);
+        }
+        var output = outputReference.getValue();
+        if (executionTrace != null) {
+            var response = new JsonObject();
+            response.add("output", output == null ? new JsonObject() : output);
+            response.add("trace", executionTrace.toJson());
+            return response.toString();
+        } else if (output == null) {
+            return "{}";
+        } else {
+            return SerializationUtils.toJson(output);
+        }
+    }
+
+    /**
+     * Starts executing a flow in the background, without waiting for it to
+     * finish. If {@code wait} is given, waits up to that many milliseconds
+     * (at most {@value #MAX_RUN_WAIT_MILLIS}) for the run to finish first.
+     * The servlet thread is not held while waiting.
+     *
+     * @return The run, with its ID and status, and its output or error if it
+     * has finished. The response status is 202 if the run is still going.
+     */
+    @PostMapping(value = "{flowId}/run/{startNodeId}/async", produces = MediaType.APPLICATION_JSON_VALUE)
+    public CompletableFuture<ResponseEntity<String>> executeFlowAsync(
+        @PathVariable UUID flowId,
+        @PathVariable UUID startNodeId,
+        @RequestParam(name = "wait", defaultValue = "0") long waitMillis,
         @RequestBody(required = false) @Nullable String input
     ) {
+        var flow = getWebhookFlow(flowId, startNodeId);
+        var executor = new GraphExecutor(Flow.objects.getExecutionPlan(flow));
+        var executeFunction = executor.execute(flow.getAuthorId(), startNodeId);
+        var inputJson = parseWebhookInput(input);
+        var outputReference = new JsonObjectReference();
+        var webhookStartInput = new WebhookStartNodeInput(inputJson, outputReference);
+        var run = this.flowRunRepository.start(flowId, outputReference, () -> executeFunction.apply(webhookStartInput));
+        return awaitRun(run, waitMillis);
+    }
+
+    /**
+     * Gets a run started by {@link #executeFlowAsync}. If {@code wait} is
+     * given, waits up to that many milliseconds (at most
+     * {@value #MAX_RUN_WAIT_MILLIS}) for the run to finish first.
+     *
+     * @return The run, with its ID and status, and its output or error if it
+     * has finished. The response status is 202 if the run is still going.
+     */
+    @GetMapping(value = "{flowId}/runs/{runId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public CompletableFuture<ResponseEntity<String>> getRun(
+        @PathVariable UUID flowId,
+        @PathVariable UUID runId,
+        @RequestParam(name = "wait", defaultValue = "0") long waitMillis
+    ) {
+        var run = this.flowRunRepository.get(runId)
+            .filter(r -> r.getFlowId().equals(flowId))
+            .orElseThrow(RunNotFoundException::new);
+        return awaitRun(run, waitMillis);
+    }
+
+    private static CompletableFuture<ResponseEntity<String>> awaitRun(FlowRunRepository.FlowRun run, long waitMillis) {
+        long wait = Math.max(0, Math.min(waitMillis, MAX_RUN_WAIT_MILLIS));
+        return run.awaitFinish(wait, TimeUnit.MILLISECONDS).thenApply(r -> {
+            var status = r.getStatus() == FlowRunRepository.Status.RUNNING ? HttpStatus.ACCEPTED : HttpStatus.OK;
+            return ResponseEntity.status(status).body(r.toJson().toString());
+        });
+    }
+
+    /**
+     * Executes a flow once for each input in a JSON array, sharing one
+     * executor between the runs. At most {@value #BATCH_PARALLELISM} runs
+     * execute at once.
+     *
+     * @return A JSON array with, for each input in order, either an
+     * {@code output} object or an {@code error} message.
+     */
+    @PostMapping(value = "{flowId}/run/{startNodeId}/batch", produces = MediaType.APPLICATION_JSON_VALUE)
+    public String executeFlowBatch(
+        @PathVariable UUID flowId,
+        @PathVariable UUID startNodeId,
+        @RequestBody String input
+    ) {
+        JsonArray inputsJson;
+        try {
+            inputsJson = JsonParser.parseString(input).getAsJsonArray();
+        } catch (Exception e) {
+            throw new InvalidBodyException("Body must be a JSON array", e);
+        }
+        if (inputsJson.size() > MAX_BATCH_SIZE) {
+            throw new InvalidBodyException("Batch cannot contain more than " + MAX_BATCH_SIZE + " inputs");
+        }
+        List<WebhookStartNodeInput> webhookStartInputs = new ArrayList<>(inputsJson.size());
+        for (var element : inputsJson) {
+            if (!element.isJsonObject()) {
+                throw new InvalidBodyException("Every batch input must be a JSON object");
+            }
+            webhookStartInputs.add(new WebhookStartNodeInput(element.getAsJsonObject(), new JsonObjectReference()));
+        }
+
+        var flow = getWebhookFlow(flowId, startNodeId);
+        var executor = new GraphExecutor(Flow.objects.getExecutionPlan(flow));
+        var runs = executor.executeBatch(flow.getAuthorId(), startNodeId, webhookStartInputs, BATCH_PARALLELISM);
+        var results = new JsonArray();
+        for (int i = 0; i < runs.size(); i++) {
+            var result = new JsonObject();
+            try {
+                runs.get(i).join();
+                var output = webhookStartInputs.get(i).endOutput().getValue();
+                result.add("output", output == null ? new JsonObject() : output);
+            } catch (Exception e) {
+                ApiApplication.LOGGER.error("Error while executing flow", e);
+                var cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                result.addProperty("error", String.valueOf(cause.getMessage()));
+            }
+            results.add(result);
+        }
+        return results.toString();
+    }
+
+    /**
+     * Gets a flow for execution from one of its webhook start nodes.
+     *
+     * @param flowId      The ID of the flow.
+     * @param startNodeId The ID of the start node.
+     * @return The flow.
+     */
+    private static Flow getWebhookFlow(UUID flowId, UUID startNodeId) {
         var flow = Flow.objects.get(flowId);
         var graph = flow.getGraph();
         var startNode = graph.getNode(startNodeId)
@@ -439,31 +775,17 @@ public class FlowController {
         if (!isWebhookStart) {
             throw new InvalidNodeTypeException("Node with ID " + startNodeId + " is not a webhook start node");
         }
-        var executor = new GraphExecutor(graph);
-        var executeFunction = executor.execute(flow.getAuthorId(), startNodeId);
-        JsonObject inputJson;
+        return flow;
+    }
+
+    private static JsonObject parseWebhookInput(@Nullable String input) {
         if (input == null) {
-            inputJson = new JsonObject();
-        } else {
-            try {
-                inputJson = JsonParser.parseString(input).getAsJsonObject();
-            } catch (Exception e) {
-                throw new InvalidBodyException("Body must be a JSON object", e);
-            }
+            return new JsonObject();
         }
-        var outputReference = new JsonObjectReference();
-        var webhookStartInput = new WebhookStartNodeInput(inputJson, outputReference);
         try {
-            executeFunction.apply(webhookStartInput).join();
+            return JsonParser.parseString(input).getAsJsonObject();
         } catch (Exception e) {
-            ApiApplication.LOGGER.error("Error while executing flow", e);
-            throw new FlowExecutionException(e);
-        }
-        var output = outputReference.getValue();
-        if (output == null) {
-            return "{}";
-        } else {
-            return SerializationUtils.toJson(output);
+            throw new InvalidBodyException("Body must be a JSON object", e);
         }
     }
 }
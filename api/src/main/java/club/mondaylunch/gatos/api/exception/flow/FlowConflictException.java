@@ -0,0 +1,9 @@
+package club.mondaylunch.gatos.api.exception.flow;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(code = HttpStatus.CONFLICT, reason = "Flow has been changed, reload it and try again")
+public class FlowConflictException extends RuntimeException {
+
+}
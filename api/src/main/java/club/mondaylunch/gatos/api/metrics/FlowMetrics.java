@@ -0,0 +1,56 @@
+package club.mondaylunch.gatos.api.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+import club.mondaylunch.gatos.core.executor.ExecutionListener;
+import club.mondaylunch.gatos.core.executor.GraphExecutor;
+import club.mondaylunch.gatos.core.executor.NodeTrace;
+
+/**
+ * Aggregates the timing of every node computed by a {@link GraphExecutor}
+ * into metrics, tagged by node type, which are exposed through the actuator
+ * {@code metrics} endpoint.
+ */
+@Component
+public class FlowMetrics implements ExecutionListener, DisposableBean {
+    private final MeterRegistry registry;
+
+    public FlowMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        GraphExecutor.addGlobalListener(this);
+    }
+
+    @Override
+    public void onNodeFinished(NodeTrace trace) {
+        var outcome = trace.failure() == null ? "success" : "failure";
+        Timer.builder("gatos.flow.node.compute")
+            .description("Time taken to compute each flow node")
+            .tag("type", trace.type())
+            .tag("outcome", outcome)
+            .register(this.registry)
+            .record(trace.computeTime());
+        Timer.builder("gatos.flow.node.queue")
+            .description("Time flow nodes wait for a thread once their inputs are ready")
+            .tag("type", trace.type())
+            .register(this.registry)
+            .record(trace.queueDelay());
+        if (!trace.outputSizes().isEmpty()) {
+            var outputSize = DistributionSummary.builder("gatos.flow.node.output.size")
+                .description("Size of each flow node output")
+                .tag("type", trace.type())
+                .register(this.registry);
+            for (int size : trace.outputSizes().values()) {
+                outputSize.record(size);
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        GraphExecutor.removeGlobalListener(this);
+    }
+}
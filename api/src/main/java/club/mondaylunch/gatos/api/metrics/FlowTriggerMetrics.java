@@ -0,0 +1,22 @@
+package club.mondaylunch.gatos.api.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import club.mondaylunch.gatos.core.collection.FlowCollection;
+import club.mondaylunch.gatos.core.models.Flow;
+
+/**
+ * Exposes how often setting up flow triggers after a graph edit has failed,
+ * {@link FlowCollection#triggerSetupFailures()}, through the actuator
+ * {@code metrics} endpoint.
+ */
+@Component
+public class FlowTriggerMetrics {
+    public FlowTriggerMetrics(MeterRegistry registry) {
+        FunctionCounter.builder("gatos.flow.triggers.failures", Flow.objects, FlowCollection::triggerSetupFailures)
+            .description("Background trigger setups after a graph edit which failed")
+            .register(registry);
+    }
+}
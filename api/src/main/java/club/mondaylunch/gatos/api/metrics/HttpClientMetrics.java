@@ -0,0 +1,58 @@
+package club.mondaylunch.gatos.api.metrics;
+
+import java.net.http.HttpRequest;
+import java.time.Duration;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+import club.mondaylunch.gatos.basicnodes.BasicNodes;
+import club.mondaylunch.gatos.basicnodes.http.HttpRequestListener;
+import club.mondaylunch.gatos.basicnodes.http.OutboundHttpClient;
+
+/**
+ * Records the latency and number in flight of the outbound requests made by
+ * flow nodes through {@link BasicNodes#HTTP_CLIENT}, exposed through the
+ * actuator {@code metrics} endpoint.
+ */
+@Component
+public class HttpClientMetrics implements HttpRequestListener, DisposableBean {
+    private final MeterRegistry registry;
+    private final OutboundHttpClient client = BasicNodes.HTTP_CLIENT;
+
+    public HttpClientMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        Gauge.builder("gatos.http.client.in_flight", this.client, OutboundHttpClient::inFlightRequests)
+            .description("Outbound HTTP requests sent by flow nodes and not yet finished")
+            .register(registry);
+        this.client.addListener(this);
+    }
+
+    @Override
+    public void onRequestFinished(HttpRequest request, int statusCode, Duration latency, @Nullable Throwable failure) {
+        Timer.builder("gatos.http.client.requests")
+            .description("Latency of outbound HTTP requests sent by flow nodes")
+            .tag("method", request.method())
+            .tag("status", statusCode < 0 ? "none" : String.valueOf(statusCode))
+            .tag("outcome", outcome(statusCode, failure))
+            .publishPercentileHistogram()
+            .register(this.registry)
+            .record(latency);
+    }
+
+    @Override
+    public void destroy() {
+        this.client.removeListener(this);
+    }
+
+    private static String outcome(int statusCode, @Nullable Throwable failure) {
+        if (failure != null || statusCode < 0) {
+            return "failure";
+        }
+        return statusCode < 400 ? "success" : "error";
+    }
+}
@@ -0,0 +1,35 @@
+package club.mondaylunch.gatos.api.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import club.mondaylunch.gatos.basicnodes.BasicNodes;
+import club.mondaylunch.gatos.basicnodes.regex.PatternCache;
+
+/**
+ * Exposes the hit rate, size and match timeouts of the compiled regex cache
+ * shared by regex nodes, {@link BasicNodes#PATTERN_CACHE}, through the
+ * actuator {@code metrics} endpoint.
+ */
+@Component
+public class PatternCacheMetrics {
+    public PatternCacheMetrics(MeterRegistry registry) {
+        PatternCache cache = BasicNodes.PATTERN_CACHE;
+        FunctionCounter.builder("gatos.regex.cache.requests", cache, PatternCache::hits)
+            .description("Lookups in the compiled regex cache")
+            .tag("result", "hit")
+            .register(registry);
+        FunctionCounter.builder("gatos.regex.cache.requests", cache, PatternCache::misses)
+            .description("Lookups in the compiled regex cache")
+            .tag("result", "miss")
+            .register(registry);
+        FunctionCounter.builder("gatos.regex.timeouts", cache, PatternCache::timeouts)
+            .description("Regex matches which ran past the match timeout")
+            .register(registry);
+        Gauge.builder("gatos.regex.cache.size", cache, PatternCache::size)
+            .description("Compiled regexes in the cache")
+            .register(registry);
+    }
+}
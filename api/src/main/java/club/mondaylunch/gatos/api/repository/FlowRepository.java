@@ -1,11 +1,19 @@
 package club.mondaylunch.gatos.api.repository;
 
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Supplier;
 
 import org.springframework.stereotype.Repository;
 
 import club.mondaylunch.gatos.api.exception.flow.FlowNotFoundException;
 import club.mondaylunch.gatos.api.exception.flow.NoPermissionException;
+import club.mondaylunch.gatos.api.exception.flow.NodeNotFoundException;
+import club.mondaylunch.gatos.core.collection.FlowCollection;
+import club.mondaylunch.gatos.core.graph.Node;
+import club.mondaylunch.gatos.core.graph.NodeMetadata;
+import club.mondaylunch.gatos.core.graph.connector.NodeConnection;
 import club.mondaylunch.gatos.core.models.Flow;
 import club.mondaylunch.gatos.core.models.User;
 
@@ -28,4 +36,48 @@ public class FlowRepository {
 
         return flow;
     }
+
+    /**
+     * Get a node of a flow for a given User, without loading the rest of the flow.
+     * @param user   User to check permissions against
+     * @param flowId Flow to fetch the node from
+     * @param nodeId Node to fetch
+     */
+    public Node getNode(User user, UUID flowId, UUID nodeId) throws FlowNotFoundException, NoPermissionException, NodeNotFoundException {
+        return getProjected(flowId, () -> Flow.objects.getNode(flowId, user.getId(), nodeId));
+    }
+
+    /**
+     * Get the connections to and from a node of a flow for a given User, without loading the rest of the flow.
+     * @param user   User to check permissions against
+     * @param flowId Flow to fetch the connections from
+     * @param nodeId Node to fetch the connections of
+     */
+    public Set<NodeConnection<?>> getConnections(User user, UUID flowId, UUID nodeId) throws FlowNotFoundException, NoPermissionException, NodeNotFoundException {
+        return getProjected(flowId, () -> Flow.objects.getConnections(flowId, user.getId(), nodeId));
+    }
+
+    /**
+     * Get the metadata of a node of a flow for a given User, without loading the rest of the flow.
+     * @param user   User to check permissions against
+     * @param flowId Flow to fetch the metadata from
+     * @param nodeId Node to fetch the metadata of
+     */
+    public NodeMetadata getMetadata(User user, UUID flowId, UUID nodeId) throws FlowNotFoundException, NoPermissionException, NodeNotFoundException {
+        return getProjected(flowId, () -> Flow.objects.getMetadata(flowId, user.getId(), nodeId));
+    }
+
+    private static <T> T getProjected(UUID flowId, Supplier<Optional<T>> query) {
+        Optional<T> result;
+        try {
+            result = query.get();
+        } catch (FlowCollection.FlowNotFoundException e) {
+            // the flow is missing or belongs to someone else, find out which
+            if (Flow.objects.getBasicInfo(flowId) == null) {
+                throw new FlowNotFoundException();
+            }
+            throw new NoPermissionException();
+        }
+        return result.orElseThrow(NodeNotFoundException::new);
+    }
 }
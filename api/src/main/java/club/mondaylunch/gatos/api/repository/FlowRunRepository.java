@@ -0,0 +1,186 @@
+package club.mondaylunch.gatos.api.repository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import com.google.gson.JsonObject;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.stereotype.Repository;
+
+import club.mondaylunch.gatos.api.ApiApplication;
+import club.mondaylunch.gatos.core.models.JsonObjectReference;
+
+/**
+ * Keeps track of flow runs which were started in the background, so their
+ * results can be fetched later by run ID. Finished runs are forgotten after
+ * {@link #RESULT_TTL}, and runs which are still going after
+ * {@link #MAX_RUNNING_AGE} are forgotten too, though they carry on running.
+ * At most {@link #MAX_RUNS} runs are kept; past that, the oldest are
+ * forgotten first.
+ */
+@Repository
+public class FlowRunRepository {
+    private static final Duration RESULT_TTL = Duration.ofMinutes(10);
+    private static final Duration MAX_RUNNING_AGE = Duration.ofHours(1);
+    private static final Duration SWEEP_INTERVAL = Duration.ofSeconds(30);
+    private static final int MAX_RUNS = 10_000;
+
+    private final Map<UUID, FlowRun> runs = new ConcurrentHashMap<>();
+    /**
+     * The runs in {@link #runs}, oldest first.
+     */
+    private final ConcurrentLinkedQueue<FlowRun> runOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicLong nextSweep = new AtomicLong();
+
+    /**
+     * Starts a run and records it.
+     *
+     * @param flowId    The ID of the flow being run.
+     * @param output    The reference the flow writes its output to.
+     * @param execution Starts executing the flow.
+     * @return The run.
+     */
+    public FlowRun start(UUID flowId, JsonObjectReference output, Supplier<CompletableFuture<Void>> execution) {
+        this.sweep();
+        var run = new FlowRun(UUID.randomUUID(), flowId, output);
+        this.runs.put(run.id, run);
+        this.runOrder.add(run);
+        while (this.runs.size() > MAX_RUNS) {
+            var oldest = this.runOrder.poll();
+            if (oldest == null) {
+                break;
+            }
+            this.runs.remove(oldest.id);
+        }
+        CompletableFuture<Void> future;
+        try {
+            future = execution.get();
+        } catch (Exception e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        future.whenComplete(($, error) -> run.finish(error));
+        return run;
+    }
+
+    /**
+     * Gets a run which has not yet been forgotten.
+     *
+     * @param runId The ID of the run.
+     * @return The run, or empty if there is no such run.
+     */
+    public Optional<FlowRun> get(UUID runId) {
+        return Optional.ofNullable(this.runs.get(runId));
+    }
+
+    private void sweep() {
+        long now = System.currentTimeMillis();
+        long next = this.nextSweep.get();
+        if (now < next || !this.nextSweep.compareAndSet(next, now + SWEEP_INTERVAL.toMillis())) {
+            return;
+        }
+        var finishedCutoff = Instant.now().minus(RESULT_TTL);
+        var startedCutoff = Instant.now().minus(MAX_RUNNING_AGE);
+        this.runOrder.removeIf(run -> {
+            var finishedAt = run.finishedAt;
+            boolean expired = finishedAt == null ? run.startedAt.isBefore(startedCutoff) : finishedAt.isBefore(finishedCutoff);
+            if (expired) {
+                this.runs.remove(run.id);
+            }
+            return expired;
+        });
+    }
+
+    public enum Status {
+        RUNNING,
+        SUCCEEDED,
+        FAILED
+    }
+
+    /**
+     * A flow run started in the background.
+     */
+    public static final class FlowRun {
+        private final UUID id;
+        private final UUID flowId;
+        private final JsonObjectReference output;
+        private final CompletableFuture<Void> completion = new CompletableFuture<>();
+        private final Instant startedAt = Instant.now();
+        private volatile @Nullable Instant finishedAt;
+        private volatile @Nullable Throwable error;
+
+        private FlowRun(UUID id, UUID flowId, JsonObjectReference output) {
+            this.id = id;
+            this.flowId = flowId;
+            this.output = output;
+        }
+
+        private void finish(@Nullable Throwable error) {
+            if (error != null) {
+                this.error = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                ApiApplication.LOGGER.error("Error while executing flow", this.error);
+            }
+            this.finishedAt = Instant.now();
+            this.completion.complete(null);
+        }
+
+        public UUID getId() {
+            return this.id;
+        }
+
+        public UUID getFlowId() {
+            return this.flowId;
+        }
+
+        public Status getStatus() {
+            if (this.finishedAt == null) {
+                return Status.RUNNING;
+            }
+            return this.error == null ? Status.SUCCEEDED : Status.FAILED;
+        }
+
+        /**
+         * Returns a future which completes (never exceptionally) once the run
+         * has finished, or once the timeout passes, whichever is first.
+         *
+         * @param timeout The longest time to wait.
+         * @param unit    The unit of the timeout.
+         * @return The future.
+         */
+        public CompletableFuture<FlowRun> awaitFinish(long timeout, TimeUnit unit) {
+            return this.completion.copy()
+                .completeOnTimeout(null, timeout, unit)
+                .thenApply($ -> this);
+        }
+
+        /**
+         * Creates the JSON representation of this run: its ID and status,
+         * plus its output if it succeeded or its error message if it failed.
+         *
+         * @return The JSON.
+         */
+        public JsonObject toJson() {
+            var json = new JsonObject();
+            var status = this.getStatus();
+            json.addProperty("run_id", this.id.toString());
+            json.addProperty("status", status.name().toLowerCase(Locale.ROOT));
+            if (status == Status.SUCCEEDED) {
+                var value = this.output.getValue();
+                json.add("output", value == null ? new JsonObject() : value);
+            } else if (status == Status.FAILED) {
+                json.addProperty("error", String.valueOf(this.error.getMessage()));
+            }
+            return json;
+        }
+    }
+}
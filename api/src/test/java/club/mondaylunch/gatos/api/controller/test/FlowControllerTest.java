@@ -7,11 +7,14 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
+import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import com.jayway.jsonpath.JsonPath;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.Assertions;
@@ -21,6 +24,7 @@ import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.skyscreamer.jsonassert.JSONAssert;
 import org.skyscreamer.jsonassert.JSONCompareMode;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.HttpHeaders;
@@ -53,6 +57,9 @@ public class FlowControllerTest extends BaseMvcTest implements UserCreationHelpe
     private static final String ENDPOINT = "/api/v1/flows";
     private final User user = this.createRandomUser();
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @BeforeAll
     public static void init() {
         GatosCore.gatosInit();
@@ -383,6 +390,33 @@ public class FlowControllerTest extends BaseMvcTest implements UserCreationHelpe
         Assertions.assertEquals(expectedNode, responseNode.get());
     }
 
+    @Test
+    public void cannotEditGraphAtOutdatedRevision() throws Exception {
+        var flow = createFlow(this.user);
+        Flow.objects.insert(flow);
+        this.assertFlowCount(1);
+        var nodeTypeJson = new JsonObject();
+        nodeTypeJson.addProperty("type", "test_no_inputs");
+        this.mockMvc.perform(MockMvcRequestBuilders.post(ENDPOINT + "/" + flow.getId() + "/nodes")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + TestSecurity.FAKE_TOKEN)
+                .header("x-user-email", this.user.getEmail())
+                .header("x-flow-revision", 0)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(nodeTypeJson.toString()))
+            .andExpect(MockMvcResultMatchers.status().isOk())
+            .andExpect(MockMvcResultMatchers.header().string("x-flow-revision", "1"));
+        this.mockMvc.perform(MockMvcRequestBuilders.post(ENDPOINT + "/" + flow.getId() + "/nodes")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + TestSecurity.FAKE_TOKEN)
+                .header("x-user-email", this.user.getEmail())
+                .header("x-flow-revision", 0)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(nodeTypeJson.toString()))
+            .andExpect(MockMvcResultMatchers.status().isConflict());
+        var updatedFlow = Flow.objects.get(flow.getId());
+        Assertions.assertEquals(1, updatedFlow.getGraph().nodeCount());
+        Assertions.assertEquals(1, updatedFlow.getRevision());
+    }
+
     @Test
     public void canModifyNodeSettings() throws Exception {
         var flow = createFlow(this.user);
@@ -632,6 +666,61 @@ public class FlowControllerTest extends BaseMvcTest implements UserCreationHelpe
         Assertions.assertTrue(changes.addedMetadata().containsValue(expectedMetadata));
     }
 
+    @Test
+    public void canEditGraphInBatch() throws Exception {
+        var flow = createFlow(this.user);
+        var existing = flow.getGraph().addNode(TestNodeTypes.NO_INPUTS);
+        Flow.objects.insert(flow);
+        this.assertFlowCount(1);
+        var operations = new JsonArray();
+        operations.add(batchOperation("add_node", "type", "test_end", "ref", "end"));
+        operations.add(batchOperation("add_connection",
+            "from_node_id", existing.id().toString(), "from_name", "start_output",
+            "to_node_id", "end", "to_name", "end_input"));
+        var metadataOperation = batchOperation("modify_metadata", "node_id", "end");
+        var metadata = new JsonObject();
+        metadata.addProperty("x_pos", 2);
+        metadata.addProperty("y_pos", 3);
+        metadataOperation.add("metadata", metadata);
+        operations.add(metadataOperation);
+        var result = this.mockMvc.perform(MockMvcRequestBuilders.post(ENDPOINT + "/" + flow.getId() + "/graph/batch")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + TestSecurity.FAKE_TOKEN)
+                .header("x-user-email", this.user.getEmail())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(operations.toString()))
+            .andExpect(MockMvcResultMatchers.status().isOk());
+        var responseBody = result.andReturn().getResponse().getContentAsString();
+        var endId = UUID.fromString(JsonParser.parseString(responseBody).getAsJsonObject()
+            .getAsJsonObject("node_refs").get("end").getAsString());
+        var updatedGraph = Flow.objects.get(flow.getId()).getGraph();
+        Assertions.assertEquals(2, updatedGraph.nodeCount());
+        var end = updatedGraph.getNode(endId).orElseThrow();
+        var expectedConnection = NodeConnection.create(existing, "start_output", end, "end_input");
+        Assertions.assertEquals(Set.of(expectedConnection), updatedGraph.getConnections());
+        Assertions.assertEquals(new NodeMetadata(2, 3), updatedGraph.getOrCreateMetadataForNode(endId));
+        var changes = SerializationUtils.fromJson(responseBody, GraphObserver.GraphChanges.class);
+        Assertions.assertEquals(Set.of(end), changes.addedNodes());
+        Assertions.assertEquals(Set.of(expectedConnection), changes.addedConnections());
+        Assertions.assertTrue(changes.addedMetadata().containsValue(new NodeMetadata(2, 3)));
+    }
+
+    @Test
+    public void failedBatchEditSavesNothing() throws Exception {
+        var flow = createFlow(this.user);
+        Flow.objects.insert(flow);
+        this.assertFlowCount(1);
+        var operations = new JsonArray();
+        operations.add(batchOperation("add_node", "type", "test_no_inputs"));
+        operations.add(batchOperation("delete_node", "node_id", UUID.randomUUID().toString()));
+        this.mockMvc.perform(MockMvcRequestBuilders.post(ENDPOINT + "/" + flow.getId() + "/graph/batch")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + TestSecurity.FAKE_TOKEN)
+                .header("x-user-email", this.user.getEmail())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(operations.toString()))
+            .andExpect(MockMvcResultMatchers.status().isNotFound());
+        Assertions.assertEquals(0, Flow.objects.get(flow.getId()).getGraph().nodeCount());
+    }
+
     @Test
     public void canModifyExistingMetadata() throws Exception {
         var flow = createFlow(this.user);
@@ -715,6 +804,114 @@ public class FlowControllerTest extends BaseMvcTest implements UserCreationHelpe
         JSONAssert.assertEquals(inputBodyString, responseBody, JSONCompareMode.NON_EXTENSIBLE);
     }
 
+    @Test
+    public void canExecuteFlowWithTrace() throws Exception {
+        var flow = createFlow(this.user);
+        Flow.objects.insert(flow);
+        var start = this.addNode(flow.getId(), "webhook_start");
+        var end = this.addNode(flow.getId(), "webhook_end");
+        this.addConnection(flow.getId(), start.id(), "requestBody", end.id(), "graphOutput");
+        this.addConnection(flow.getId(), start.id(), "endOutputReference", end.id(), "outputReference");
+        var inputBody = new JsonObject();
+        inputBody.addProperty("input", "value");
+        var result = this.mockMvc.perform(MockMvcRequestBuilders.post(ENDPOINT + "/" + flow.getId() + "/run/" + start.id())
+                .param("trace", "true")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + TestSecurity.FAKE_TOKEN)
+                .header("x-user-email", this.user.getEmail())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(inputBody.toString())
+            )
+            .andExpect(MockMvcResultMatchers.status().isOk());
+        var response = JsonParser.parseString(result.andReturn().getResponse().getContentAsString()).getAsJsonObject();
+        Assertions.assertEquals(inputBody, response.get("output"));
+        var trace = response.getAsJsonArray("trace");
+        Assertions.assertEquals(2, trace.size());
+        Assertions.assertEquals(start.id().toString(), trace.get(0).getAsJsonObject().get("node_id").getAsString());
+        Assertions.assertEquals("webhook_start", trace.get(0).getAsJsonObject().get("type").getAsString());
+        Assertions.assertEquals(end.id().toString(), trace.get(1).getAsJsonObject().get("node_id").getAsString());
+        Assertions.assertNotNull(this.meterRegistry.find("gatos.flow.node.compute").tag("type", "webhook_end").timer());
+    }
+
+    @Test
+    public void canExecuteFlowBatch() throws Exception {
+        var flow = createFlow(this.user);
+        Flow.objects.insert(flow);
+        var start = this.addNode(flow.getId(), "webhook_start");
+        var end = this.addNode(flow.getId(), "webhook_end");
+        this.addConnection(flow.getId(), start.id(), "requestBody", end.id(), "graphOutput");
+        this.addConnection(flow.getId(), start.id(), "endOutputReference", end.id(), "outputReference");
+        var inputs = new JsonArray();
+        for (int i = 0; i < 3; i++) {
+            var inputBody = new JsonObject();
+            inputBody.addProperty("input", i);
+            inputs.add(inputBody);
+        }
+        var result = this.mockMvc.perform(MockMvcRequestBuilders.post(ENDPOINT + "/" + flow.getId() + "/run/" + start.id() + "/batch")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + TestSecurity.FAKE_TOKEN)
+                .header("x-user-email", this.user.getEmail())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(inputs.toString())
+            )
+            .andExpect(MockMvcResultMatchers.status().isOk());
+        var responseBody = result.andReturn().getResponse().getContentAsString();
+        var expected = new JsonArray();
+        for (var input : inputs) {
+            var item = new JsonObject();
+            item.add("output", input);
+            expected.add(item);
+        }
+        JSONAssert.assertEquals(expected.toString(), responseBody, JSONCompareMode.STRICT);
+    }
+
+    @Test
+    public void canExecuteFlowAsync() throws Exception {
+        var flow = createFlow(this.user);
+        Flow.objects.insert(flow);
+        var start = this.addNode(flow.getId(), "webhook_start");
+        var end = this.addNode(flow.getId(), "webhook_end");
+        this.addConnection(flow.getId(), start.id(), "requestBody", end.id(), "graphOutput");
+        this.addConnection(flow.getId(), start.id(), "endOutputReference", end.id(), "outputReference");
+        var inputBody = new JsonObject();
+        inputBody.addProperty("input", "value");
+        var started = this.mockMvc.perform(MockMvcRequestBuilders.post(ENDPOINT + "/" + flow.getId() + "/run/" + start.id() + "/async")
+                .param("wait", "5000")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + TestSecurity.FAKE_TOKEN)
+                .header("x-user-email", this.user.getEmail())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(inputBody.toString())
+            )
+            .andExpect(MockMvcResultMatchers.request().asyncStarted())
+            .andReturn();
+        var runBody = this.mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(started))
+            .andExpect(MockMvcResultMatchers.status().isOk())
+            .andReturn().getResponse().getContentAsString();
+        var run = JsonParser.parseString(runBody).getAsJsonObject();
+        Assertions.assertEquals("succeeded", run.get("status").getAsString());
+        Assertions.assertEquals(inputBody, run.get("output"));
+
+        var polled = this.mockMvc.perform(MockMvcRequestBuilders.get(ENDPOINT + "/" + flow.getId() + "/runs/" + run.get("run_id").getAsString())
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + TestSecurity.FAKE_TOKEN)
+                .header("x-user-email", this.user.getEmail())
+            )
+            .andExpect(MockMvcResultMatchers.request().asyncStarted())
+            .andReturn();
+        var polledBody = this.mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(polled))
+            .andExpect(MockMvcResultMatchers.status().isOk())
+            .andReturn().getResponse().getContentAsString();
+        JSONAssert.assertEquals(runBody, polledBody, JSONCompareMode.STRICT);
+    }
+
+    @Test
+    public void cannotGetUnknownRun() throws Exception {
+        var flow = createFlow(this.user);
+        Flow.objects.insert(flow);
+        this.mockMvc.perform(MockMvcRequestBuilders.get(ENDPOINT + "/" + flow.getId() + "/runs/" + UUID.randomUUID())
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + TestSecurity.FAKE_TOKEN)
+                .header("x-user-email", this.user.getEmail())
+            )
+            .andExpect(MockMvcResultMatchers.status().isNotFound());
+    }
+
     @Test
     public void canGetErrors() throws Exception {
         var flow = createFlow(this.user);
@@ -806,6 +1003,15 @@ public class FlowControllerTest extends BaseMvcTest implements UserCreationHelpe
         return Flow.objects.countByUserId(this.user.getId());
     }
 
+    private static JsonObject batchOperation(String op, String... properties) {
+        var operation = new JsonObject();
+        operation.addProperty("op", op);
+        for (int i = 0; i < properties.length; i += 2) {
+            operation.addProperty(properties[i], properties[i + 1]);
+        }
+        return operation;
+    }
+
     private static Flow createFlow(User author) {
         return new Flow(UUID.randomUUID(), "Test Flow", author.getId());
     }
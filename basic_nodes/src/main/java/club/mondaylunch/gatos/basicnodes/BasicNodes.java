@@ -12,6 +12,7 @@ import club.mondaylunch.gatos.basicnodes.end.MultiplyUserDataNodeType;
 import club.mondaylunch.gatos.basicnodes.end.RemoveUserDataNodeType;
 import club.mondaylunch.gatos.basicnodes.end.SetUserDataNodeType;
 import club.mondaylunch.gatos.basicnodes.end.WebhookEndNodeType;
+import club.mondaylunch.gatos.basicnodes.http.OutboundHttpClient;
 import club.mondaylunch.gatos.basicnodes.process.AddElementToListNodeType;
 import club.mondaylunch.gatos.basicnodes.process.BooleanOperationNodeType;
 import club.mondaylunch.gatos.basicnodes.process.ContainsUserDataNodeType;
@@ -53,6 +54,7 @@ import club.mondaylunch.gatos.basicnodes.process.StringRegexSplitNodeType;
 import club.mondaylunch.gatos.basicnodes.process.TruthinessNodeType;
 import club.mondaylunch.gatos.basicnodes.process.VariableExtractionNodeType;
 import club.mondaylunch.gatos.basicnodes.process.VariableRemappingNodeType;
+import club.mondaylunch.gatos.basicnodes.regex.PatternCache;
 import club.mondaylunch.gatos.basicnodes.start.WebhookStartNodeType;
 import club.mondaylunch.gatos.core.GatosPlugin;
 import club.mondaylunch.gatos.core.data.DataBox;
@@ -72,6 +74,16 @@ public final class BasicNodes implements GatosPlugin {
         return "basic_nodes";
     }
 
+    /**
+     * The HTTP client shared by every node which makes outbound requests.
+     */
+    public static final OutboundHttpClient HTTP_CLIENT = new OutboundHttpClient(OutboundHttpClient.Settings.fromEnvironment());
+
+    /**
+     * The compiled regular expressions shared by every regex node.
+     */
+    public static final PatternCache PATTERN_CACHE = PatternCache.fromEnvironment();
+
     public static final StringInterpolationNodeType STRING_INTERPOLATION = NodeType.REGISTRY
         .register("string_interpolation", new StringInterpolationNodeType());
     public static final VariableExtractionNodeType VARIABLE_EXTRACTION = NodeType.REGISTRY
@@ -1,17 +1,18 @@
 package club.mondaylunch.gatos.basicnodes.end;
 
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 import club.mondaylunch.gatos.core.models.UserData;
 
 public class IncrementUserDataNodeType extends UpdateUserDataNodeType {
 
     @Override
-    protected void updateValue(UUID userId, String key, double value, boolean setIfAbsent) {
+    protected CompletableFuture<Void> updateValue(UUID userId, String key, double value, boolean setIfAbsent) {
         if (setIfAbsent) {
-            UserData.objects.incrementOrSet(userId, key, value);
+            return UserData.objects.incrementOrSetAsync(userId, key, value);
         } else {
-            UserData.objects.increment(userId, key, value);
+            return UserData.objects.incrementAsync(userId, key, value);
         }
     }
 }
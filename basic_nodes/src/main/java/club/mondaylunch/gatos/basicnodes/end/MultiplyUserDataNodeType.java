@@ -1,6 +1,7 @@
 package club.mondaylunch.gatos.basicnodes.end;
 
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 import club.mondaylunch.gatos.core.data.DataType;
 import club.mondaylunch.gatos.core.models.UserData;
@@ -8,10 +9,11 @@ import club.mondaylunch.gatos.core.models.UserData;
 public class MultiplyUserDataNodeType extends UpdateUserDataNodeType {
 
     @Override
-    protected void updateValue(UUID userId, String key, double value, boolean setIfAbsent) {
+    protected CompletableFuture<Void> updateValue(UUID userId, String key, double value, boolean setIfAbsent) {
         if (setIfAbsent) {
-            UserData.objects.setIfAbsent(userId, key, DataType.NUMBER.create(1.0));
+            return UserData.objects.setIfAbsentAsync(userId, key, DataType.NUMBER.create(1.0))
+                .thenCompose($ -> UserData.objects.multiplyAsync(userId, key, value));
         }
-        UserData.objects.multiply(userId, key, value);
+        return UserData.objects.multiplyAsync(userId, key, value);
     }
 }
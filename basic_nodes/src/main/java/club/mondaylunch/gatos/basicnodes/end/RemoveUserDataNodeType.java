@@ -34,6 +34,6 @@ public class RemoveUserDataNodeType extends NodeType.End {
     @Override
     public CompletableFuture<Void> compute(UUID userId, Map<String, DataBox<?>> inputs, Map<String, DataBox<?>> settings) {
         var key = DataBox.get(settings, inputs, "key", DataType.STRING, Predicate.not(String::isBlank)).orElseThrow();
-        return CompletableFuture.runAsync(() -> UserData.objects.delete(userId, key));
+        return UserData.objects.deleteAsync(userId, key);
     }
 }
@@ -42,12 +42,10 @@ public class SetUserDataNodeType extends NodeType.End {
         var value = inputs.get("value");
         Objects.requireNonNull(value, "No value input");
         boolean overwrite = DataBox.get(settings, "overwrite", DataType.BOOLEAN).orElse(true);
-        return CompletableFuture.runAsync(() -> {
-            if (overwrite) {
-                UserData.objects.set(userId, key, value);
-            } else {
-                UserData.objects.setIfAbsent(userId, key, value);
-            }
-        });
+        if (overwrite) {
+            return UserData.objects.setAsync(userId, key, value);
+        } else {
+            return UserData.objects.setIfAbsentAsync(userId, key, value);
+        }
     }
 }
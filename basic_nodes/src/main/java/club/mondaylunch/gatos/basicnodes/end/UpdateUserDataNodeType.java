@@ -53,8 +53,17 @@ public abstract class UpdateUserDataNodeType extends NodeType.End {
         var key = DataBox.get(settings, inputs, "key", DataType.STRING, Predicate.not(String::isBlank)).orElseThrow();
         var value = DataBox.get(inputs, "value", DataType.NUMBER).orElseThrow();
         boolean setIfAbsent = DataBox.get(settings, "set_if_absent", DataType.BOOLEAN).orElse(true);
-        return CompletableFuture.runAsync(() -> this.updateValue(userId, key, value, setIfAbsent));
+        return this.updateValue(userId, key, value, setIfAbsent);
     }
 
-    protected abstract void updateValue(UUID userId, String key, double value, boolean setIfAbsent);
+    /**
+     * Updates the stored value asynchronously.
+     *
+     * @param userId      the ID of the user whose data to update
+     * @param key         the key of the data
+     * @param value       the value to update by
+     * @param setIfAbsent whether to create the data if it does not exist
+     * @return a future which completes when the value is updated
+     */
+    protected abstract CompletableFuture<Void> updateValue(UUID userId, String key, double value, boolean setIfAbsent);
 }
@@ -0,0 +1,278 @@
+package club.mondaylunch.gatos.basicnodes.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.function.Supplier;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+/**
+ * Body handlers which never hold more than a given number of bytes of a
+ * response. A response which declares a larger {@code Content-Length} is
+ * rejected before its body is read, and one which turns out to be larger is
+ * cancelled as soon as the limit is passed. Either way the body completes
+ * exceptionally with a {@link ResponseBodyException}.
+ */
+public final class BoundedBodyHandlers {
+    private BoundedBodyHandlers() {
+    }
+
+    /**
+     * Reads the body into a string, decoded with the charset from the
+     * {@code Content-Type} header, or UTF-8.
+     *
+     * @param maxBytes the maximum size of the body
+     * @return the body handler
+     */
+    public static HttpResponse.BodyHandler<String> ofString(long maxBytes) {
+        return info -> HttpResponse.BodySubscribers.mapping(
+            ofByteArray(maxBytes).apply(info),
+            bytes -> new String(bytes, charsetOf(info.headers())));
+    }
+
+    /**
+     * Reads the body into a byte array.
+     *
+     * @param maxBytes the maximum size of the body
+     * @return the body handler
+     */
+    public static HttpResponse.BodyHandler<byte[]> ofByteArray(long maxBytes) {
+        return info -> declaresMoreThan(info, maxBytes)
+            ? new Rejecting<>(ResponseBodyException.tooLarge(info.statusCode(), maxBytes))
+            : new BoundedByteArraySubscriber(info.statusCode(), maxBytes);
+    }
+
+    /**
+     * Decodes a body read with {@link #ofByteArray(long)} into a string, with
+     * the charset from the {@code Content-Type} header, or UTF-8.
+     *
+     * @param response the response
+     * @return the body as a string
+     */
+    public static String decodeString(HttpResponse<byte[]> response) {
+        return new String(response.body(), charsetOf(response.headers()));
+    }
+
+    /**
+     * Parses a body read with {@link #ofByteArray(long)} as JSON; an empty
+     * body parses to {@link com.google.gson.JsonNull}.
+     *
+     * @param response the response
+     * @return the body as JSON
+     * @throws UncheckedIOException wrapping a {@link ResponseBodyException} if the body is not JSON
+     */
+    public static JsonElement decodeJson(HttpResponse<byte[]> response) {
+        return parseJson(new ByteArrayInputStream(response.body()), charsetOf(response.headers()), response.statusCode());
+    }
+
+    /**
+     * Parses the body as JSON, straight from the response stream. The body is
+     * a supplier which blocks while it reads and parses the response, so it
+     * should be called off the HTTP client's threads. It throws an
+     * {@link UncheckedIOException} if the body is too large or is not JSON;
+     * an empty body parses to {@link com.google.gson.JsonNull}.
+     *
+     * @param maxBytes the maximum size of the body
+     * @return the body handler
+     */
+    public static HttpResponse.BodyHandler<Supplier<JsonElement>> ofJson(long maxBytes) {
+        return info -> {
+            if (declaresMoreThan(info, maxBytes)) {
+                return new Rejecting<>(ResponseBodyException.tooLarge(info.statusCode(), maxBytes));
+            }
+            var charset = charsetOf(info.headers());
+            return HttpResponse.BodySubscribers.mapping(
+                HttpResponse.BodySubscribers.ofInputStream(),
+                stream -> () -> parseJson(new LimitedInputStream(stream, info.statusCode(), maxBytes), charset, info.statusCode()));
+        };
+    }
+
+    private static JsonElement parseJson(InputStream stream, Charset charset, int statusCode) {
+        try (var reader = new InputStreamReader(stream, charset)) {
+            return JsonParser.parseReader(reader);
+        } catch (JsonParseException e) {
+            var tooLarge = ResponseBodyException.find(e);
+            throw new UncheckedIOException(tooLarge != null
+                ? tooLarge
+                : new ResponseBodyException(statusCode, "Response body is not valid JSON", e));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static boolean declaresMoreThan(HttpResponse.ResponseInfo info, long maxBytes) {
+        return info.headers().firstValueAsLong("Content-Length").orElse(-1) > maxBytes;
+    }
+
+    private static Charset charsetOf(HttpHeaders headers) {
+        var contentType = headers.firstValue("Content-Type").orElse("");
+        for (var parameter : contentType.split(";")) {
+            var pair = parameter.trim().split("=", 2);
+            if (pair.length == 2 && pair[0].trim().toLowerCase(Locale.ROOT).equals("charset")) {
+                try {
+                    return Charset.forName(pair[1].trim().replace("\"", ""));
+                } catch (IllegalArgumentException ignored) {
+                    return StandardCharsets.UTF_8;
+                }
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    /**
+     * Collects the body into a byte array, one batch of buffers at a time,
+     * cancelling the response once it grows past the limit.
+     */
+    private static final class BoundedByteArraySubscriber implements HttpResponse.BodySubscriber<byte[]> {
+        private final CompletableFuture<byte[]> body = new CompletableFuture<>();
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final int statusCode;
+        private final long maxBytes;
+        private Flow.Subscription subscription;
+
+        private BoundedByteArraySubscriber(int statusCode, long maxBytes) {
+            this.statusCode = statusCode;
+            this.maxBytes = Math.min(maxBytes, Integer.MAX_VALUE - 8);
+        }
+
+        @Override
+        public CompletionStage<byte[]> getBody() {
+            return this.body;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> buffers) {
+            for (var buffer : buffers) {
+                if (this.bytes.size() + (long) buffer.remaining() > this.maxBytes) {
+                    this.subscription.cancel();
+                    this.body.completeExceptionally(ResponseBodyException.tooLarge(this.statusCode, this.maxBytes));
+                    return;
+                }
+                var chunk = new byte[buffer.remaining()];
+                buffer.get(chunk);
+                this.bytes.write(chunk, 0, chunk.length);
+            }
+            this.subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            this.body.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            this.body.complete(this.bytes.toByteArray());
+        }
+    }
+
+    /**
+     * Cancels the response without reading any of its body.
+     */
+    private static final class Rejecting<T> implements HttpResponse.BodySubscriber<T> {
+        private final CompletableFuture<T> body = new CompletableFuture<>();
+        private final Throwable reason;
+
+        private Rejecting(Throwable reason) {
+            this.reason = reason;
+        }
+
+        @Override
+        public CompletionStage<T> getBody() {
+            return this.body;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.cancel();
+            this.body.completeExceptionally(this.reason);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> item) {
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            this.body.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            this.body.completeExceptionally(this.reason);
+        }
+    }
+
+    /**
+     * Counts the bytes read from a stream, and fails once more than the limit
+     * have been read. Closing this stream closes the response body, which
+     * cancels the rest of the response.
+     */
+    private static final class LimitedInputStream extends FilterInputStream {
+        private final int statusCode;
+        private final long maxBytes;
+        private long read;
+
+        private LimitedInputStream(InputStream in, int statusCode, long maxBytes) {
+            super(in);
+            this.statusCode = statusCode;
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                this.count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                this.count(n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            this.count(skipped);
+            return skipped;
+        }
+
+        private void count(long n) throws IOException {
+            this.read += n;
+            if (this.read > this.maxBytes) {
+                this.close();
+                throw ResponseBodyException.tooLarge(this.statusCode, this.maxBytes);
+            }
+        }
+    }
+}
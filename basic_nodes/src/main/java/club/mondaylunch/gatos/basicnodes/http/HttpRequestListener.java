@@ -0,0 +1,26 @@
+package club.mondaylunch.gatos.basicnodes.http;
+
+import java.net.http.HttpRequest;
+import java.time.Duration;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Told about every request sent through an {@link OutboundHttpClient}, for
+ * example to record metrics. Listeners are called on the client's threads, so
+ * they must be thread-safe and should return quickly. Anything they throw is
+ * logged and otherwise ignored, so it cannot stop the request's future from
+ * completing.
+ */
+@FunctionalInterface
+public interface HttpRequestListener {
+    /**
+     * Called when a request has finished, successfully or not.
+     *
+     * @param request    the request
+     * @param statusCode the response status code, or -1 if no response was received
+     * @param latency    the time from sending the request to receiving and reading the whole response
+     * @param failure    why the request, or reading its response, failed, or null if it succeeded
+     */
+    void onRequestFinished(HttpRequest request, int statusCode, Duration latency, @Nullable Throwable failure);
+}
@@ -0,0 +1,412 @@
+package club.mondaylunch.gatos.basicnodes.http;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.URI;
+import java.net.http.HttpHeaders;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import club.mondaylunch.gatos.core.Environment;
+import club.mondaylunch.gatos.core.GatosCore;
+
+/**
+ * A shared HTTP client for outbound requests made by flow nodes. One
+ * {@link HttpClient} is reused for every request, so connections, TLS
+ * sessions and HTTP/2 streams are pooled between flow executions.
+ * <p>
+ * At most {@link Settings#maxConnectionsPerHost()} requests are in flight to
+ * any one host; further requests wait in line for that host. Each host may
+ * also be given a token-bucket rate limit, in which case requests over the
+ * limit are delayed until a token is free. Requests without a timeout of
+ * their own get {@link Settings#requestTimeout()}.
+ * </p>
+ * <p>
+ * Idempotent requests sent with {@link #sendIdempotent(HttpRequest, long)}
+ * are coalesced: while one is in flight, identical requests share its
+ * response rather than being sent again. Responses to GET requests can also be
+ * cached for a short time, keyed by the URL and headers of the request.
+ * </p>
+ */
+public final class OutboundHttpClient {
+    private static final int MAX_RATE_LIMITED_HOSTS = 4096;
+
+    private final HttpClient client;
+    private final Settings settings;
+    private final Map<String, HostQueue> hosts = new ConcurrentHashMap<>();
+    private final Map<String, TokenBucket> rateLimits = new ConcurrentHashMap<>();
+    private final Map<RequestKey, CompletableFuture<HttpResponse<byte[]>>> sharedRequests = new ConcurrentHashMap<>();
+    private final Map<RequestKey, CachedResponse> cache = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final List<HttpRequestListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Creates a client.
+     *
+     * @param settings the client settings
+     */
+    public OutboundHttpClient(Settings settings) {
+        this.settings = settings;
+        this.client = HttpClient.newBuilder()
+            .connectTimeout(settings.connectTimeout())
+            .version(settings.preferHttp2() ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+            .build();
+    }
+
+    /**
+     * Sends a request asynchronously, once the request's host has a free
+     * connection.
+     *
+     * @param request     the request
+     * @param bodyHandler the handler for the response body
+     * @param <T>         the type of the response body
+     * @return a future of the response
+     */
+    public <T> CompletableFuture<HttpResponse<T>> send(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) {
+        return this.send(request, bodyHandler, CompletableFuture::completedFuture);
+    }
+
+    /**
+     * Sends a request asynchronously, as for
+     * {@link #send(HttpRequest, HttpResponse.BodyHandler)}, then reads the
+     * response on an executor. This is for body handlers such as
+     * {@link BoundedBodyHandlers#ofJson(long)}, whose response arrives as soon
+     * as its headers do and whose body is read later: the request keeps its
+     * connection to the host, and is not finished as far as listeners are
+     * concerned, until {@code read} has returned.
+     *
+     * @param request     the request
+     * @param bodyHandler the handler for the response body
+     * @param read        reads the response, including its body
+     * @param executor    the executor to read the response on
+     * @param <T>         the type of the response body
+     * @param <R>         the type of what is read from the response
+     * @return a future of what is read from the response
+     */
+    public <T, R> CompletableFuture<R> sendAndRead(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler, Function<HttpResponse<T>, R> read, Executor executor) {
+        return this.send(request, bodyHandler, response -> CompletableFuture.supplyAsync(() -> read.apply(response), executor));
+    }
+
+    private <T, R> CompletableFuture<R> send(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler, Function<HttpResponse<T>, CompletableFuture<R>> read) {
+        var timedRequest = request.timeout().isPresent()
+            ? request
+            : HttpRequest.newBuilder(request, (name, value) -> true).timeout(this.settings.requestTimeout()).build();
+        var host = String.valueOf(request.uri().getHost());
+        var result = new CompletableFuture<R>();
+        this.afterRateLimit(host, () -> this.acquire(host, () -> {
+            this.inFlight.incrementAndGet();
+            long start = System.nanoTime();
+            int[] statusCode = {-1};
+            CompletableFuture<R> response;
+            try {
+                response = this.client.sendAsync(timedRequest, bodyHandler).thenCompose(value -> {
+                    statusCode[0] = value.statusCode();
+                    return read.apply(value);
+                });
+            } catch (RuntimeException e) {
+                response = CompletableFuture.failedFuture(e);
+            }
+            response.whenComplete((value, error) -> {
+                var failure = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                this.inFlight.decrementAndGet();
+                this.release(host);
+                var latency = Duration.ofNanos(System.nanoTime() - start);
+                for (var listener : this.listeners) {
+                    try {
+                        listener.onRequestFinished(timedRequest, statusCode[0], latency, failure);
+                    } catch (RuntimeException e) {
+                        GatosCore.LOGGER.error("HTTP request listener failed", e);
+                    }
+                }
+                if (failure == null) {
+                    result.complete(value);
+                } else {
+                    result.completeExceptionally(failure);
+                }
+            });
+        }));
+        return result;
+    }
+
+    /**
+     * Sends a request asynchronously, reading the body into a byte array. If
+     * the request is idempotent - a GET or HEAD without a body - and an
+     * identical request is already in flight, no new request is sent and
+     * the response to that one is shared. Responses to GET requests are cached
+     * if {@link Settings#getCacheTtl()} is positive.
+     *
+     * @param request  the request
+     * @param maxBytes the maximum size of the body, as for {@link BoundedBodyHandlers#ofByteArray(long)}
+     * @return a future of the response, which must not be modified
+     */
+    public CompletableFuture<HttpResponse<byte[]>> sendIdempotent(HttpRequest request, long maxBytes) {
+        if (!isIdempotent(request)) {
+            return this.send(request, BoundedBodyHandlers.ofByteArray(maxBytes));
+        }
+
+        var key = new RequestKey(request.method(), request.uri(), request.headers(), maxBytes);
+        var cached = this.cache.get(key);
+        if (cached != null) {
+            if (cached.expiresAt() - System.nanoTime() > 0) {
+                return CompletableFuture.completedFuture(cached.response());
+            }
+            this.cache.remove(key, cached);
+        }
+
+        var shared = new CompletableFuture<HttpResponse<byte[]>>();
+        var existing = this.sharedRequests.putIfAbsent(key, shared);
+        if (existing != null) {
+            return existing.copy();
+        }
+        this.send(request, BoundedBodyHandlers.ofByteArray(maxBytes)).whenComplete((response, error) -> {
+            // cache the response before it stops being shared, so no identical request slips through in between
+            if (response != null && this.isCacheable(key, response)) {
+                this.putInCache(key, new CachedResponse(response, System.nanoTime() + this.settings.getCacheTtl().toNanos()));
+            }
+            this.sharedRequests.remove(key, shared);
+            if (error == null) {
+                shared.complete(response);
+            } else {
+                shared.completeExceptionally(error);
+            }
+        });
+        return shared.copy();
+    }
+
+    /**
+     * Gets the number of requests which have been sent and not yet finished.
+     * Requests waiting for a connection to their host are not counted.
+     *
+     * @return the number of requests in flight
+     */
+    public int inFlightRequests() {
+        return this.inFlight.get();
+    }
+
+    /**
+     * Adds a listener which is told about every request this client sends.
+     *
+     * @param listener the listener
+     */
+    public void addListener(HttpRequestListener listener) {
+        this.listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener added with {@link #addListener(HttpRequestListener)}.
+     *
+     * @param listener the listener
+     */
+    public void removeListener(HttpRequestListener listener) {
+        this.listeners.remove(listener);
+    }
+
+    private void afterRateLimit(String host, Runnable start) {
+        if (this.settings.hostRateLimit() <= 0) {
+            start.run();
+            return;
+        }
+        if (this.rateLimits.size() > MAX_RATE_LIMITED_HOSTS) {
+            long now = System.nanoTime();
+            this.rateLimits.values().removeIf(bucket -> bucket.isFull(now));
+        }
+        long delay = this.rateLimits
+            .computeIfAbsent(host, $ -> new TokenBucket(this.settings.hostRateLimit(), Math.max(1, this.settings.hostRateBurst())))
+            .reserve(System.nanoTime());
+        if (delay <= 0) {
+            start.run();
+        } else {
+            CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS).execute(start);
+        }
+    }
+
+    private static boolean isIdempotent(HttpRequest request) {
+        var method = request.method();
+        return (method.equals("GET") || method.equals("HEAD"))
+            && request.bodyPublisher().map(publisher -> publisher.contentLength() == 0).orElse(true);
+    }
+
+    private boolean isCacheable(RequestKey key, HttpResponse<byte[]> response) {
+        if (this.settings.getCacheTtl().isZero() || this.settings.getCacheTtl().isNegative()
+            || !key.method().equals("GET")
+            || response.statusCode() < 200 || response.statusCode() >= 300) {
+            return false;
+        }
+        var cacheControl = String.join(",", response.headers().allValues("Cache-Control")).toLowerCase(Locale.ROOT);
+        return !cacheControl.contains("no-store") && !cacheControl.contains("no-cache") && !cacheControl.contains("private");
+    }
+
+    private void putInCache(RequestKey key, CachedResponse response) {
+        if (this.cache.size() >= this.settings.getCacheMaxEntries()) {
+            long now = System.nanoTime();
+            this.cache.values().removeIf(cached -> cached.expiresAt() - now <= 0);
+            var keys = this.cache.keySet().iterator();
+            while (this.cache.size() >= this.settings.getCacheMaxEntries() && keys.hasNext()) {
+                keys.next();
+                keys.remove();
+            }
+        }
+        if (this.settings.getCacheMaxEntries() > 0) {
+            this.cache.put(key, response);
+        }
+    }
+
+    private void acquire(String host, Runnable start) {
+        boolean[] startNow = {false};
+        this.hosts.compute(host, ($, queue) -> {
+            if (queue == null) {
+                queue = new HostQueue();
+            }
+            if (queue.active < this.settings.maxConnectionsPerHost()) {
+                queue.active++;
+                startNow[0] = true;
+            } else {
+                queue.waiting.add(start);
+            }
+            return queue;
+        });
+        if (startNow[0]) {
+            start.run();
+        }
+    }
+
+    private void release(String host) {
+        Runnable[] next = {null};
+        this.hosts.computeIfPresent(host, ($, queue) -> {
+            next[0] = queue.waiting.poll();
+            if (next[0] == null) {
+                queue.active--;
+                return queue.active == 0 ? null : queue;
+            }
+            return queue;
+        });
+        if (next[0] != null) {
+            next[0].run();
+        }
+    }
+
+    /**
+     * The requests in flight to, and waiting for, a single host. Only
+     * accessed within {@link ConcurrentHashMap#compute} for its host.
+     */
+    private static final class HostQueue {
+        private final Queue<Runnable> waiting = new ArrayDeque<>();
+        private int active;
+    }
+
+    /**
+     * A token bucket holding up to {@code burst} tokens, refilled at
+     * {@code rate} tokens per second. Tokens may be borrowed from the future,
+     * so a request which finds the bucket empty is told how long to wait for
+     * the token it has reserved.
+     */
+    private static final class TokenBucket {
+        private final double rate;
+        private final double burst;
+        private double tokens;
+        private long refilledAt;
+
+        private TokenBucket(int rate, int burst) {
+            this.rate = rate;
+            this.burst = burst;
+            this.tokens = burst;
+            this.refilledAt = System.nanoTime();
+        }
+
+        /**
+         * Takes a token.
+         *
+         * @param now the current {@link System#nanoTime()}
+         * @return how many nanoseconds to wait before using the token
+         */
+        private synchronized long reserve(long now) {
+            this.refill(now);
+            this.tokens--;
+            return this.tokens >= 0 ? 0 : (long) Math.ceil(-this.tokens / this.rate * 1e9);
+        }
+
+        private synchronized boolean isFull(long now) {
+            this.refill(now);
+            return this.tokens >= this.burst;
+        }
+
+        private void refill(long now) {
+            this.tokens = Math.min(this.burst, this.tokens + (now - this.refilledAt) * this.rate / 1e9);
+            this.refilledAt = now;
+        }
+    }
+
+    /**
+     * What makes two idempotent requests identical.
+     */
+    private record RequestKey(String method, URI uri, HttpHeaders headers, long maxBytes) {
+    }
+
+    private record CachedResponse(HttpResponse<byte[]> response, long expiresAt) {
+    }
+
+    /**
+     * Settings for an {@link OutboundHttpClient}.
+     *
+     * @param connectTimeout        how long to wait for a connection to be established
+     * @param requestTimeout        how long to wait for a response, if the request has no timeout of its own
+     * @param maxConnectionsPerHost the maximum number of requests in flight to a single host
+     * @param preferHttp2           whether to try HTTP/2 before HTTP/1.1
+     * @param hostRateLimit         the number of requests per second allowed to a single host, or 0 for no limit
+     * @param hostRateBurst         the number of requests which may be sent to a single host at once before its rate limit applies
+     * @param getCacheTtl           how long responses to GET requests are cached for, or zero to not cache them
+     * @param getCacheMaxEntries    the maximum number of cached responses
+     */
+    public record Settings(
+        Duration connectTimeout,
+        Duration requestTimeout,
+        int maxConnectionsPerHost,
+        boolean preferHttp2,
+        int hostRateLimit,
+        int hostRateBurst,
+        Duration getCacheTtl,
+        int getCacheMaxEntries
+    ) {
+        /**
+         * Creates settings without rate limits or caching.
+         *
+         * @param connectTimeout        how long to wait for a connection to be established
+         * @param requestTimeout        how long to wait for a response, if the request has no timeout of its own
+         * @param maxConnectionsPerHost the maximum number of requests in flight to a single host
+         * @param preferHttp2           whether to try HTTP/2 before HTTP/1.1
+         */
+        public Settings(Duration connectTimeout, Duration requestTimeout, int maxConnectionsPerHost, boolean preferHttp2) {
+            this(connectTimeout, requestTimeout, maxConnectionsPerHost, preferHttp2, 0, 0, Duration.ZERO, 0);
+        }
+
+        /**
+         * Reads the settings from the {@link Environment}.
+         *
+         * @return the settings
+         */
+        public static Settings fromEnvironment() {
+            return new Settings(
+                Duration.ofMillis(Environment.getHttpConnectTimeoutMillis()),
+                Duration.ofMillis(Environment.getHttpRequestTimeoutMillis()),
+                Math.max(1, Environment.getHttpMaxConnectionsPerHost()),
+                Environment.isHttp2Preferred(),
+                Environment.getHttpHostRateLimit(),
+                Environment.getHttpHostRateBurst(),
+                Duration.ofMillis(Environment.getHttpGetCacheTtlMillis()),
+                Environment.getHttpGetCacheMaxEntries());
+        }
+    }
+}
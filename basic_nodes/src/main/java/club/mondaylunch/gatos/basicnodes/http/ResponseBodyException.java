@@ -0,0 +1,54 @@
+package club.mondaylunch.gatos.basicnodes.http;
+
+import java.io.IOException;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Thrown when a response was received but its body could not be read, either
+ * because it was larger than allowed or because it could not be parsed.
+ */
+public class ResponseBodyException extends IOException {
+    private final int statusCode;
+
+    /**
+     * Creates an exception.
+     *
+     * @param statusCode the status code of the response
+     * @param message    why the body could not be read
+     * @param cause      the underlying error, if any
+     */
+    public ResponseBodyException(int statusCode, String message, @Nullable Throwable cause) {
+        super(message, cause);
+        this.statusCode = statusCode;
+    }
+
+    /**
+     * Gets the status code of the response whose body could not be read.
+     *
+     * @return the status code
+     */
+    public int statusCode() {
+        return this.statusCode;
+    }
+
+    /**
+     * Finds a ResponseBodyException in the causes of an exception.
+     *
+     * @param throwable the exception
+     * @return the ResponseBodyException, or null if there is none
+     */
+    @Nullable
+    public static ResponseBodyException find(@Nullable Throwable throwable) {
+        for (var cause = throwable; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ResponseBodyException bodyException) {
+                return bodyException;
+            }
+        }
+        return null;
+    }
+
+    static ResponseBodyException tooLarge(int statusCode, long maxBytes) {
+        return new ResponseBodyException(statusCode, "Response body is larger than " + maxBytes + " bytes", null);
+    }
+}
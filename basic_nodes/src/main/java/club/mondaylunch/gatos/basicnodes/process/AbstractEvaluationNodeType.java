@@ -35,6 +35,11 @@ public abstract class AbstractEvaluationNodeType extends NodeType.Process {
         );
     }
 
+    @Override
+    public boolean isPure() {
+        return true;
+    }
+
     @Override
     public Map<String, CompletableFuture<DataBox<?>>> compute(UUID userId, Map<String, DataBox<?>> inputs, Map<String, DataBox<?>> settings, Map<String, DataType<?>> inputTypes) {
         var inputType = inputTypes.getOrDefault("input", DataType.ANY);
@@ -40,6 +40,11 @@ public abstract class AbstractListSeparationNodeType extends NodeType.Process {
         );
     }
 
+    @Override
+    public boolean isPure() {
+        return true;
+    }
+
     @Override
     public Map<String, CompletableFuture<DataBox<?>>> compute(UUID userId, Map<String, DataBox<?>> inputs, Map<String, DataBox<?>> settings, Map<String, DataType<?>> inputTypes) {
         var inputList = DataBox.get(inputs, "input", ListDataType.GENERIC_LIST).orElse(List.of());
@@ -40,6 +40,11 @@ public class AddElementToListNodeType extends NodeType.Process {
         );
     }
 
+    @Override
+    public boolean isPure() {
+        return true;
+    }
+
     @Override
     public Map<String, CompletableFuture<DataBox<?>>> compute(UUID userId, Map<String, DataBox<?>> inputs, Map<String, DataBox<?>> settings, Map<String, DataType<?>> inputTypes) {
         var inputListType = this.getExactListType(inputTypes.getOrDefault("list", ListDataType.GENERIC_LIST));
@@ -37,6 +37,11 @@ public class BooleanOperationNodeType extends NodeType.Process {
             new NodeConnector.Output<>(nodeId, "output", DataType.BOOLEAN));
     }
 
+    @Override
+    public boolean isPure() {
+        return true;
+    }
+
     @Override
     public Map<String, CompletableFuture<DataBox<?>>> compute(UUID userId, Map<String, DataBox<?>> inputs, Map<String, DataBox<?>> settings, Map<String, DataType<?>> inputTypes) {
         Mode mode = DataBox.get(settings, "mode", BOOL_OPERATION_MODE).orElseThrow();
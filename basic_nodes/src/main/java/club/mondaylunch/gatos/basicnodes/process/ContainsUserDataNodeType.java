@@ -55,16 +55,12 @@ public class ContainsUserDataNodeType extends NodeType.Process {
     public Map<String, CompletableFuture<DataBox<?>>> compute(UUID userId, Map<String, DataBox<?>> inputs, Map<String, DataBox<?>> settings, Map<String, DataType<?>> inputTypes) {
         var key = DataBox.get(settings, inputs, "key", DataType.STRING, Predicate.not(String::isBlank)).orElseThrow();
         var type = DataBox.get(settings, "type", DataType.DATA_TYPE).orElse(DataType.ANY);
-        return Map.of(
-            "contains", CompletableFuture.supplyAsync(() -> {
-                boolean contains;
-                if (type.equals(DataType.ANY)) {
-                    contains = UserData.objects.contains(userId, key);
-                } else {
-                    contains = UserData.objects.contains(userId, key, type);
-                }
-                return DataType.BOOLEAN.create(contains);
-            })
-        );
+        CompletableFuture<Boolean> contains;
+        if (type.equals(DataType.ANY)) {
+            contains = UserData.objects.containsAsync(userId, key);
+        } else {
+            contains = UserData.objects.containsAsync(userId, key, type);
+        }
+        return Map.of("contains", contains.thenApply(DataType.BOOLEAN::create));
     }
 }
@@ -32,6 +32,11 @@ public class EmptyListNodeType extends NodeType.Process {
         );
     }
 
+    @Override
+    public boolean isPure() {
+        return true;
+    }
+
     @Override
     public Map<String, CompletableFuture<DataBox<?>>> compute(UUID userId, Map<String, DataBox<?>> inputs, Map<String, DataBox<?>> settings, Map<String, DataType<?>> inputTypes) {
         var containingType = DataBox.get(settings, "containing_type", DataType.DATA_TYPE).orElseThrow();
@@ -62,13 +62,10 @@ public class GetUserDataNodeType extends NodeType.Process {
         var type = DataBox.get(settings, "type", DataType.DATA_TYPE).orElse(DataType.ANY);
         @SuppressWarnings("unchecked")
         var optionalType = (DataType<Optional<?>>) (DataType<?>) type.optionalOf();
-        return Map.of(
-            "value", CompletableFuture.supplyAsync(() -> {
-                var valueOptional = UserData.objects.get(userId, key)
-                    .filter(dataBox -> Conversions.canConvert(dataBox.type(), type))
-                    .map(dataBox -> Conversions.convert(dataBox, type).value());
-                return optionalType.create(valueOptional);
-            })
-        );
+        var value = UserData.objects.getAsync(userId, key)
+            .thenApply(valueOptional -> valueOptional
+                .filter(dataBox -> Conversions.canConvert(dataBox.type(), type))
+                .map(dataBox -> Conversions.convert(dataBox, type).value()));
+        return Map.of("value", value.thenApply(optionalType::create));
     }
 }
@@ -4,11 +4,9 @@ import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpRequest.BodyPublishers;
 import java.net.http.HttpRequest.Builder;
-import java.net.http.HttpResponse;
 import java.net.http.HttpResponse.BodyHandlers;
 import java.util.Collection;
 import java.util.HashSet;
@@ -19,12 +17,19 @@ import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.Predicate;
 
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
 import org.jetbrains.annotations.Nullable;
 
+import club.mondaylunch.gatos.basicnodes.BasicNodes;
+import club.mondaylunch.gatos.basicnodes.http.BoundedBodyHandlers;
+import club.mondaylunch.gatos.basicnodes.http.ResponseBodyException;
 import club.mondaylunch.gatos.core.Either;
+import club.mondaylunch.gatos.core.Environment;
 import club.mondaylunch.gatos.core.GatosUtils;
 import club.mondaylunch.gatos.core.data.DataBox;
 import club.mondaylunch.gatos.core.data.DataType;
+import club.mondaylunch.gatos.core.executor.FlowExecutors;
 import club.mondaylunch.gatos.core.graph.Graph;
 import club.mondaylunch.gatos.core.graph.GraphValidityError;
 import club.mondaylunch.gatos.core.graph.Node;
@@ -34,12 +39,28 @@ import club.mondaylunch.gatos.core.graph.connector.NodeConnector.Output;
 import club.mondaylunch.gatos.core.graph.type.NodeType;
 import club.mondaylunch.gatos.core.models.Flow;
 
+/**
+ * Sends an HTTP request and outputs the response.
+ * <p>
+ * The {@code response_format} setting decides what is done with the response
+ * body: {@code text} outputs it as {@code responseText}, {@code json} parses it
+ * straight from the response stream into {@code responseJson}, and
+ * {@code none} discards it unread, leaving only {@code statusCode}. Bodies
+ * larger than {@code max_body_size} bytes are cancelled as soon as the limit
+ * is passed, and the body output is replaced with an error message (or JSON
+ * null).
+ * </p>
+ */
 public class HTTPRequestNodeType extends NodeType.Process {
+    private static final String INVALID_REQUEST = "URL or method are incorrect";
+
     @Override
     public Map<String, DataBox<?>> settings() {
         return Map.of(
             "url", DataType.STRING.create(""),
-            "method", DataType.STRING.create("")
+            "method", DataType.STRING.create(""),
+            "response_format", DataType.STRING.create(ResponseFormat.TEXT.id),
+            "max_body_size", DataType.NUMBER.create((double) Environment.getHttpMaxBodyBytes())
         );
     }
 
@@ -59,6 +80,8 @@ public class HTTPRequestNodeType extends NodeType.Process {
                 }
             }),
             GraphValidityError.ensureSetting(node, "method", DataType.STRING, s -> s.isBlank() ? "Method cannot be blank" : null),
+            GraphValidityError.ensureSetting(node, "response_format", DataType.STRING, s -> ResponseFormat.byId(s) == null ? "Response format must be text, json or none" : null),
+            GraphValidityError.ensureSetting(node, "max_body_size", DataType.NUMBER, n -> n >= 1 ? null : "Maximum body size must be at least 1 byte"),
             super.isValid(node, flowOrGraph));
     }
 
@@ -78,10 +101,12 @@ public class HTTPRequestNodeType extends NodeType.Process {
 
     @Override
     public Set<Output<?>> outputs(UUID nodeId, Map<String, DataBox<?>> settings, Map<String, DataType<?>> inputTypes) {
-        return Set.of(
-            new NodeConnector.Output<>(nodeId, "statusCode", DataType.NUMBER),
-            new NodeConnector.Output<>(nodeId, "responseText", DataType.STRING)
-        );
+        var statusCode = new NodeConnector.Output<>(nodeId, "statusCode", DataType.NUMBER);
+        return switch (getResponseFormat(settings)) {
+            case TEXT -> Set.of(statusCode, new NodeConnector.Output<>(nodeId, "responseText", DataType.STRING));
+            case JSON -> Set.of(statusCode, new NodeConnector.Output<>(nodeId, "responseJson", DataType.JSON_ELEMENT));
+            case NONE -> Set.of(statusCode);
+        };
     }
 
     @Override
@@ -93,28 +118,51 @@ public class HTTPRequestNodeType extends NodeType.Process {
         var method = DataBox.get(settings, "method", DataType.STRING).orElse("").toUpperCase();
         var body = DataBox.get(inputs, "body", DataType.STRING).orElse("");
 
+        var format = getResponseFormat(settings);
+        // nodes saved before max_body_size existed have no such setting, so they get the default
+        long maxBodySize = (long) Math.max(1, DataBox.get(settings, "max_body_size", DataType.NUMBER).orElse((double) Environment.getHttpMaxBodyBytes()));
+
         // get uri by checking url and method
         URI uri = this.getURI(url, method);
         if (uri == null) {
-            return this.handleInvalidReturns();
+            return this.outputs(format, CompletableFuture.completedFuture(Result.INVALID));
         }
 
         // the url and method are valid, so we create and send the request
         HttpRequest request = this.createRequest(method, uri, body);
-        HttpClient httpClient = HttpClient.newHttpClient();
 
-        CompletableFuture<HttpResponse<String>> future = httpClient.sendAsync(request, BodyHandlers.ofString()).exceptionally(ex -> null);
-        return Map.of(
-            "statusCode", future.thenApply(response -> response == null ? DataType.NUMBER.create(404.0) : DataType.NUMBER.create((double) response.statusCode())),
-            "responseText", future.thenApply(response -> response == null ? DataType.STRING.create("URL or method are incorrect") : DataType.STRING.create(response.body()))
-        );
+        CompletableFuture<Result> future;
+        if (format == ResponseFormat.NONE) {
+            future = BasicNodes.HTTP_CLIENT.send(request, BodyHandlers.discarding())
+                .thenApply(response -> new Result(response.statusCode(), "", JsonNull.INSTANCE));
+        } else if (method.equals("GET")) {
+            // identical GETs from concurrent executions share one upstream request, so the body is buffered to be shared
+            future = BasicNodes.HTTP_CLIENT.sendIdempotent(request, maxBodySize).thenApply(response -> format == ResponseFormat.TEXT
+                ? new Result(response.statusCode(), BoundedBodyHandlers.decodeString(response), JsonNull.INSTANCE)
+                : new Result(response.statusCode(), "", BoundedBodyHandlers.decodeJson(response)));
+        } else if (format == ResponseFormat.TEXT) {
+            future = BasicNodes.HTTP_CLIENT.send(request, BoundedBodyHandlers.ofString(maxBodySize))
+                .thenApply(response -> new Result(response.statusCode(), response.body(), JsonNull.INSTANCE));
+        } else {
+            // the response stream is read as it arrives, which blocks, so it is parsed off the client's threads
+            future = BasicNodes.HTTP_CLIENT.sendAndRead(request, BoundedBodyHandlers.ofJson(maxBodySize),
+                response -> new Result(response.statusCode(), "", response.body().get()), FlowExecutors.blocking());
+        }
+        return this.outputs(format, future.exceptionally(Result::failed));
     }
 
-    private Map<String, CompletableFuture<DataBox<?>>> handleInvalidReturns() {
-        return Map.of(
-            "statusCode", CompletableFuture.completedFuture(DataType.NUMBER.create(404.0)),
-            "responseText", CompletableFuture.completedFuture(DataType.STRING.create("URL or method are incorrect"))
-        );
+    private Map<String, CompletableFuture<DataBox<?>>> outputs(ResponseFormat format, CompletableFuture<Result> result) {
+        CompletableFuture<DataBox<?>> statusCode = result.thenApply(r -> DataType.NUMBER.create(r.statusCode()));
+        return switch (format) {
+            case TEXT -> Map.of("statusCode", statusCode, "responseText", result.thenApply(r -> DataType.STRING.create(r.text())));
+            case JSON -> Map.of("statusCode", statusCode, "responseJson", result.thenApply(r -> DataType.JSON_ELEMENT.create(r.json())));
+            case NONE -> Map.of("statusCode", statusCode);
+        };
+    }
+
+    private static ResponseFormat getResponseFormat(Map<String, DataBox<?>> settings) {
+        var format = ResponseFormat.byId(DataBox.get(settings, "response_format", DataType.STRING).orElse(""));
+        return format == null ? ResponseFormat.TEXT : format;
     }
 
     @Nullable
@@ -149,6 +197,46 @@ public class HTTPRequestNodeType extends NodeType.Process {
         };
     }
 
+    /**
+     * What becomes of a response, whether or not its body could be read.
+     *
+     * @param statusCode the status code, or 404 if no response was received
+     * @param text       the body as text, or an error message
+     * @param json       the body as JSON, or JSON null
+     */
+    private record Result(double statusCode, String text, JsonElement json) {
+        private static final Result INVALID = new Result(404.0, INVALID_REQUEST, JsonNull.INSTANCE);
+
+        private static Result failed(Throwable failure) {
+            var bodyFailure = ResponseBodyException.find(failure);
+            return bodyFailure == null
+                ? INVALID
+                : new Result(bodyFailure.statusCode(), bodyFailure.getMessage(), JsonNull.INSTANCE);
+        }
+    }
+
+    private enum ResponseFormat {
+        TEXT("text"),
+        JSON("json"),
+        NONE("none");
+
+        private final String id;
+
+        ResponseFormat(String id) {
+            this.id = id;
+        }
+
+        @Nullable
+        private static ResponseFormat byId(String id) {
+            for (var format : values()) {
+                if (format.id.equalsIgnoreCase(id.trim())) {
+                    return format;
+                }
+            }
+            return null;
+        }
+    }
+
     private enum Methods {
         GET("GET"),
         POST("POST"),
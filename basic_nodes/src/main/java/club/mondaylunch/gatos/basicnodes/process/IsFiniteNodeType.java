@@ -31,6 +31,11 @@ public class IsFiniteNodeType extends NodeType.Process {
             new Output<>(nodeId, "output", DataType.BOOLEAN));
     }
 
+    @Override
+    public boolean isPure() {
+        return true;
+    }
+
     @Override
     public Map<String, CompletableFuture<DataBox<?>>> compute(UUID userId, Map<String, DataBox<?>> inputs, Map<String, DataBox<?>> settings, Map<String, DataType<?>> inputTypes) {
         double input = DataBox.get(inputs, "input", DataType.NUMBER).orElse(Double.NaN);
@@ -31,6 +31,11 @@ public class ListDistinctNodeType extends NodeType.Process {
             new NodeConnector.Output<>(nodeId, "output", outputType));
     }
 
+    @Override
+    public boolean isPure() {
+        return true;
+    }
+
     @Override
     public Map<String, CompletableFuture<DataBox<?>>> compute(UUID userId, Map<String, DataBox<?>> inputs, Map<String, DataBox<?>> settings, Map<String, DataType<?>> inputTypes) {
         var inputListCopy = List.copyOf(DataBox.get(inputs, "input", ListDataType.GENERIC_LIST).orElseThrow().stream().distinct().toList());
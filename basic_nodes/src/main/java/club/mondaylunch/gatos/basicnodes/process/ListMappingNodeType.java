@@ -1,6 +1,9 @@
 package club.mondaylunch.gatos.basicnodes.process;
 
+import java.util.AbstractMap;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -8,12 +11,17 @@ import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import club.mondaylunch.gatos.basicnodes.BasicNodes;
 import club.mondaylunch.gatos.core.Either;
+import club.mondaylunch.gatos.core.Environment;
 import club.mondaylunch.gatos.core.data.DataBox;
 import club.mondaylunch.gatos.core.data.DataType;
 import club.mondaylunch.gatos.core.data.ListDataType;
+import club.mondaylunch.gatos.core.executor.NodeExecutors;
 import club.mondaylunch.gatos.core.graph.Graph;
 import club.mondaylunch.gatos.core.graph.GraphValidityError;
 import club.mondaylunch.gatos.core.graph.Node;
@@ -29,6 +37,12 @@ public class ListMappingNodeType extends NodeType.Process {
     private static final String OUTPUT_CONNECTOR_SETTING = "output_connector";
     private static final String LIST_INPUT = "list_input";
     private static final String MAPPED_LIST_OUTPUT = "mapped_list";
+    /**
+     * Lists at least this long are mapped in chunks, in parallel.
+     */
+    private static final int PARALLEL_THRESHOLD = 1024;
+    private static final int CHUNK_SIZE = 256;
+    private static final Map<NodeType, Node> MAPPING_NODES = new ConcurrentHashMap<>();
 
     @Override
     public Map<String, DataBox<?>> settings() {
@@ -109,6 +123,11 @@ public class ListMappingNodeType extends NodeType.Process {
 
     @Override
     public Map<String, CompletableFuture<DataBox<?>>> compute(UUID userId, Map<String, DataBox<?>> inputs, Map<String, DataBox<?>> settings, Map<String, DataType<?>> inputTypes) {
+        return this.compute(userId, inputs, settings, inputTypes, NodeExecutors.shared());
+    }
+
+    @Override
+    public Map<String, CompletableFuture<DataBox<?>>> compute(UUID userId, Map<String, DataBox<?>> inputs, Map<String, DataBox<?>> settings, Map<String, DataType<?>> inputTypes, NodeExecutors executors) {
         var inputConnectorName = DataBox.get(settings, INPUT_CONNECTOR_SETTING, DataType.STRING).orElseThrow();
         var outputConnectorName = DataBox.get(settings, OUTPUT_CONNECTOR_SETTING, DataType.STRING).orElseThrow();
         var mappingNode = getMappingNode(settings);
@@ -119,9 +138,15 @@ public class ListMappingNodeType extends NodeType.Process {
         var inputListBox = inputs.get(LIST_INPUT);
         var inputListType = inputListBox.type();
         DataType<?> contentsType = inputListType instanceof ListDataType<?> listDataType ? listDataType.contains() : DataType.ANY;
-        List<CompletableFuture<Object>> resultList = mapInput(userId, (List<?>) inputListBox.value(), mappingNode, inputs, inputConnector, outputConnector, contentsType, (NodeType.Process) mappingNode.type());
-        CompletableFuture<Void> resultFuture = CompletableFuture.allOf(resultList.toArray(CompletableFuture[]::new));
-        return Map.of(MAPPED_LIST_OUTPUT, resultFuture.thenApply(v -> listOutputType.create(resultList.stream().map(CompletableFuture::join).toList())));
+        Map<String, DataBox<?>> otherInputs = new HashMap<>();
+        for (var input : mappingNode.inputs().values()) {
+            var value = inputs.get(input.name());
+            if (!input.equals(inputConnector) && value != null) {
+                otherInputs.put(input.name(), value);
+            }
+        }
+        var mapping = new ListMapping(userId, (List<?>) inputListBox.value(), mappingNode, otherInputs, inputConnector.name(), outputConnector.name(), contentsType, executors);
+        return Map.of(MAPPED_LIST_OUTPUT, mapping.run().thenApply(listOutputType::create));
     }
 
     @SuppressWarnings("unchecked")
@@ -129,53 +154,189 @@ public class ListMappingNodeType extends NodeType.Process {
         return (DataType<List<Object>>) (type == DataType.ANY ? ListDataType.GENERIC_LIST : type.listOf());
     }
 
-    @SuppressWarnings("unchecked")
-    private static <E1, E2> List<CompletableFuture<E2>> mapInput(
-        UUID flowId,
-        List<?> inputList,
-        Node mappingNode,
-        Map<String, DataBox<?>> inputs,
-        Input<?> inputConnector,
-        Output<?> outputConnector,
-        DataType<?> contentsType,
-        NodeType.Process mappingNodeType
-    ) {
-        return ((List<E1>) inputList).stream().map(element -> (CompletableFuture<E2>) mapSingleElement(
-            flowId,
-            element,
-            mappingNode,
-            inputs,
-            inputConnector,
-            outputConnector,
-            (DataType<E1>) contentsType,
-            mappingNodeType
-        )).toList();
+    private static Node getMappingNode(Map<String, DataBox<?>> settings) {
+        return MAPPING_NODES.computeIfAbsent(DataBox.get(settings, MAPPING_NODE_SETTING, DataType.PROCESS_NODE_TYPE).orElseThrow(), Node::create);
     }
 
-    @SuppressWarnings("unchecked")
-    private static <E1, E2> CompletableFuture<E2> mapSingleElement(
-        UUID flowId,
-        E1 element,
-        Node mappingNode,
-        Map<String, DataBox<?>> inputs,
-        Input<?> inputConnector,
-        Output<?> outputConnector,
-        DataType<E1> contentsType,
-        NodeType.Process mappingNodeType
-    ) {
-        var mappingNodeInputs = new HashMap<String, DataBox<?>>();
-        for (var input : mappingNode.inputs().values()) {
-            if (input.equals(inputConnector)) {
-                mappingNodeInputs.put(input.name(), contentsType.create(element));
+    /**
+     * A single computation of a list mapping node. Elements are handed out to
+     * a number of lanes, each of which computes the mapping node for one
+     * element at a time, so at most {@link Environment#getListMappingConcurrency()}
+     * elements are in flight at once. Short lists are mapped on the calling
+     * thread; long lists are split into chunks, with the lanes running on the
+     * flow's executor for the mapping node's execution mode. If any element
+     * fails to map, the whole mapping fails.
+     */
+    private static final class ListMapping {
+        private final UUID userId;
+        private final List<?> elements;
+        private final Node mappingNode;
+        private final NodeType.Process mappingNodeType;
+        private final Map<String, DataBox<?>> otherInputs;
+        private final String inputName;
+        private final String outputName;
+        private final DataType<?> contentsType;
+        private final NodeExecutors executors;
+        private final Object[] results;
+        private final AtomicInteger nextIndex = new AtomicInteger();
+        private final AtomicInteger remaining;
+        private final CompletableFuture<List<Object>> result = new CompletableFuture<>();
+        private final int chunkSize;
+
+        private ListMapping(
+            UUID userId,
+            List<?> elements,
+            Node mappingNode,
+            Map<String, DataBox<?>> otherInputs,
+            String inputName,
+            String outputName,
+            DataType<?> contentsType,
+            NodeExecutors executors
+        ) {
+            this.userId = userId;
+            this.elements = elements;
+            this.mappingNode = mappingNode;
+            this.mappingNodeType = (NodeType.Process) mappingNode.type();
+            this.otherInputs = otherInputs;
+            this.inputName = inputName;
+            this.outputName = outputName;
+            this.contentsType = contentsType;
+            this.executors = executors;
+            this.results = new Object[elements.size()];
+            this.remaining = new AtomicInteger(elements.size());
+            this.chunkSize = elements.size() < PARALLEL_THRESHOLD ? 1 : CHUNK_SIZE;
+        }
+
+        private CompletableFuture<List<Object>> run() {
+            int size = this.elements.size();
+            if (size == 0) {
+                return CompletableFuture.completedFuture(List.of());
+            }
+            int lanes = Math.max(1, Math.min(Environment.getListMappingConcurrency(), (size + this.chunkSize - 1) / this.chunkSize));
+            if (this.chunkSize == 1) {
+                for (int i = 0; i < lanes; i++) {
+                    this.runLane(-1, -1);
+                }
             } else {
-                mappingNodeInputs.put(input.name(), inputs.get(input.name()));
+                var executor = this.executors.forMode(this.mappingNodeType.executionMode());
+                try {
+                    for (int i = 0; i < lanes; i++) {
+                        executor.execute(() -> this.runLane(-1, -1));
+                    }
+                } catch (RuntimeException e) {
+                    this.fail(e);
+                }
+            }
+            return this.result;
+        }
+
+        /**
+         * Maps elements until the list runs out or an element has to be
+         * waited for, in which case the lane carries on once it completes.
+         *
+         * @param from the next index of the lane's current chunk, or -1 to claim a new chunk
+         * @param to   the end index (exclusive) of the lane's current chunk
+         */
+        private void runLane(int from, int to) {
+            while (!this.result.isDone()) {
+                if (from < 0 || from >= to) {
+                    from = this.nextIndex.getAndAdd(this.chunkSize);
+                    if (from >= this.elements.size()) {
+                        return;
+                    }
+                    to = Math.min(from + this.chunkSize, this.elements.size());
+                }
+                int index = from++;
+                CompletableFuture<DataBox<?>> output;
+                try {
+                    output = this.mapElement(this.elements.get(index));
+                } catch (Exception e) {
+                    this.fail(e);
+                    return;
+                }
+                if (output.isDone()) {
+                    this.complete(index, output);
+                } else {
+                    int nextFrom = from;
+                    int nextTo = to;
+                    // nothing is listening for exceptions thrown from here, so they have to fail the mapping
+                    output.whenComplete(($, error) -> {
+                        try {
+                            this.complete(index, output);
+                            this.runLane(nextFrom, nextTo);
+                        } catch (RuntimeException e) {
+                            this.fail(e);
+                        }
+                    });
+                    return;
+                }
+            }
+        }
+
+        private void complete(int index, CompletableFuture<DataBox<?>> output) {
+            DataBox<?> value;
+            try {
+                value = output.join();
+            } catch (Exception e) {
+                this.fail(e);
+                return;
+            }
+            if (value == null) {
+                this.fail(new IllegalStateException("Mapping node output " + this.outputName + " was null"));
+                return;
+            }
+            this.results[index] = value.value();
+            if (this.remaining.decrementAndGet() == 0) {
+                this.result.complete(Collections.unmodifiableList(Arrays.asList(this.results)));
+            }
+        }
+
+        private void fail(Throwable error) {
+            this.result.completeExceptionally(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+        }
+
+        @SuppressWarnings("unchecked")
+        private CompletableFuture<DataBox<?>> mapElement(Object element) {
+            var inputs = new ElementInputs(this.otherInputs, this.inputName, ((DataType<Object>) this.contentsType).create(element));
+            var outputs = this.mappingNodeType.compute(this.userId, inputs, this.mappingNode.settings(), this.mappingNode.inputTypes(), this.executors);
+            var output = outputs.get(this.outputName);
+            if (output == null) {
+                throw new IllegalStateException("Mapping node has no output " + this.outputName);
             }
+            return output;
         }
-        var results = mappingNodeType.compute(flowId, mappingNodeInputs, mappingNode.settings(), mappingNode.inputTypes());
-        return (CompletableFuture<E2>) results.get(outputConnector.name()).thenApply(DataBox::value);
     }
 
-    private static Node getMappingNode(Map<String, DataBox<?>> settings) {
-        return Node.create(DataBox.get(settings, MAPPING_NODE_SETTING, DataType.PROCESS_NODE_TYPE).orElseThrow());
+    /**
+     * The inputs of the mapping node for a single element: the list mapping
+     * node's other inputs, plus the element itself.
+     */
+    private static final class ElementInputs extends AbstractMap<String, DataBox<?>> {
+        private final Map<String, DataBox<?>> otherInputs;
+        private final String elementName;
+        private final DataBox<?> element;
+
+        private ElementInputs(Map<String, DataBox<?>> otherInputs, String elementName, DataBox<?> element) {
+            this.otherInputs = otherInputs;
+            this.elementName = elementName;
+            this.element = element;
+        }
+
+        @Override
+        public DataBox<?> get(Object key) {
+            return this.elementName.equals(key) ? this.element : this.otherInputs.get(key);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return this.elementName.equals(key) || this.otherInputs.containsKey(key);
+        }
+
+        @Override
+        public Set<Entry<String, DataBox<?>>> entrySet() {
+            Set<Entry<String, DataBox<?>>> entries = new HashSet<>(this.otherInputs.entrySet());
+            entries.add(new SimpleImmutableEntry<>(this.elementName, this.element));
+            return entries;
+        }
     }
 }
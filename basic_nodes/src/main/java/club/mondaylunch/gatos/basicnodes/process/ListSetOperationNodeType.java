@@ -38,6 +38,11 @@ public class ListSetOperationNodeType extends NodeType.Process {
             new NodeConnector.Output<>(nodeId, "output", outputType));
     }
 
+    @Override
+    public boolean isPure() {
+        return true;
+    }
+
     @Override
     public Map<String, CompletableFuture<DataBox<?>>> compute(UUID userId, Map<String, DataBox<?>> inputs, Map<String, DataBox<?>> settings, Map<String, DataType<?>> inputTypes) {
         var outputType = this.getOutputListTypeOrThrow(inputTypes, "list_first", "list_second");
@@ -32,6 +32,11 @@ public class ListSortNodeType extends NodeType.Process {
             new NodeConnector.Output<>(nodeId, "output", outputType));
     }
 
+    @Override
+    public boolean isPure() {
+        return true;
+    }
+
     @Override
     @SuppressWarnings({"unchecked", "rawtypes"})
     public Map<String, CompletableFuture<DataBox<?>>> compute(UUID userId, Map<String, DataBox<?>> inputs, Map<String, DataBox<?>> settings, Map<String, DataType<?>> inputTypes) {
@@ -33,6 +33,11 @@ public class MathNodeType extends NodeType.Process {
             new NodeConnector.Output<>(nodeId, "output", DataType.NUMBER));
     }
 
+    @Override
+    public boolean isPure() {
+        return true;
+    }
+
     @Override
     public Map<String, CompletableFuture<DataBox<?>>> compute(UUID userId, Map<String, DataBox<?>> inputs, Map<String, DataBox<?>> settings, Map<String, DataType<?>> inputTypes) {
         double a = DataBox.get(inputs, "inputA", DataType.NUMBER).orElseThrow();
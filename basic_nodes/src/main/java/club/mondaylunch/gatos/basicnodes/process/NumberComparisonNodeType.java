@@ -33,6 +33,11 @@ public class NumberComparisonNodeType extends NodeType.Process {
             new NodeConnector.Output<>(nodeId, "output", DataType.BOOLEAN));
     }
 
+    @Override
+    public boolean isPure() {
+        return true;
+    }
+
     @Override
     public Map<String, CompletableFuture<DataBox<?>>> compute(UUID userId, Map<String, DataBox<?>> inputs, Map<String, DataBox<?>> settings, Map<String, DataType<?>> inputTypes) {
         return Map.of("output", CompletableFuture.completedFuture(DataType.BOOLEAN.create(
@@ -33,6 +33,11 @@ public class ParseStringToObjectNodeType extends NodeType.Process {
             new NodeConnector.Output<>(nodeId, "output", DataType.JSON_OBJECT));
     }
 
+    @Override
+    public boolean isPure() {
+        return true;
+    }
+
     @Override
     public Map<String, CompletableFuture<DataBox<?>>> compute(UUID userId, Map<String, DataBox<?>> inputs, Map<String, DataBox<?>> settings, Map<String, DataType<?>> inputTypes) {
         var inputStr = DataBox.get(inputs, "input", DataType.STRING).orElseThrow();
@@ -8,8 +8,8 @@ import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
+import club.mondaylunch.gatos.basicnodes.BasicNodes;
 import club.mondaylunch.gatos.core.data.DataBox;
 import club.mondaylunch.gatos.core.data.DataType;
 import club.mondaylunch.gatos.core.graph.Node;
@@ -55,11 +55,16 @@ public class RegexNodeType extends NodeType.Process {
         );
     }
 
+    @Override
+    public boolean isPure() {
+        return true;
+    }
+
     @Override
     public Map<String, CompletableFuture<DataBox<?>>> compute(UUID userId, Map<String, DataBox<?>> inputs, Map<String, DataBox<?>> settings, Map<String, DataType<?>> inputTypes) {
-        var regex = Pattern.compile(DataBox.get(inputs, "regex", DataType.STRING).orElseThrow());
+        var regex = DataBox.get(inputs, "regex", DataType.STRING).orElseThrow();
         var word = DataBox.get(inputs, "word", DataType.STRING).orElseThrow();
-        var matcher = regex.matcher(word);
+        var matcher = BasicNodes.PATTERN_CACHE.matcher(regex, word);
 
         return Map.of(
             "isMatch", CompletableFuture.completedFuture(DataType.BOOLEAN.create(matcher.find())),
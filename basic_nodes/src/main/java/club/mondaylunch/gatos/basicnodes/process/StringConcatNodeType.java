@@ -29,6 +29,11 @@ public class StringConcatNodeType extends NodeType.Process {
             new NodeConnector.Output<>(nodeId, "output", DataType.STRING));
     }
 
+    @Override
+    public boolean isPure() {
+        return true;
+    }
+
     @Override
     public Map<String, CompletableFuture<DataBox<?>>> compute(UUID userId, Map<String, DataBox<?>> inputs, Map<String, DataBox<?>> settings, Map<String, DataType<?>> inputTypes) {
         var inputList = DataBox.get(inputs, "input", DataType.STRING.listOf()).orElse(List.of());
@@ -1,24 +1,25 @@
 package club.mondaylunch.gatos.basicnodes.process;
 
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.function.ToIntFunction;
-import java.util.regex.MatchResult;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 import club.mondaylunch.gatos.core.data.DataBox;
 import club.mondaylunch.gatos.core.data.DataType;
 import club.mondaylunch.gatos.core.graph.connector.NodeConnector;
 import club.mondaylunch.gatos.core.graph.type.NodeType;
+import club.mondaylunch.gatos.core.util.LruCache;
 
 public class StringInterpolationNodeType extends NodeType.Process {
     private static final Pattern PLACEHOLDER_PATTERN = Pattern
         .compile("(?<!\\\\)(?:\\\\\\\\)*\\{(?<name>(?:[\\h\\w]*)?)}");
+    private static final int MAX_CACHED_TEMPLATES = 1024;
+    private static final LruCache<String, Template> TEMPLATES = new LruCache<>(MAX_CACHED_TEMPLATES);
 
     @Override
     public Map<String, DataBox<?>> settings() {
@@ -28,14 +29,12 @@ public class StringInterpolationNodeType extends NodeType.Process {
 
     @Override
     public Set<NodeConnector.Input<?>> inputs(UUID nodeId, Map<String, DataBox<?>> settings, Map<String, DataType<?>> inputTypes) {
-        String template = DataBox.get(settings, "template", DataType.STRING).orElse("");
-        var matcher = PLACEHOLDER_PATTERN.matcher(template);
-        var matches = matcher.results().toList();
-        return matches.stream()
-            .map(match -> new NodeConnector.Input<>(nodeId,
-                getNameForPlaceholder(m -> matches.indexOf(m) + 1, match),
-                DataType.STRING))
-            .collect(Collectors.toSet());
+        var template = getTemplate(settings);
+        Set<NodeConnector.Input<?>> inputs = new LinkedHashSet<>();
+        for (var name : template.placeholders()) {
+            inputs.add(new NodeConnector.Input<>(nodeId, name, DataType.STRING));
+        }
+        return inputs;
     }
 
     @Override
@@ -44,25 +43,70 @@ public class StringInterpolationNodeType extends NodeType.Process {
             new NodeConnector.Output<>(nodeId, "output", DataType.STRING));
     }
 
+    @Override
+    public boolean isPure() {
+        return true;
+    }
+
     @Override
     public Map<String, CompletableFuture<DataBox<?>>> compute(UUID userId, Map<String, DataBox<?>> inputs,
                                                               Map<String, DataBox<?>> settings, Map<String, DataType<?>> inputTypes) {
-        String template = DataBox.get(settings, "template", DataType.STRING).orElse("");
-        var matcher = PLACEHOLDER_PATTERN.matcher(template);
-        AtomicInteger i = new AtomicInteger(0);
-        String output = matcher.replaceAll(match -> {
-            i.getAndIncrement();
-            return Matcher.quoteReplacement(
-                DataBox.get(inputs, getNameForPlaceholder($ -> i.get(), match), DataType.STRING)
-                    .orElse(""));
-        });
+        String output = getTemplate(settings).render(inputs);
         return Map.of(
             "output", CompletableFuture.completedFuture(DataType.STRING.create(output)));
     }
 
-    private static String getNameForPlaceholder(ToIntFunction<MatchResult> placeholderIndexer,
-                                                MatchResult placeholder) {
-        String name = placeholder.group(1);
-        return name.isBlank() ? "Placeholder " + (placeholderIndexer.applyAsInt(placeholder)) : name;
+    private static Template getTemplate(Map<String, DataBox<?>> settings) {
+        String source = DataBox.get(settings, "template", DataType.STRING).orElse("");
+        var template = TEMPLATES.get(source);
+        if (template == null) {
+            template = TEMPLATES.putIfAbsent(source, Template.parse(source));
+        }
+        return template;
+    }
+
+    /**
+     * A parsed template: the literal text around each placeholder, and the
+     * input name of each placeholder. Unnamed placeholders are named
+     * {@code Placeholder n}, where n counts every placeholder from 1.
+     *
+     * @param literals      the literal text before each placeholder, and after the last one
+     * @param placeholders  the input name of each placeholder, in order
+     * @param literalLength the total length of the literals
+     */
+    private record Template(List<String> literals, List<String> placeholders, int literalLength) {
+        private static Template parse(String source) {
+            List<String> literals = new ArrayList<>();
+            List<String> placeholders = new ArrayList<>();
+            int literalLength = 0;
+            int end = 0;
+            var matcher = PLACEHOLDER_PATTERN.matcher(source);
+            while (matcher.find()) {
+                var literal = source.substring(end, matcher.start());
+                literals.add(literal);
+                literalLength += literal.length();
+                String name = matcher.group("name");
+                placeholders.add(name.isBlank() ? "Placeholder " + (placeholders.size() + 1) : name);
+                end = matcher.end();
+            }
+            var last = source.substring(end);
+            literals.add(last);
+            literalLength += last.length();
+            return new Template(List.copyOf(literals), List.copyOf(placeholders), literalLength);
+        }
+
+        private String render(Map<String, DataBox<?>> inputs) {
+            var values = new String[this.placeholders.size()];
+            int length = this.literalLength;
+            for (int i = 0; i < values.length; i++) {
+                values[i] = DataBox.get(inputs, this.placeholders.get(i), DataType.STRING).orElse("");
+                length += values[i].length();
+            }
+            var output = new StringBuilder(length);
+            for (int i = 0; i < values.length; i++) {
+                output.append(this.literals.get(i)).append(values[i]);
+            }
+            return output.append(this.literals.get(values.length)).toString();
+        }
     }
 }
@@ -28,6 +28,11 @@ public class StringLengthNodeType extends NodeType.Process {
             new NodeConnector.Output<>(nodeId, "output", DataType.NUMBER));
     }
 
+    @Override
+    public boolean isPure() {
+        return true;
+    }
+
     @Override
     public Map<String, CompletableFuture<DataBox<?>>> compute(UUID userId, Map<String, DataBox<?>> inputs, Map<String, DataBox<?>> settings, Map<String, DataType<?>> inputTypes) {
         var inputStr = DataBox.get(inputs, "input", DataType.STRING).orElse("");
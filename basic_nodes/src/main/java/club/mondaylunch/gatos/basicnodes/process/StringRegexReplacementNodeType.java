@@ -5,6 +5,7 @@ import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 
+import club.mondaylunch.gatos.basicnodes.BasicNodes;
 import club.mondaylunch.gatos.core.data.DataBox;
 import club.mondaylunch.gatos.core.data.DataType;
 import club.mondaylunch.gatos.core.graph.connector.NodeConnector;
@@ -31,11 +32,16 @@ public class StringRegexReplacementNodeType extends NodeType.Process {
             new NodeConnector.Output<>(nodeId, "output", DataType.STRING));
     }
 
+    @Override
+    public boolean isPure() {
+        return true;
+    }
+
     @Override
     public Map<String, CompletableFuture<DataBox<?>>> compute(UUID userId, Map<String, DataBox<?>> inputs, Map<String, DataBox<?>> settings, Map<String, DataType<?>> inputTypes) {
         var inputStr = DataBox.get(inputs, "input", DataType.STRING).orElseThrow();
         var oldRgx = DataBox.get(settings, "regex_old", DataType.STRING).orElse("");
         var newRgx = DataBox.get(settings, "regex_new", DataType.STRING).orElse("");
-        return Map.of("output", CompletableFuture.completedFuture(DataType.STRING.create(inputStr.replaceAll(oldRgx, newRgx))));
+        return Map.of("output", CompletableFuture.completedFuture(DataType.STRING.create(BasicNodes.PATTERN_CACHE.matcher(oldRgx, inputStr).replaceAll(newRgx))));
     }
 }
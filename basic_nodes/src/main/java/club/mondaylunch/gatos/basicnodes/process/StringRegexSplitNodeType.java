@@ -6,6 +6,7 @@ import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 
+import club.mondaylunch.gatos.basicnodes.BasicNodes;
 import club.mondaylunch.gatos.core.data.DataBox;
 import club.mondaylunch.gatos.core.data.DataType;
 import club.mondaylunch.gatos.core.graph.connector.NodeConnector;
@@ -31,10 +32,15 @@ public class StringRegexSplitNodeType extends NodeType.Process {
             new NodeConnector.Output<>(nodeId, "output", DataType.STRING.listOf()));
     }
 
+    @Override
+    public boolean isPure() {
+        return true;
+    }
+
     @Override
     public Map<String, CompletableFuture<DataBox<?>>> compute(UUID userId, Map<String, DataBox<?>> inputs, Map<String, DataBox<?>> settings, Map<String, DataType<?>> inputTypes) {
         var inputStr = DataBox.get(inputs, "input", DataType.STRING).orElseThrow();
         var rgx = DataBox.get(settings, "regex", DataType.STRING).orElse("");
-        return Map.of("output", CompletableFuture.completedFuture(DataType.STRING.listOf().create(Arrays.stream(inputStr.split(rgx)).toList())));
+        return Map.of("output", CompletableFuture.completedFuture(DataType.STRING.listOf().create(Arrays.stream(BasicNodes.PATTERN_CACHE.split(rgx, inputStr)).toList())));
     }
 }
@@ -0,0 +1,192 @@
+package club.mondaylunch.gatos.basicnodes.regex;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import club.mondaylunch.gatos.core.Environment;
+import club.mondaylunch.gatos.core.util.LruCache;
+
+/**
+ * A cache of compiled regular expressions, shared by every regex node.
+ * <p>
+ * Holds at most {@code maxSize} patterns; when it is full, the least recently
+ * used pattern is evicted to make room. Patterns which fail to compile are not
+ * cached.
+ * </p>
+ * <p>
+ * Matching through this cache is also time limited: the input is wrapped so
+ * that the matcher fails with a {@link RegexTimeoutException} once it has run
+ * for longer than {@code matchTimeout}, rather than backtracking forever on a
+ * pathological pattern.
+ * </p>
+ */
+public final class PatternCache {
+    /**
+     * How many characters are read between checks of the deadline, so that
+     * reading the clock does not dominate matching.
+     */
+    private static final int DEADLINE_CHECK_INTERVAL = 1024;
+
+    private final LruCache<String, Pattern> patterns;
+    private final Duration matchTimeout;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+
+    /**
+     * Creates a cache.
+     *
+     * @param maxSize      the maximum number of patterns to keep
+     * @param matchTimeout how long a match may run for
+     */
+    public PatternCache(int maxSize, Duration matchTimeout) {
+        this.patterns = new LruCache<>(maxSize);
+        this.matchTimeout = matchTimeout;
+    }
+
+    /**
+     * Creates a cache with the size and match timeout from the
+     * {@link Environment}.
+     *
+     * @return the cache
+     */
+    public static PatternCache fromEnvironment() {
+        return new PatternCache(
+            Math.max(1, Environment.getRegexCacheSize()),
+            Duration.ofMillis(Environment.getRegexMatchTimeoutMillis()));
+    }
+
+    /**
+     * Gets the compiled form of a regular expression, compiling it if it is
+     * not cached.
+     *
+     * @param regex the regular expression
+     * @return the compiled pattern
+     * @throws PatternSyntaxException if the regular expression is invalid
+     */
+    public Pattern get(String regex) {
+        var pattern = this.patterns.get(regex);
+        if (pattern != null) {
+            this.hits.increment();
+            return pattern;
+        }
+        this.misses.increment();
+        return this.patterns.putIfAbsent(regex, Pattern.compile(regex));
+    }
+
+    /**
+     * Creates a time-limited matcher of a regular expression against an input.
+     * Any operation on the matcher which runs past the match timeout throws a
+     * {@link RegexTimeoutException}.
+     *
+     * @param regex the regular expression
+     * @param input the input
+     * @return the matcher
+     * @throws PatternSyntaxException if the regular expression is invalid
+     */
+    public Matcher matcher(String regex, CharSequence input) {
+        return this.get(regex).matcher(this.timeLimited(regex, input));
+    }
+
+    /**
+     * Splits an input around matches of a regular expression, in the same way
+     * as {@link String#split(String)}, but time-limited.
+     *
+     * @param regex the regular expression
+     * @param input the input
+     * @return the split input
+     * @throws PatternSyntaxException if the regular expression is invalid
+     * @throws RegexTimeoutException  if splitting runs past the match timeout
+     */
+    public String[] split(String regex, CharSequence input) {
+        return this.get(regex).split(this.timeLimited(regex, input));
+    }
+
+    /**
+     * Gets the number of lookups which found a cached pattern.
+     *
+     * @return the number of hits
+     */
+    public long hits() {
+        return this.hits.sum();
+    }
+
+    /**
+     * Gets the number of lookups which had to compile a pattern.
+     *
+     * @return the number of misses
+     */
+    public long misses() {
+        return this.misses.sum();
+    }
+
+    /**
+     * Gets the number of matches which ran past the match timeout.
+     *
+     * @return the number of timeouts
+     */
+    public long timeouts() {
+        return this.timeouts.sum();
+    }
+
+    /**
+     * Gets the number of patterns currently cached.
+     *
+     * @return the number of cached patterns
+     */
+    public int size() {
+        return this.patterns.size();
+    }
+
+    private CharSequence timeLimited(String regex, CharSequence input) {
+        return new TimeLimitedCharSequence(input, System.nanoTime() + this.matchTimeout.toNanos(), regex);
+    }
+
+    /**
+     * A character sequence which fails once its deadline has passed. Matchers
+     * read their input one character at a time, so this bounds how long any
+     * match on it can take. Like a matcher, it must only be used by one thread.
+     */
+    private final class TimeLimitedCharSequence implements CharSequence {
+        private final CharSequence chars;
+        private final long deadline;
+        private final String regex;
+        private int untilCheck = DEADLINE_CHECK_INTERVAL;
+
+        private TimeLimitedCharSequence(CharSequence chars, long deadline, String regex) {
+            this.chars = chars;
+            this.deadline = deadline;
+            this.regex = regex;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (--this.untilCheck <= 0) {
+                this.untilCheck = DEADLINE_CHECK_INTERVAL;
+                if (System.nanoTime() - this.deadline > 0) {
+                    PatternCache.this.timeouts.increment();
+                    throw new RegexTimeoutException(this.regex, PatternCache.this.matchTimeout);
+                }
+            }
+            return this.chars.charAt(index);
+        }
+
+        @Override
+        public int length() {
+            return this.chars.length();
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return this.chars.subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return this.chars.toString();
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package club.mondaylunch.gatos.basicnodes.regex;
+
+import java.time.Duration;
+
+/**
+ * Thrown when matching a regular expression through a {@link PatternCache}
+ * takes longer than its match timeout.
+ */
+public class RegexTimeoutException extends RuntimeException {
+    /**
+     * Creates an exception.
+     *
+     * @param regex   the regular expression being matched
+     * @param timeout the match timeout which was exceeded
+     */
+    public RegexTimeoutException(String regex, Duration timeout) {
+        super("Matching regex " + regex + " took longer than " + timeout.toMillis() + "ms");
+    }
+}
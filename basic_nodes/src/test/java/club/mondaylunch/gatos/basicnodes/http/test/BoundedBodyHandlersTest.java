@@ -0,0 +1,90 @@
+package club.mondaylunch.gatos.basicnodes.http.test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletionException;
+
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import club.mondaylunch.gatos.basicnodes.http.BoundedBodyHandlers;
+import club.mondaylunch.gatos.basicnodes.http.ResponseBodyException;
+
+public class BoundedBodyHandlersTest {
+    private static final HttpClient CLIENT = HttpClient.newHttpClient();
+    private static HttpServer server;
+
+    @BeforeAll
+    public static void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/json", exchange -> respond(exchange, "{\"foo\": 1}", true));
+        server.createContext("/chunked", exchange -> respond(exchange, "x".repeat(100_000), false));
+        server.createContext("/sized", exchange -> respond(exchange, "x".repeat(100_000), true));
+        server.start();
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void readsBodyWithinLimit() {
+        var response = CLIENT.sendAsync(request("/json"), BoundedBodyHandlers.ofString(1024)).join();
+        Assertions.assertEquals("{\"foo\": 1}", response.body());
+    }
+
+    @Test
+    public void rejectsDeclaredLengthOverLimit() {
+        var failure = Assertions.assertThrows(CompletionException.class, () ->
+            CLIENT.sendAsync(request("/sized"), BoundedBodyHandlers.ofString(1024)).join());
+        var bodyFailure = ResponseBodyException.find(failure);
+        Assertions.assertNotNull(bodyFailure);
+        Assertions.assertEquals(200, bodyFailure.statusCode());
+    }
+
+    @Test
+    public void cancelsStreamedBodyOverLimit() {
+        var failure = Assertions.assertThrows(CompletionException.class, () ->
+            CLIENT.sendAsync(request("/chunked"), BoundedBodyHandlers.ofString(1024)).join());
+        Assertions.assertNotNull(ResponseBodyException.find(failure));
+    }
+
+    @Test
+    public void parsesJsonFromStream() {
+        var response = CLIENT.sendAsync(request("/json"), BoundedBodyHandlers.ofJson(1024)).join();
+        var expected = new JsonObject();
+        expected.addProperty("foo", 1);
+        Assertions.assertEquals(expected, response.body().get());
+    }
+
+    @Test
+    public void failsToParseStreamedJsonOverLimit() {
+        var response = CLIENT.sendAsync(request("/chunked"), BoundedBodyHandlers.ofJson(1024)).join();
+        var failure = Assertions.assertThrows(RuntimeException.class, () -> response.body().get());
+        Assertions.assertNotNull(ResponseBodyException.find(failure));
+    }
+
+    private static HttpRequest request(String path) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + server.getAddress().getPort() + path)).GET().build();
+    }
+
+    private static void respond(HttpExchange exchange, String body, boolean sized) throws IOException {
+        var bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, sized ? bytes.length : 0);
+        try (var out = exchange.getResponseBody()) {
+            out.write(bytes);
+        } catch (IOException ignored) {
+            // the client cancelled the response
+        }
+    }
+}
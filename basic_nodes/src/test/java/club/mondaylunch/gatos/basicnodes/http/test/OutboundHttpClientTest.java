@@ -0,0 +1,167 @@
+package club.mondaylunch.gatos.basicnodes.http.test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import club.mondaylunch.gatos.basicnodes.http.OutboundHttpClient;
+
+public class OutboundHttpClientTest {
+    private static final AtomicInteger ACTIVE = new AtomicInteger();
+    private static final AtomicInteger MAX_ACTIVE = new AtomicInteger();
+    private static final AtomicInteger COUNTED = new AtomicInteger();
+    private static HttpServer server;
+    private static ExecutorService serverExecutor;
+
+    @BeforeAll
+    public static void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/slow", exchange -> {
+            MAX_ACTIVE.accumulateAndGet(ACTIVE.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            ACTIVE.decrementAndGet();
+            var body = "done".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (var out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.createContext("/count", exchange -> {
+            var count = String.valueOf(COUNTED.incrementAndGet());
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            var body = count.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (var out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        serverExecutor = Executors.newCachedThreadPool();
+        server.setExecutor(serverExecutor);
+        server.start();
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Test
+    public void requestsToOneHostAreLimited() {
+        var client = new OutboundHttpClient(new OutboundHttpClient.Settings(Duration.ofSeconds(5), Duration.ofSeconds(5), 2, false));
+        var finished = new AtomicInteger();
+        client.addListener((request, statusCode, latency, failure) -> {
+            if (statusCode == 200 && failure == null) {
+                finished.incrementAndGet();
+            }
+        });
+        var uri = uri("/slow");
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            responses.add(client.send(HttpRequest.newBuilder(uri).GET().build(), HttpResponse.BodyHandlers.ofString()));
+        }
+        for (var response : responses) {
+            Assertions.assertEquals("done", response.join().body());
+        }
+        Assertions.assertTrue(MAX_ACTIVE.get() <= 2);
+        Assertions.assertEquals(0, client.inFlightRequests());
+        Assertions.assertEquals(6, finished.get());
+    }
+
+    @Test
+    public void readResponsesHoldTheirConnectionUntilRead() {
+        var client = new OutboundHttpClient(new OutboundHttpClient.Settings(Duration.ofSeconds(5), Duration.ofSeconds(5), 1, false));
+        var inFlightWhileReading = new AtomicInteger(-1);
+        var body = client.sendAndRead(HttpRequest.newBuilder(uri("/slow")).GET().build(), HttpResponse.BodyHandlers.ofInputStream(), response -> {
+            inFlightWhileReading.set(client.inFlightRequests());
+            try (var stream = response.body()) {
+                return new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, ForkJoinPool.commonPool());
+        Assertions.assertEquals("done", body.join());
+        Assertions.assertEquals(1, inFlightWhileReading.get());
+        Assertions.assertEquals(0, client.inFlightRequests());
+    }
+
+    @Test
+    public void failingListenerDoesNotStopResponse() {
+        var client = new OutboundHttpClient(new OutboundHttpClient.Settings(Duration.ofSeconds(5), Duration.ofSeconds(5), 1, false));
+        client.addListener((request, statusCode, latency, failure) -> {
+            throw new IllegalStateException("listener failed");
+        });
+        var response = client.send(HttpRequest.newBuilder(uri("/slow")).GET().build(), HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals("done", response.join().body());
+        Assertions.assertEquals(0, client.inFlightRequests());
+    }
+
+    @Test
+    public void identicalRequestsInFlightAreCoalesced() {
+        var client = new OutboundHttpClient(new OutboundHttpClient.Settings(Duration.ofSeconds(5), Duration.ofSeconds(5), 8, false));
+        var request = HttpRequest.newBuilder(uri("/count?coalesced")).GET().build();
+        int before = COUNTED.get();
+        var first = client.sendIdempotent(request, 1024);
+        var second = client.sendIdempotent(request, 1024);
+        Assertions.assertArrayEquals(first.join().body(), second.join().body());
+        Assertions.assertEquals(before + 1, COUNTED.get());
+    }
+
+    @Test
+    public void cachedResponsesAreReused() {
+        var client = new OutboundHttpClient(new OutboundHttpClient.Settings(Duration.ofSeconds(5), Duration.ofSeconds(5), 8, false, 0, 0, Duration.ofMinutes(1), 16));
+        var request = HttpRequest.newBuilder(uri("/count?cached")).GET().build();
+        int before = COUNTED.get();
+        var first = client.sendIdempotent(request, 1024).join();
+        var second = client.sendIdempotent(request, 1024).join();
+        Assertions.assertArrayEquals(first.body(), second.body());
+        Assertions.assertEquals(before + 1, COUNTED.get());
+
+        var withOtherHeaders = HttpRequest.newBuilder(uri("/count?cached")).header("Accept", "text/plain").GET().build();
+        client.sendIdempotent(withOtherHeaders, 1024).join();
+        Assertions.assertEquals(before + 2, COUNTED.get());
+    }
+
+    @Test
+    public void requestsToOneHostAreRateLimited() {
+        var client = new OutboundHttpClient(new OutboundHttpClient.Settings(Duration.ofSeconds(5), Duration.ofSeconds(5), 8, false, 10, 1, Duration.ZERO, 0));
+        long start = System.nanoTime();
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            responses.add(client.send(HttpRequest.newBuilder(uri("/slow")).GET().build(), HttpResponse.BodyHandlers.ofString()));
+        }
+        responses.forEach(CompletableFuture::join);
+        // one request may go straight away; the other three wait 100ms each for a token
+        Assertions.assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() >= 300);
+    }
+
+    private static URI uri(String path) {
+        return URI.create("http://localhost:" + server.getAddress().getPort() + path);
+    }
+}
@@ -3,11 +3,17 @@ package club.mondaylunch.gatos.basicnodes.process.test;
 import java.util.Map;
 import java.util.UUID;
 
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonDocumentWriter;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
 import club.mondaylunch.gatos.basicnodes.BasicNodes;
+import club.mondaylunch.gatos.core.Database;
 import club.mondaylunch.gatos.core.data.DataBox;
 import club.mondaylunch.gatos.core.data.DataType;
 import club.mondaylunch.gatos.core.graph.Node;
@@ -56,6 +62,23 @@ public class HTTPRequestNodeTest {
         Assertions.assertTrue(node.outputs().containsKey("responseText"));
     }
 
+    @Test
+    public void areOutputsCorrectWithJsonFormat() {
+        var node = Node.create(BasicNodes.HTTP_REQUEST)
+            .modifySetting("response_format", DataType.STRING.create("json"));
+        Assertions.assertEquals(2, node.outputs().size());
+        Assertions.assertTrue(node.outputs().containsKey("statusCode"));
+        Assertions.assertEquals(DataType.JSON_ELEMENT, node.outputs().get("responseJson").type());
+    }
+
+    @Test
+    public void areOutputsCorrectWithoutBody() {
+        var node = Node.create(BasicNodes.HTTP_REQUEST)
+            .modifySetting("response_format", DataType.STRING.create("none"));
+        Assertions.assertEquals(1, node.outputs().size());
+        Assertions.assertTrue(node.outputs().containsKey("statusCode"));
+    }
+
     @Test
     public void createGETRequest() {
         var node = Node.create(BasicNodes.HTTP_REQUEST)
@@ -69,6 +92,24 @@ public class HTTPRequestNodeTest {
         Assertions.assertEquals("GET request", output.get("responseText").join().value());
     }
 
+    @Test
+    public void nodeSavedWithoutMaxBodySizeUsesDefault() {
+        var codec = Database.getCodecRegistry().get(Node.class);
+        var saved = new BsonDocument();
+        try (var writer = new BsonDocumentWriter(saved)) {
+            codec.encode(writer, Node.create(BasicNodes.HTTP_REQUEST)
+                .modifySetting("url", DataType.STRING.create(URL))
+                .modifySetting("method", DataType.STRING.create("GET")), EncoderContext.builder().build());
+        }
+        saved.getDocument("settings").remove("max_body_size");
+        var node = codec.decode(new BsonDocumentReader(saved), DecoderContext.builder().build());
+        Assertions.assertFalse(node.settings().containsKey("max_body_size"));
+
+        var output = BasicNodes.HTTP_REQUEST.compute(UUID.randomUUID(), Map.of(), node.settings(), Map.of());
+        Assertions.assertEquals(200.0, output.get("statusCode").join().value());
+        Assertions.assertEquals("GET request", output.get("responseText").join().value());
+    }
+
     @Test
     public void createPOSTRequest() {
         var node = Node.create(BasicNodes.HTTP_REQUEST)
@@ -3,7 +3,15 @@ package club.mondaylunch.gatos.basicnodes.process.test;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -12,8 +20,10 @@ import club.mondaylunch.gatos.basicnodes.BasicNodes;
 import club.mondaylunch.gatos.core.Either;
 import club.mondaylunch.gatos.core.data.DataBox;
 import club.mondaylunch.gatos.core.data.DataType;
+import club.mondaylunch.gatos.core.executor.NodeExecutors;
 import club.mondaylunch.gatos.core.graph.Graph;
 import club.mondaylunch.gatos.core.graph.Node;
+import club.mondaylunch.gatos.core.graph.connector.NodeConnector;
 import club.mondaylunch.gatos.core.graph.type.NodeType;
 
 public class ListMappingNodeTypeTest {
@@ -82,4 +92,109 @@ public class ListMappingNodeTypeTest {
         Assertions.assertTrue(mappedList.value() instanceof List<?>);
         Assertions.assertEquals(List.of(1.0, 2.0, 3.0), mappedList.value());
     }
+
+    @Test
+    public void correctlyMapsLongListInOrder() {
+        var strings = IntStream.range(0, 5000).mapToObj(i -> "a".repeat(i % 7)).toList();
+        Map<String, DataBox<?>> inputs = Map.of("list_input", DataType.STRING.listOf().create(strings));
+        var results = BasicNodes.LIST_MAPPING.compute(UUID.randomUUID(), inputs, this.node.settings(), Map.of());
+        var expected = strings.stream().map(string -> (double) string.length()).toList();
+        Assertions.assertEquals(expected, results.get("mapped_list").join().value());
+    }
+
+    @Test
+    public void asyncMappingNodeIsConcurrencyLimited() {
+        var inFlight = new AtomicInteger();
+        var maxInFlight = new AtomicInteger();
+        var node = Node.create(BasicNodes.LIST_MAPPING)
+            .modifySetting("mapping_node", DataType.PROCESS_NODE_TYPE.create(new DelayedLengthNodeType(inFlight, maxInFlight)));
+        var strings = IntStream.range(0, 200).mapToObj(i -> "a".repeat(i % 5)).toList();
+        Map<String, DataBox<?>> inputs = Map.of("list_input", DataType.STRING.listOf().create(strings));
+        var results = BasicNodes.LIST_MAPPING.compute(UUID.randomUUID(), inputs, node.settings(), Map.of());
+        var expected = strings.stream().map(string -> (double) string.length()).toList();
+        Assertions.assertEquals(expected, results.get("mapped_list").join().value());
+        Assertions.assertTrue(maxInFlight.get() <= 16);
+    }
+
+    @Test
+    public void longListIsMappedOnGivenExecutors() {
+        var tasks = new AtomicInteger();
+        Executor executor = runnable -> {
+            tasks.incrementAndGet();
+            ForkJoinPool.commonPool().execute(runnable);
+        };
+        var strings = IntStream.range(0, 5000).mapToObj(i -> "a".repeat(i % 7)).toList();
+        Map<String, DataBox<?>> inputs = Map.of("list_input", DataType.STRING.listOf().create(strings));
+        var results = BasicNodes.LIST_MAPPING.compute(UUID.randomUUID(), inputs, this.node.settings(), Map.of(), new NodeExecutors(executor, executor));
+        var expected = strings.stream().map(string -> (double) string.length()).toList();
+        Assertions.assertEquals(expected, results.get("mapped_list").join().value());
+        Assertions.assertTrue(tasks.get() > 0);
+    }
+
+    @Test
+    public void asyncNullOutputFailsMapping() {
+        var node = Node.create(BasicNodes.LIST_MAPPING)
+            .modifySetting("mapping_node", DataType.PROCESS_NODE_TYPE.create(new DelayedNullNodeType()));
+        Map<String, DataBox<?>> inputs = Map.of("list_input", DataType.STRING.listOf().create(List.of("a", "b")));
+        var result = BasicNodes.LIST_MAPPING.compute(UUID.randomUUID(), inputs, node.settings(), Map.of()).get("mapped_list");
+        var e = Assertions.assertThrows(CompletionException.class, () -> result.orTimeout(5, TimeUnit.SECONDS).join());
+        Assertions.assertInstanceOf(IllegalStateException.class, e.getCause());
+    }
+
+    private static final class DelayedLengthNodeType extends NodeType.Process {
+        private final AtomicInteger inFlight;
+        private final AtomicInteger maxInFlight;
+
+        private DelayedLengthNodeType(AtomicInteger inFlight, AtomicInteger maxInFlight) {
+            this.inFlight = inFlight;
+            this.maxInFlight = maxInFlight;
+        }
+
+        @Override
+        public Map<String, DataBox<?>> settings() {
+            return Map.of();
+        }
+
+        @Override
+        public Set<NodeConnector.Input<?>> inputs(UUID nodeId, Map<String, DataBox<?>> settings, Map<String, DataType<?>> inputTypes) {
+            return Set.of(new NodeConnector.Input<>(nodeId, "input", DataType.STRING));
+        }
+
+        @Override
+        public Set<NodeConnector.Output<?>> outputs(UUID nodeId, Map<String, DataBox<?>> settings, Map<String, DataType<?>> inputTypes) {
+            return Set.of(new NodeConnector.Output<>(nodeId, "output", DataType.NUMBER));
+        }
+
+        @Override
+        public Map<String, CompletableFuture<DataBox<?>>> compute(UUID userId, Map<String, DataBox<?>> inputs, Map<String, DataBox<?>> settings, Map<String, DataType<?>> inputTypes) {
+            this.maxInFlight.accumulateAndGet(this.inFlight.incrementAndGet(), Math::max);
+            var length = DataBox.get(inputs, "input", DataType.STRING).orElseThrow().length();
+            return Map.of("output", CompletableFuture.supplyAsync(() -> {
+                this.inFlight.decrementAndGet();
+                return DataType.NUMBER.create((double) length);
+            }, CompletableFuture.delayedExecutor(2, TimeUnit.MILLISECONDS)));
+        }
+    }
+
+    private static final class DelayedNullNodeType extends NodeType.Process {
+        @Override
+        public Map<String, DataBox<?>> settings() {
+            return Map.of();
+        }
+
+        @Override
+        public Set<NodeConnector.Input<?>> inputs(UUID nodeId, Map<String, DataBox<?>> settings, Map<String, DataType<?>> inputTypes) {
+            return Set.of(new NodeConnector.Input<>(nodeId, "input", DataType.STRING));
+        }
+
+        @Override
+        public Set<NodeConnector.Output<?>> outputs(UUID nodeId, Map<String, DataBox<?>> settings, Map<String, DataType<?>> inputTypes) {
+            return Set.of(new NodeConnector.Output<>(nodeId, "output", DataType.NUMBER));
+        }
+
+        @Override
+        public Map<String, CompletableFuture<DataBox<?>>> compute(UUID userId, Map<String, DataBox<?>> inputs, Map<String, DataBox<?>> settings, Map<String, DataType<?>> inputTypes) {
+            return Map.of("output", CompletableFuture.supplyAsync(() -> null, CompletableFuture.delayedExecutor(2, TimeUnit.MILLISECONDS)));
+        }
+    }
 }
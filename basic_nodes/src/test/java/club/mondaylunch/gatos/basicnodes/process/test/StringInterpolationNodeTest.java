@@ -59,4 +59,21 @@ public class StringInterpolationNodeTest {
             "This is a test node - did the template substitution work correctly? This one shouldn't: \\{not one}",
             result);
     }
+
+    @Test
+    public void repeatedPlaceholdersShareAnInput() {
+        var node = Node.create(BasicNodes.STRING_INTERPOLATION)
+            .modifySetting("template", DataType.STRING.create("{name}, {name}! {}"));
+        Assertions.assertEquals(2, node.inputs().size());
+        Assertions.assertTrue(node.inputs().containsKey("Placeholder 3"));
+        Map<String, DataBox<?>> inputs = Map.of(
+            "name", DataType.STRING.create("Hello"),
+            "Placeholder 3", DataType.STRING.create("$1 \\"));
+        for (int i = 0; i < 2; i++) {
+            var result = BasicNodes.STRING_INTERPOLATION.compute(UUID.randomUUID(), inputs, node.settings(), Map.of()).get("output")
+                .join()
+                .value();
+            Assertions.assertEquals("Hello, Hello! $1 \\", result);
+        }
+    }
 }
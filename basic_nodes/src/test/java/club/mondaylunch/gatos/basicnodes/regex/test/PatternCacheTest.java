@@ -0,0 +1,61 @@
+package club.mondaylunch.gatos.basicnodes.regex.test;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import club.mondaylunch.gatos.basicnodes.regex.PatternCache;
+import club.mondaylunch.gatos.basicnodes.regex.RegexTimeoutException;
+
+public class PatternCacheTest {
+    @Test
+    public void compiledPatternsAreReused() {
+        var cache = new PatternCache(16, Duration.ofSeconds(1));
+        var first = cache.get("a+b");
+        var second = cache.get("a+b");
+        Assertions.assertSame(first, second);
+        Assertions.assertEquals(1, cache.hits());
+        Assertions.assertEquals(1, cache.misses());
+    }
+
+    @Test
+    public void cacheSizeIsBounded() {
+        var cache = new PatternCache(4, Duration.ofSeconds(1));
+        for (int i = 0; i < 20; i++) {
+            cache.get("a{" + i + "}");
+        }
+        Assertions.assertTrue(cache.size() <= 4);
+    }
+
+    @Test
+    public void leastRecentlyUsedPatternIsEvicted() {
+        var cache = new PatternCache(2, Duration.ofSeconds(1));
+        var first = cache.get("a");
+        cache.get("b");
+        cache.get("a");
+        cache.get("c");
+        Assertions.assertSame(first, cache.get("a"));
+        Assertions.assertEquals(2, cache.hits());
+        cache.get("b");
+        Assertions.assertEquals(4, cache.misses());
+    }
+
+    @Test
+    public void matchesLikeUncachedPatterns() {
+        var cache = new PatternCache(16, Duration.ofSeconds(1));
+        Assertions.assertEquals("a-b-c", cache.matcher("\\s+", "a b  c").replaceAll("-"));
+        Assertions.assertArrayEquals("a,b,,c".split(","), cache.split(",", "a,b,,c"));
+        var matcher = cache.matcher("(\\d+)", "abc 123");
+        Assertions.assertTrue(matcher.find());
+        Assertions.assertEquals("123", matcher.group(1));
+    }
+
+    @Test
+    public void pathologicalMatchesTimeOut() {
+        var cache = new PatternCache(16, Duration.ofMillis(50));
+        var input = ",".repeat(60);
+        Assertions.assertThrows(RegexTimeoutException.class, () -> cache.matcher("(.*?,){30}x", input).find());
+        Assertions.assertEquals(1, cache.timeouts());
+    }
+}
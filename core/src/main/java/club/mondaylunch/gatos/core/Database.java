@@ -1,5 +1,7 @@
 package club.mondaylunch.gatos.core;
 
+import java.util.concurrent.CompletableFuture;
+
 import com.mongodb.ConnectionString;
 import com.mongodb.MongoClientSettings;
 import com.mongodb.client.MongoClient;
@@ -15,6 +17,10 @@ import org.bson.codecs.configuration.CodecRegistries;
 import org.bson.codecs.configuration.CodecRegistry;
 import org.bson.codecs.pojo.PojoCodecProvider;
 import org.bson.conversions.Bson;
+import org.jetbrains.annotations.Nullable;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
 
 import club.mondaylunch.gatos.core.codec.DataBoxCodecProvider;
 import club.mondaylunch.gatos.core.codec.GraphCodecProvider;
@@ -31,21 +37,19 @@ public enum Database {
 
     INSTANCE;
 
-    private final MongoClient client = createClient();
+    private final MongoClient client = MongoClients.create(createSettings());
+    private final com.mongodb.reactivestreams.client.MongoClient reactiveClient = com.mongodb.reactivestreams.client.MongoClients.create(createSettings());
     private final CodecRegistry codecRegistry = createRegistry();
 
     /**
      * Configure the MongoDB driver.
      */
-    private static MongoClient createClient() {
+    private static MongoClientSettings createSettings() {
         // Configure the connection settings
         ConnectionString connectionString = new ConnectionString(Environment.getMongoUri());
-        MongoClientSettings mongoClientSettings = MongoClientSettings.builder()
+        return MongoClientSettings.builder()
             .uuidRepresentation(UuidRepresentation.STANDARD)
             .applyConnectionString(connectionString).build();
-
-        // Build the client
-        return MongoClients.create(mongoClientSettings);
     }
 
     /**
@@ -75,6 +79,46 @@ public enum Database {
         );
     }
 
+    /**
+     * Gets the first result of a publisher from the reactive driver as a
+     * future, cancelling the subscription once it has arrived. The future
+     * completes on one of the driver's threads, so anything slow done with
+     * the result should be done on another executor.
+     *
+     * @param publisher the publisher
+     * @param <T>       the result type
+     * @return a future of the first result, or of null if there are none
+     */
+    public static <T> CompletableFuture<@Nullable T> first(Publisher<T> publisher) {
+        var future = new CompletableFuture<T>();
+        publisher.subscribe(new Subscriber<T>() {
+            private Subscription subscription;
+
+            @Override
+            public void onSubscribe(Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(T result) {
+                future.complete(result);
+                this.subscription.cancel();
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                future.completeExceptionally(error);
+            }
+
+            @Override
+            public void onComplete() {
+                future.complete(null);
+            }
+        });
+        return future;
+    }
+
     /**
      * Check whether we can talk with the database.
      */
@@ -94,6 +138,16 @@ public enum Database {
             .withCodecRegistry(INSTANCE.codecRegistry);
     }
 
+    /**
+     * Get the Mongo Database, through the reactive driver.
+     *
+     * @return {@link com.mongodb.reactivestreams.client.MongoDatabase}
+     */
+    public static com.mongodb.reactivestreams.client.MongoDatabase getReactiveDatabase() {
+        return INSTANCE.reactiveClient.getDatabase(Environment.isJUnitTest() ? "gatos-testdb" : "gatos")
+            .withCodecRegistry(INSTANCE.codecRegistry);
+    }
+
     /**
      * Get a Mongo Collection by name.
      *
@@ -112,6 +166,16 @@ public enum Database {
         return getDatabase().getCollection(name, cls);
     }
 
+    /**
+     * Get a Mongo Collection with POJO support by name and class, through the
+     * reactive driver, for non-blocking operations.
+     *
+     * @return {@link com.mongodb.reactivestreams.client.MongoCollection}
+     */
+    public static <TDocument> com.mongodb.reactivestreams.client.MongoCollection<TDocument> getReactiveCollection(String name, Class<TDocument> cls) {
+        return getReactiveDatabase().getCollection(name, cls);
+    }
+
     /**
      * Get the CodecRegistry.
      *
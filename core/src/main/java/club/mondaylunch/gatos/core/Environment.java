@@ -45,6 +45,182 @@ public enum Environment {
         return INSTANCE.env.get("DISCORD_TOKEN", "");
     }
 
+    /**
+     * Get the number of threads in the pool that computes flow nodes.
+     * Defaults to the number of available processors.
+     *
+     * @return the number of flow compute threads
+     */
+    public static int getFlowComputeThreads() {
+        return getInt("FLOW_COMPUTE_THREADS", Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Get the maximum number of list elements a list mapping node computes at
+     * once. Defaults to 16.
+     *
+     * @return the list mapping concurrency
+     */
+    public static int getListMappingConcurrency() {
+        return getInt("LIST_MAPPING_CONCURRENCY", 16);
+    }
+
+    /**
+     * Get how long outbound HTTP requests may take to connect, in
+     * milliseconds. Defaults to 10 seconds.
+     *
+     * @return the HTTP connect timeout
+     */
+    public static int getHttpConnectTimeoutMillis() {
+        return getInt("HTTP_CONNECT_TIMEOUT_MS", 10_000);
+    }
+
+    /**
+     * Get how long outbound HTTP requests may take to receive a response, in
+     * milliseconds. Defaults to 30 seconds.
+     *
+     * @return the HTTP request timeout
+     */
+    public static int getHttpRequestTimeoutMillis() {
+        return getInt("HTTP_REQUEST_TIMEOUT_MS", 30_000);
+    }
+
+    /**
+     * Get the maximum number of outbound HTTP requests in flight to a single
+     * host at once. Defaults to 32.
+     *
+     * @return the HTTP connection limit per host
+     */
+    public static int getHttpMaxConnectionsPerHost() {
+        return getInt("HTTP_MAX_CONNECTIONS_PER_HOST", 32);
+    }
+
+    /**
+     * Get the default maximum size of an outbound HTTP response body, in
+     * bytes. Defaults to 1 MiB.
+     *
+     * @return the default HTTP response body limit
+     */
+    public static int getHttpMaxBodyBytes() {
+        return getInt("HTTP_MAX_BODY_BYTES", 1 << 20);
+    }
+
+    /**
+     * Get how long writes to user data are buffered before being flushed to
+     * the database together, in milliseconds. Defaults to 0, which writes
+     * them straight away.
+     *
+     * @return the user data write-behind window
+     */
+    public static int getUserDataWriteBehindMillis() {
+        return getInt("USER_DATA_WRITE_BEHIND_MS", 0);
+    }
+
+    /**
+     * Get how many pieces of user data may have buffered writes before the
+     * buffer is flushed early. Defaults to 10000.
+     *
+     * @return the maximum number of pieces of user data with buffered writes
+     */
+    public static int getUserDataWriteBehindMaxPending() {
+        return getInt("USER_DATA_WRITE_BEHIND_MAX_PENDING", 10_000);
+    }
+
+    /**
+     * Get how long user data values read from the database are cached for, in
+     * milliseconds. Defaults to 0, which disables the cache.
+     *
+     * @return the user data cache time-to-live
+     */
+    public static int getUserDataCacheTtlMillis() {
+        return getInt("USER_DATA_CACHE_TTL_MS", 0);
+    }
+
+    /**
+     * Get the maximum number of user data values kept in the cache. Defaults
+     * to 10000.
+     *
+     * @return the user data cache size
+     */
+    public static int getUserDataCacheSize() {
+        return getInt("USER_DATA_CACHE_SIZE", 10_000);
+    }
+
+    /**
+     * Get the number of outbound HTTP requests per second allowed to a single
+     * host. Defaults to 0, which means no limit.
+     *
+     * @return the HTTP rate limit per host
+     */
+    public static int getHttpHostRateLimit() {
+        return getInt("HTTP_HOST_RATE_LIMIT", 0);
+    }
+
+    /**
+     * Get how many outbound HTTP requests may be sent to a single host at once
+     * before its rate limit applies. Defaults to the rate limit.
+     *
+     * @return the HTTP rate limit burst per host
+     */
+    public static int getHttpHostRateBurst() {
+        return getInt("HTTP_HOST_RATE_BURST", getHttpHostRateLimit());
+    }
+
+    /**
+     * Get how long responses to outbound HTTP GET requests are cached for, in
+     * milliseconds. Defaults to 0, which disables the cache.
+     *
+     * @return the HTTP GET cache time-to-live
+     */
+    public static int getHttpGetCacheTtlMillis() {
+        return getInt("HTTP_GET_CACHE_TTL_MS", 0);
+    }
+
+    /**
+     * Get the maximum number of responses to outbound HTTP GET requests kept
+     * in the cache. Defaults to 1024.
+     *
+     * @return the HTTP GET cache size
+     */
+    public static int getHttpGetCacheMaxEntries() {
+        return getInt("HTTP_GET_CACHE_MAX_ENTRIES", 1024);
+    }
+
+    /**
+     * Get whether outbound HTTP requests should try HTTP/2 first. Defaults to
+     * true.
+     *
+     * @return whether to prefer HTTP/2
+     */
+    public static boolean isHttp2Preferred() {
+        return !INSTANCE.env.get("HTTP_PREFER_HTTP2", "true").trim().equalsIgnoreCase("false");
+    }
+
+    /**
+     * Get the maximum number of compiled regular expressions kept for regex
+     * nodes. Defaults to 512.
+     *
+     * @return the regex cache size
+     */
+    public static int getRegexCacheSize() {
+        return getInt("REGEX_CACHE_SIZE", 512);
+    }
+
+    /**
+     * Get how long a regex node may spend matching a single input, in
+     * milliseconds. Defaults to 1 second.
+     *
+     * @return the regex match timeout
+     */
+    public static int getRegexMatchTimeoutMillis() {
+        return getInt("REGEX_MATCH_TIMEOUT_MS", 1_000);
+    }
+
+    private static int getInt(String key, int fallback) {
+        var value = INSTANCE.env.get(key, "");
+        return value.isBlank() ? fallback : Integer.parseInt(value.trim());
+    }
+
     /**
      * Check whether we are in a JUnit test.
      * <a href="https://stackoverflow.com/a/12717377">Source</a>
@@ -4,6 +4,9 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.ServiceLoader;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import club.mondaylunch.gatos.core.data.DataType;
 import club.mondaylunch.gatos.core.models.Flow;
 
@@ -11,6 +14,7 @@ import club.mondaylunch.gatos.core.models.Flow;
  * Gatos Core entrypoint.
  */
 public final class GatosCore implements GatosPlugin {
+    public static final Logger LOGGER = LoggerFactory.getLogger("Gatos Core");
     private static final List<GatosPlugin> PLUGINS = new ArrayList<>();
     private static GatosLang LANG;
 
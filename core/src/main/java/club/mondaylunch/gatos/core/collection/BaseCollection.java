@@ -8,7 +8,9 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Stream;
 
 import com.mongodb.client.MongoCollection;
@@ -28,6 +30,7 @@ import club.mondaylunch.gatos.core.models.BaseModel;
 public class BaseCollection<T extends BaseModel> {
 
     private final MongoCollection<T> collection;
+    private final com.mongodb.reactivestreams.client.MongoCollection<T> reactiveCollection;
 
     /**
      * Construct a new BaseCollection.
@@ -37,6 +40,7 @@ public class BaseCollection<T extends BaseModel> {
      */
     public BaseCollection(String collectionName, Class<T> cls) {
         this.collection = Database.getCollection(collectionName, cls);
+        this.reactiveCollection = Database.getReactiveCollection(collectionName, cls);
     }
 
     /**
@@ -48,6 +52,15 @@ public class BaseCollection<T extends BaseModel> {
         return this.collection;
     }
 
+    /**
+     * Get the underlying Mongo Collection, through the reactive driver.
+     *
+     * @return underlying reactive Mongo Collection.
+     */
+    public com.mongodb.reactivestreams.client.MongoCollection<T> getReactiveCollection() {
+        return this.reactiveCollection;
+    }
+
     /**
      * Insert a new document into the collection.
      *
@@ -70,6 +83,16 @@ public class BaseCollection<T extends BaseModel> {
         return this.getCollection().find(Filters.eq(id)).limit(1).first();
     }
 
+    /**
+     * Gets a document without blocking, through the reactive driver.
+     *
+     * @param id The ID of the document to get.
+     * @return A future of the POJO, or of null if there is no such document.
+     */
+    public CompletableFuture<@Nullable T> getAsync(UUID id) {
+        return Database.first(this.getReactiveCollection().find(Filters.eq(id)).first());
+    }
+
     /**
      * Get documents by a field.
      *
@@ -92,12 +115,29 @@ public class BaseCollection<T extends BaseModel> {
      * @param obj The POJO to update with.
      */
     public void update(UUID id, T obj) {
-        List<Bson> updates = getNonNullUpdates(obj);
+        List<Bson> updates = this.createUpdates(obj);
         if (!updates.isEmpty()) {
             this.getCollection().updateOne(Filters.eq(id), Updates.combine(updates));
         }
     }
 
+    /**
+     * Updates a document without blocking, through the reactive driver, as
+     * for {@link #update(UUID, BaseModel)}.
+     *
+     * @param id  The ID of the document to update.
+     * @param obj The POJO to update with.
+     * @return A future which completes when the document is updated.
+     */
+    public CompletableFuture<Void> updateAsync(UUID id, T obj) {
+        List<Bson> updates = this.createUpdates(obj);
+        if (updates.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return Database.first(this.getReactiveCollection().updateOne(Filters.eq(id), Updates.combine(updates)))
+            .thenApply($ -> null);
+    }
+
     /**
      * Deletes a document.
      *
@@ -133,15 +173,29 @@ public class BaseCollection<T extends BaseModel> {
         return this.getCollection().countDocuments();
     }
 
+    /**
+     * Creates the updates which {@link #update(UUID, BaseModel)} applies for
+     * a POJO.
+     *
+     * @param obj The POJO to update with.
+     * @return A list of updates.
+     */
+    protected List<Bson> createUpdates(T obj) {
+        return getNonNullUpdates(obj);
+    }
+
     /**
      * Creates a list of non-null updates from a POJO.
      *
-     * @param obj The POJO.
+     * @param obj                The POJO.
+     * @param excludedProperties The names of properties to leave out.
      * @return A list of updates.
      */
-    private static List<Bson> getNonNullUpdates(Object obj) {
+    protected static List<Bson> getNonNullUpdates(Object obj, String... excludedProperties) {
+        var excluded = Set.of(excludedProperties);
         return createPropertyDescriptorStream(obj.getClass())
             .filter(BaseCollection::hasGetter)
+            .filter(descriptor -> !excluded.contains(descriptor.getName()))
             .map(descriptor -> getField(descriptor, obj))
             .filter(Objects::nonNull)
             .map(BaseCollection::createUpdate)
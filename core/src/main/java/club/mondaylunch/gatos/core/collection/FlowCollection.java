@@ -1,14 +1,40 @@
 package club.mondaylunch.gatos.core.collection;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
 
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.CountOptions;
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Updates;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonValue;
 import org.bson.Document;
+import org.bson.codecs.DecoderContext;
+import org.bson.conversions.Bson;
 
 import club.mondaylunch.gatos.core.Database;
+import club.mondaylunch.gatos.core.GatosCore;
+import club.mondaylunch.gatos.core.executor.ExecutionPlan;
+import club.mondaylunch.gatos.core.graph.Node;
+import club.mondaylunch.gatos.core.graph.NodeMetadata;
+import club.mondaylunch.gatos.core.graph.connector.NodeConnection;
+import club.mondaylunch.gatos.core.graph.connector.NodeConnector;
+import club.mondaylunch.gatos.core.graph.type.NodeCategory;
 import club.mondaylunch.gatos.core.models.BasicFlowInfo;
 import club.mondaylunch.gatos.core.models.Flow;
 
@@ -17,7 +43,17 @@ import club.mondaylunch.gatos.core.models.Flow;
  */
 public class FlowCollection extends BaseCollection<Flow> {
 
+    private static final Bson BASIC_INFO_FIELDS = Projections.include("name", "description", "author_id");
+    private static final Document NODE_IDS = new Document("$ifNull", Arrays.asList("$graph.nodes.id", List.of()));
+
     private final MongoCollection<Document> documentCollection;
+    private final Map<UUID, CachedPlan> executionPlans = new ConcurrentHashMap<>();
+    private final ExecutorService triggerSetup = Executors.newSingleThreadExecutor(runnable -> {
+        var thread = new Thread(runnable, "gatos-flow-triggers");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final LongAdder triggerSetupFailures = new LongAdder();
 
     public FlowCollection() {
         super("flows", Flow.class);
@@ -27,6 +63,7 @@ public class FlowCollection extends BaseCollection<Flow> {
     public BasicFlowInfo getBasicInfo(UUID id) {
         var document = this.documentCollection
             .find(Filters.eq(id))
+            .projection(BASIC_INFO_FIELDS)
             .limit(1)
             .first();
         if (document == null) {
@@ -38,7 +75,7 @@ public class FlowCollection extends BaseCollection<Flow> {
 
     public List<BasicFlowInfo> getBasicInfo(String field, Object value) {
         List<BasicFlowInfo> flows = new ArrayList<>();
-        for (var document : this.documentCollection.find(Filters.eq(field, value))) {
+        for (var document : this.documentCollection.find(Filters.eq(field, value)).projection(BASIC_INFO_FIELDS)) {
             flows.add(create(document));
         }
         return flows;
@@ -62,14 +99,320 @@ public class FlowCollection extends BaseCollection<Flow> {
         return this.getCollection().countDocuments(Filters.eq("author_id", id));
     }
 
+    /**
+     * Gets a node of a flow, without loading the rest of the flow's graph.
+     *
+     * @param flowId   The ID of the flow.
+     * @param authorId The ID of the flow's author.
+     * @param nodeId   The ID of the node.
+     * @return The node, or empty if the flow has no such node.
+     * @throws FlowNotFoundException If no flow with the ID belongs to the author.
+     */
+    public Optional<Node> getNode(UUID flowId, UUID authorId, UUID nodeId) {
+        var document = this.findProjected(flowId, authorId,
+            Projections.computed("nodes", filter("$graph.nodes", eq("$$this.id", nodeId))));
+        return document.getArray("nodes").stream()
+            .findFirst()
+            .map(node -> decode(Node.class, node));
+    }
+
+    /**
+     * Gets the connections to and from a node of a flow, without loading the
+     * rest of the flow's graph.
+     *
+     * @param flowId   The ID of the flow.
+     * @param authorId The ID of the flow's author.
+     * @param nodeId   The ID of the node.
+     * @return The connections, or empty if the flow has no such node.
+     * @throws FlowNotFoundException If no flow with the ID belongs to the author.
+     */
+    public Optional<Set<NodeConnection<?>>> getConnections(UUID flowId, UUID authorId, UUID nodeId) {
+        // as when the whole graph is loaded, connections to missing nodes are left out
+        var document = this.findProjected(flowId, authorId,
+            Projections.computed("has_node", in(nodeId, NODE_IDS)),
+            Projections.computed("connections", filter("$graph.connections", new Document("$and", List.of(
+                new Document("$or", List.of(eq("$$this.output.node_id", nodeId), eq("$$this.input.node_id", nodeId))),
+                in("$$this.output.node_id", NODE_IDS),
+                in("$$this.input.node_id", NODE_IDS)
+            )))));
+        if (!document.getBoolean("has_node").getValue()) {
+            return Optional.empty();
+        }
+        // and so are connections to an input which already has one
+        Set<NodeConnection<?>> connections = new HashSet<>();
+        Set<NodeConnector.Input<?>> inputs = new HashSet<>();
+        for (var connection : document.getArray("connections")) {
+            var decoded = (NodeConnection<?>) decode(NodeConnection.class, connection);
+            if (inputs.add(decoded.to())) {
+                connections.add(decoded);
+            }
+        }
+        return Optional.of(connections);
+    }
+
+    /**
+     * Gets the metadata of a node of a flow, without loading the rest of the
+     * flow's graph. Nodes without metadata have the default metadata, which is
+     * not saved.
+     *
+     * @param flowId   The ID of the flow.
+     * @param authorId The ID of the flow's author.
+     * @param nodeId   The ID of the node.
+     * @return The metadata, or empty if the flow has no such node.
+     * @throws FlowNotFoundException If no flow with the ID belongs to the author.
+     */
+    public Optional<NodeMetadata> getMetadata(UUID flowId, UUID authorId, UUID nodeId) {
+        var document = this.findProjected(flowId, authorId,
+            Projections.computed("has_node", in(nodeId, NODE_IDS)),
+            Projections.computed("metadata", "$graph.metadata." + nodeId));
+        if (!document.getBoolean("has_node").getValue()) {
+            return Optional.empty();
+        } else if (document.isDocument("metadata")) {
+            return Optional.of(decode(NodeMetadata.class, document.get("metadata")));
+        } else {
+            return Optional.of(new NodeMetadata(0f, 0f));
+        }
+    }
+
+    /**
+     * Gets a projection of a flow, computed by the database, so only the
+     * projected fields are sent and decoded.
+     *
+     * @param flowId   The ID of the flow.
+     * @param authorId The ID of the flow's author.
+     * @param fields   The projected fields.
+     * @return The projection.
+     * @throws FlowNotFoundException If no flow with the ID belongs to the author.
+     */
+    private BsonDocument findProjected(UUID flowId, UUID authorId, Bson... fields) {
+        var document = this.documentCollection.withDocumentClass(BsonDocument.class)
+            .aggregate(List.of(
+                Aggregates.match(Filters.and(Filters.eq(flowId), Filters.eq("author_id", authorId))),
+                Aggregates.limit(1),
+                Aggregates.project(Projections.fields(Projections.excludeId(), Projections.fields(fields)))
+            ))
+            .first();
+        if (document == null) {
+            throw new FlowNotFoundException(flowId);
+        }
+        return document;
+    }
+
+    private static <T> T decode(Class<T> clazz, BsonValue value) {
+        return Database.getCodecRegistry().get(clazz)
+            .decode(new BsonDocumentReader(value.asDocument()), DecoderContext.builder().build());
+    }
+
+    private static Document filter(String arrayField, Document condition) {
+        return new Document("$filter", new Document("input", new Document("$ifNull", Arrays.asList(arrayField, List.of())))
+            .append("cond", condition));
+    }
+
+    private static Document eq(Object first, Object second) {
+        return new Document("$eq", Arrays.asList(first, second));
+    }
+
+    private static Document in(Object element, Object array) {
+        return new Document("$in", Arrays.asList(element, array));
+    }
+
+    /**
+     * Saves the changes made to a flow's graph, and increments its revision.
+     * The changes are written in a single atomic update, which only applies
+     * if the flow exists, still belongs to the flow's author, and is still at
+     * the flow's revision, so no separate existence or ownership query is
+     * made, and concurrent edits cannot interleave.
+     * <p>
+     * If the flow has been changed since it was loaded, nothing is written
+     * and a {@link RevisionConflictException} is thrown; the edit can be
+     * retried on a freshly loaded flow.
+     * </p>
+     * <p>
+     * The flow's triggers are then set up again on a background thread, one
+     * flow at a time in the order the changes were saved, using a copy of the
+     * graph. Flows which neither have nor had start nodes have no triggers,
+     * and changes which only affect metadata cannot change them, so this is
+     * skipped for those.
+     * </p>
+     *
+     * @param flow The flow.
+     * @throws FlowNotFoundException     If there were changes to save, but no flow with the flow's ID belongs to its author.
+     * @throws RevisionConflictException If there were changes to save, but the flow is no longer at the flow's revision.
+     */
     public void updateGraph(Flow flow) {
-        if (!this.contains(flow.getId())) {
-            throw new IllegalArgumentException("Flow with ID " + flow.getId() + " does not exist");
+        var ownerFilter = Filters.and(Filters.eq(flow.getId()), Filters.eq("author_id", flow.getAuthorId()));
+        var observer = flow.getGraph().observer();
+        if (observer.hasChanges()) {
+            if (!observer.updateFlow(Filters.and(ownerFilter, revisionFilter(flow.getRevision())), this.getCollection())) {
+                // only look up why the update failed once it has
+                if (this.getCollection().countDocuments(ownerFilter, new CountOptions().limit(1)) > 0) {
+                    throw new RevisionConflictException(flow.getId(), flow.getRevision());
+                }
+                throw new FlowNotFoundException(flow.getId());
+            }
+            flow.setRevision(flow.getRevision() + 1);
+        }
+        this.graphSaved(flow);
+    }
+
+    /**
+     * Saves the changes made to a flow's graph without blocking, through the
+     * reactive driver, as for {@link #updateGraph(Flow)}. The flow's graph
+     * must not be changed until the returned future completes.
+     *
+     * @param flow The flow.
+     * @return A future which completes when the graph is saved, or completes
+     * exceptionally with the exceptions {@link #updateGraph(Flow)} throws.
+     */
+    public CompletableFuture<Void> updateGraphAsync(Flow flow) {
+        var ownerFilter = Filters.and(Filters.eq(flow.getId()), Filters.eq("author_id", flow.getAuthorId()));
+        var observer = flow.getGraph().observer();
+        if (!observer.hasChanges()) {
+            this.graphSaved(flow);
+            return CompletableFuture.completedFuture(null);
+        }
+        return observer.updateFlowAsync(Filters.and(ownerFilter, revisionFilter(flow.getRevision())), this.getReactiveCollection())
+            .thenCompose(updated -> {
+                if (updated) {
+                    flow.setRevision(flow.getRevision() + 1);
+                    this.graphSaved(flow);
+                    return CompletableFuture.completedFuture(null);
+                }
+                return Database.first(this.getReactiveCollection().countDocuments(ownerFilter, new CountOptions().limit(1)))
+                    .<Void>thenApply(count -> {
+                        if (count != null && count > 0) {
+                            throw new RevisionConflictException(flow.getId(), flow.getRevision());
+                        }
+                        throw new FlowNotFoundException(flow.getId());
+                    });
+            });
+    }
+
+    /**
+     * Resets a flow's graph observer once its changes are saved, and sets the
+     * flow's triggers up again if they may have changed.
+     *
+     * @param flow The flow.
+     */
+    private void graphSaved(Flow flow) {
+        var observer = flow.getGraph().observer();
+        var triggersMayChange = observer.hasNodeOrConnectionChanges();
+        var removedStartNodes = observer.getRemovedNodes().stream()
+            .filter(FlowCollection::isStartNode)
+            .toList();
+        observer.reset();
+        if (triggersMayChange && (!removedStartNodes.isEmpty() || flow.getGraph().nodes().stream().anyMatch(FlowCollection::isStartNode))) {
+            var snapshot = new Flow(flow.getId(), flow.getName(), flow.getAuthorId());
+            snapshot.setDescription(flow.getDescription());
+            snapshot.setGraph(flow.getGraph().copy());
+            snapshot.setRevision(flow.getRevision());
+            this.triggerSetup.execute(() -> {
+                try {
+                    snapshot.setupTriggers(removedStartNodes);
+                } catch (RuntimeException e) {
+                    this.triggerSetupFailures.increment();
+                    GatosCore.LOGGER.error("Failed to set up triggers for flow {} at revision {}", snapshot.getId(), snapshot.getRevision(), e);
+                }
+            });
+        }
+    }
+
+    /**
+     * Gets the number of times setting up a flow's triggers in the background,
+     * after its graph was saved, has failed. Each failure is also logged.
+     *
+     * @return The number of failures.
+     */
+    public long triggerSetupFailures() {
+        return this.triggerSetupFailures.sum();
+    }
+
+    /**
+     * Creates a filter matching flows at a revision. Flows saved before
+     * revisions were added have none, which counts as revision 0.
+     *
+     * @param revision The revision.
+     * @return The filter.
+     */
+    private static Bson revisionFilter(long revision) {
+        if (revision == 0) {
+            return Filters.in("revision", Arrays.asList(0L, null));
+        }
+        return Filters.eq("revision", revision);
+    }
+
+    private static boolean isStartNode(Node node) {
+        return node.type().category() == NodeCategory.START;
+    }
+
+    /**
+     * The revision is never set from the POJO, as only the database changes
+     * it. Replacing the graph increments it instead.
+     */
+    @Override
+    protected List<Bson> createUpdates(Flow obj) {
+        List<Bson> updates = new ArrayList<>(getNonNullUpdates(obj, "revision"));
+        if (obj.getGraph() != null) {
+            updates.add(Updates.inc("revision", 1L));
         }
-        flow.getGraph()
-            .observer()
-            .updateFlow(flow.getId(), this.getCollection());
+        return updates;
+    }
+
+    @Override
+    public void delete(UUID id) {
+        super.delete(id);
+        this.executionPlans.remove(id);
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        this.executionPlans.clear();
+    }
+
+    /**
+     * Gets the compiled execution plan for a flow's graph, compiling it if
+     * it isn't cached. Plans are cached by the flow's revision, so a cached
+     * plan is only used for the revision it was compiled from, and only the
+     * plan for the latest revision seen is kept.
+     *
+     * @param flow The flow.
+     * @return The execution plan.
+     * @throws IllegalArgumentException If the flow's graph is invalid.
+     */
+    public ExecutionPlan getExecutionPlan(Flow flow) {
+        var cached = this.executionPlans.get(flow.getId());
+        if (cached != null && cached.revision() == flow.getRevision()) {
+            return cached.plan();
+        }
+        var plan = ExecutionPlan.compile(flow.getGraph());
+        this.executionPlans.merge(flow.getId(), new CachedPlan(flow.getRevision(), plan),
+            (existing, compiled) -> existing.revision() > compiled.revision() ? existing : compiled);
+        return plan;
+    }
 
-        flow.setupTriggers();
+    private record CachedPlan(long revision, ExecutionPlan plan) {
+    }
+
+    /**
+     * Thrown when a flow is looked up by its author, but no flow with its ID
+     * belongs to them.
+     */
+    public static class FlowNotFoundException extends RuntimeException {
+
+        public FlowNotFoundException(UUID flowId) {
+            super("Flow with ID " + flowId + " does not exist");
+        }
+    }
+
+    /**
+     * Thrown when saving changes to a flow's graph which has been changed
+     * since it was loaded.
+     */
+    public static class RevisionConflictException extends RuntimeException {
+
+        public RevisionConflictException(UUID flowId, long revision) {
+            super("Flow with ID " + flowId + " is no longer at revision " + revision);
+        }
     }
 }
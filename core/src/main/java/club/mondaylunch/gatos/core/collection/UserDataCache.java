@@ -0,0 +1,175 @@
+package club.mondaylunch.gatos.core.collection;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import org.jetbrains.annotations.Nullable;
+
+import club.mondaylunch.gatos.core.collection.UserDataWriteBehind.PendingWrite;
+import club.mondaylunch.gatos.core.data.DataBox;
+import club.mondaylunch.gatos.core.data.DataType;
+import club.mondaylunch.gatos.core.models.UserData;
+
+/**
+ * A size-bounded, least-recently-used cache of user data values, including
+ * values which are known to be absent, each kept for at most {@code ttl}.
+ * <p>
+ * The cache is kept coherent with writes made through the same
+ * {@link UserDataCollection}: each write updates the cached value if its
+ * result can be worked out, and otherwise evicts it. Writes made by other
+ * processes are only seen once the cached value expires.
+ * </p>
+ * <p>
+ * Values read from the database are not cached while a write to the same
+ * data is being made, or if a write was made while they were being read,
+ * since the read may have seen the data from before the write.
+ * </p>
+ * <p>
+ * Only numbers, booleans and strings are cached; other values, such as JSON,
+ * may be modified by whoever reads them, so they are always read from the
+ * database.
+ * </p>
+ */
+final class UserDataCache {
+    private final Map<UserData.Id, Entry> entries;
+    private final Map<UserData.Id, Integer> writing = new HashMap<>();
+    private final long ttlNanos;
+    private long writes;
+
+    /**
+     * Creates a cache.
+     *
+     * @param maxSize   the maximum number of values to keep
+     * @param ttlMillis how long to keep each value for, in milliseconds
+     */
+    UserDataCache(int maxSize, long ttlMillis) {
+        this.ttlNanos = ttlMillis * 1_000_000;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UserData.Id, Entry> eldest) {
+                return this.size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Gets a cached value.
+     *
+     * @param id the ID of the data
+     * @return the cached value, which is empty if the data is known to be absent; or null if it is not cached
+     */
+    @SuppressWarnings("OptionalAssignedToNull")
+    synchronized @Nullable Optional<DataBox<?>> get(UserData.Id id) {
+        var entry = this.entries.get(id);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt() - System.nanoTime() <= 0) {
+            this.entries.remove(id);
+            return null;
+        }
+        return entry.value();
+    }
+
+    /**
+     * Gets a stamp to pass to {@link #put(UserData.Id, Optional, long)} after
+     * reading a value from the database.
+     *
+     * @return the stamp
+     */
+    synchronized long stamp() {
+        return this.writes;
+    }
+
+    /**
+     * Caches a value read from the database, unless a write to it is being
+     * made, or any write has been made since it was read, in which case it
+     * may already be out of date.
+     *
+     * @param id    the ID of the data
+     * @param value the value, or empty if the data is absent
+     * @param stamp the result of {@link #stamp()} from before the value was read
+     */
+    synchronized void put(UserData.Id id, Optional<DataBox<?>> value, long stamp) {
+        if (stamp == this.writes && !this.writing.containsKey(id) && isCacheable(value)) {
+            this.entries.put(id, new Entry(value, System.nanoTime() + this.ttlNanos));
+        }
+    }
+
+    /**
+     * Updates the cache for a write, before it is made.
+     * {@link #onWritten(UserData.Id, boolean)} must be called once it has
+     * been made.
+     *
+     * @param id    the ID of the data written
+     * @param write the write
+     */
+    synchronized void onWrite(UserData.Id id, PendingWrite write) {
+        this.writes++;
+        this.writing.merge(id, 1, Integer::sum);
+        var entry = this.entries.remove(id);
+        var current = entry == null || entry.expiresAt() - System.nanoTime() <= 0 ? null : entry.value();
+        var updated = apply(current, write);
+        if (updated != null && isCacheable(updated)) {
+            this.entries.put(id, new Entry(updated, System.nanoTime() + this.ttlNanos));
+        }
+    }
+
+    /**
+     * Updates the cache after a write has been made, or has failed.
+     *
+     * @param id      the ID of the data written
+     * @param written whether the write was made; if not, the cached value is evicted
+     */
+    synchronized void onWritten(UserData.Id id, boolean written) {
+        this.writes++;
+        this.writing.computeIfPresent(id, ($, count) -> count > 1 ? count - 1 : null);
+        if (!written) {
+            this.entries.remove(id);
+        }
+    }
+
+    /**
+     * Evicts everything, for writes which affect many pieces of data at once.
+     */
+    synchronized void clear() {
+        this.writes++;
+        this.entries.clear();
+    }
+
+    @SuppressWarnings("OptionalAssignedToNull")
+    private static @Nullable Optional<DataBox<?>> apply(@Nullable Optional<DataBox<?>> current, PendingWrite write) {
+        if (write instanceof PendingWrite.Set set) {
+            return Optional.of(set.value());
+        } else if (write instanceof PendingWrite.Delete) {
+            return Optional.empty();
+        } else if (current == null) {
+            return null;
+        } else if (write instanceof PendingWrite.SetIfAbsent setIfAbsent) {
+            return current.isPresent() ? current : Optional.of(setIfAbsent.value());
+        } else if (current.isEmpty()) {
+            return write instanceof PendingWrite.Increment increment && increment.createIfAbsent()
+                ? Optional.of(DataType.NUMBER.create(increment.amount()))
+                : current;
+        } else if (current.get().type() != DataType.NUMBER) {
+            return null;
+        }
+        double value = (Double) current.get().value();
+        if (write instanceof PendingWrite.Increment increment) {
+            return Optional.of(DataType.NUMBER.create(value + increment.amount()));
+        } else if (write instanceof PendingWrite.Multiply multiply) {
+            return Optional.of(DataType.NUMBER.create(value * multiply.factor()));
+        }
+        return null;
+    }
+
+    private static boolean isCacheable(Optional<DataBox<?>> value) {
+        return value.map(box -> box.value() instanceof Double || box.value() instanceof Boolean || box.value() instanceof String)
+            .orElse(true);
+    }
+
+    private record Entry(Optional<DataBox<?>> value, long expiresAt) {
+    }
+}
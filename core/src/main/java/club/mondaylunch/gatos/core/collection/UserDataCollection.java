@@ -1,99 +1,194 @@
 package club.mondaylunch.gatos.core.collection;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.model.CountOptions;
+import com.mongodb.client.model.DeleteOneModel;
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.ReplaceOneModel;
 import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.UpdateOneModel;
 import com.mongodb.client.model.UpdateOptions;
 import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import org.bson.BsonArray;
 import org.bson.BsonDocument;
 import org.bson.BsonDocumentWriter;
+import org.bson.BsonDouble;
+import org.bson.BsonString;
+import org.bson.BsonValue;
 import org.bson.codecs.EncoderContext;
+import org.bson.conversions.Bson;
+import org.jetbrains.annotations.Nullable;
+import org.reactivestreams.Publisher;
 
 import club.mondaylunch.gatos.core.Database;
+import club.mondaylunch.gatos.core.Environment;
+import club.mondaylunch.gatos.core.collection.UserDataWriteBehind.PendingWrite;
 import club.mondaylunch.gatos.core.data.DataBox;
 import club.mondaylunch.gatos.core.data.DataType;
 import club.mondaylunch.gatos.core.models.UserData;
 
+/**
+ * The collection of user data.
+ * <p>
+ * If {@link Environment#getUserDataWriteBehindMillis()} is positive, writes
+ * are buffered and flushed to the database in batches, see
+ * {@link UserDataWriteBehind}. Reads of a piece of data first flush any
+ * buffered writes to it, so they always see earlier writes.
+ * </p>
+ * <p>
+ * If {@link Environment#getUserDataCacheTtlMillis()} is positive, values read
+ * by {@link #get(UUID, String)} and {@link #contains(UUID, String)} are cached
+ * in memory, see {@link UserDataCache}.
+ * </p>
+ * <p>
+ * The asynchronous variants of each method use the reactive driver, so they
+ * do not block while the database is queried. They complete straight away
+ * when they can be served from the cache or when the write is buffered. An
+ * asynchronous read of data with buffered writes has those writes flushed
+ * first on the write buffer's own thread, so the caller is not blocked
+ * either.
+ * </p>
+ */
 public class UserDataCollection {
 
     private final MongoCollection<UserData> collection;
+    private final com.mongodb.reactivestreams.client.MongoCollection<UserData> reactiveCollection;
+    @Nullable
+    private final UserDataWriteBehind writeBehind;
+    @Nullable
+    private final UserDataCache cache;
 
     public UserDataCollection() {
+        this(Environment.getUserDataWriteBehindMillis(), Environment.getUserDataCacheTtlMillis());
+    }
+
+    /**
+     * Creates the collection, buffering writes and caching reads for the
+     * given times.
+     *
+     * @param writeBehindMillis how long to buffer writes for, in milliseconds, or 0 to write them straight away
+     * @param cacheTtlMillis    how long to cache values for, in milliseconds, or 0 to not cache them
+     */
+    public UserDataCollection(long writeBehindMillis, long cacheTtlMillis) {
         this.collection = Database.getCollection("user_data", UserData.class);
+        this.reactiveCollection = Database.getReactiveCollection("user_data", UserData.class);
+        this.writeBehind = writeBehindMillis > 0
+            ? new UserDataWriteBehind(this.collection, this::toModel, writeBehindMillis, Math.max(1, Environment.getUserDataWriteBehindMaxPending()))
+            : null;
+        this.cache = cacheTtlMillis > 0
+            ? new UserDataCache(Math.max(1, Environment.getUserDataCacheSize()), cacheTtlMillis)
+            : null;
     }
 
     public Optional<DataBox<?>> get(UUID userId, String key) {
         var id = new UserData.Id(userId, key);
-        var userData = this.collection.find(Filters.eq(id))
-            .limit(1)
-            .first();
-        if (userData == null) {
-            return Optional.empty();
-        } else {
-            return Optional.of(userData.getValue());
+        if (this.cache == null) {
+            return this.find(id);
         }
+        var cached = this.cache.get(id);
+        if (cached != null) {
+            return cached;
+        }
+        long stamp = this.cache.stamp();
+        var value = this.find(id);
+        this.cache.put(id, value, stamp);
+        return value;
+    }
+
+    public CompletableFuture<Optional<DataBox<?>>> getAsync(UUID userId, String key) {
+        var id = new UserData.Id(userId, key);
+        if (this.cache == null) {
+            return this.findAsync(id);
+        }
+        var cached = this.cache.get(id);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        long stamp = this.cache.stamp();
+        return this.findAsync(id).thenApply(value -> {
+            this.cache.put(id, value, stamp);
+            return value;
+        });
     }
 
     public void set(UUID userId, String key, DataBox<?> value) {
-        var userData = new UserData(userId, key, value);
-        this.collection.replaceOne(Filters.eq(userData.getId()), userData, new ReplaceOptions().upsert(true));
+        this.write(new UserData.Id(userId, key), new PendingWrite.Set(value));
     }
 
     public void setIfAbsent(UUID userId, String key, DataBox<?> value) {
-        var id = new UserData.Id(userId, key);
-        var userData = new UserData(userId, key, value);
-        var document = new BsonDocument();
-        var context = EncoderContext.builder().build();
-        var codec = Database.getCodecRegistry().get(UserData.class);
-        try (var writer = new BsonDocumentWriter(document)) {
-            codec.encode(writer, userData, context);
-        }
-        var update = Updates.setOnInsert(document);
-        this.collection.updateOne(Filters.eq(id), update, new UpdateOptions().upsert(true));
+        this.write(new UserData.Id(userId, key), new PendingWrite.SetIfAbsent(value));
     }
 
     public void increment(UUID userId, String key, Number value) {
-        var id = new UserData.Id(userId, key);
-        var update = Updates.inc("value.value", value);
-        this.collection.updateOne(Filters.eq(id), update);
+        this.write(new UserData.Id(userId, key), new PendingWrite.Increment(value.doubleValue(), false));
     }
 
     public void incrementOrSet(UUID userId, String key, Number value) {
-        var id = new UserData.Id(userId, key);
-        var update = Updates.combine(
-            Updates.set("_id", id),
-            Updates.set("value.type", DataType.NUMBER.name()),
-            Updates.inc("value.value", value)
-        );
-        this.collection.updateOne(Filters.eq(id), update, new UpdateOptions().upsert(true));
+        this.write(new UserData.Id(userId, key), new PendingWrite.Increment(value.doubleValue(), true));
     }
 
     public void multiply(UUID userId, String key, Number value) {
-        var id = new UserData.Id(userId, key);
-        var update = Updates.mul("value.value", value);
-        this.collection.updateOne(Filters.eq(id), update);
+        this.write(new UserData.Id(userId, key), new PendingWrite.Multiply(value.doubleValue()));
     }
 
     public void delete(UUID userId, String key) {
-        var id = new UserData.Id(userId, key);
-        this.collection.deleteOne(Filters.eq(id));
+        this.write(new UserData.Id(userId, key), new PendingWrite.Delete());
+    }
+
+    public CompletableFuture<Void> setAsync(UUID userId, String key, DataBox<?> value) {
+        return this.writeAsync(new UserData.Id(userId, key), new PendingWrite.Set(value));
+    }
+
+    public CompletableFuture<Void> setIfAbsentAsync(UUID userId, String key, DataBox<?> value) {
+        return this.writeAsync(new UserData.Id(userId, key), new PendingWrite.SetIfAbsent(value));
+    }
+
+    public CompletableFuture<Void> incrementAsync(UUID userId, String key, Number value) {
+        return this.writeAsync(new UserData.Id(userId, key), new PendingWrite.Increment(value.doubleValue(), false));
+    }
+
+    public CompletableFuture<Void> incrementOrSetAsync(UUID userId, String key, Number value) {
+        return this.writeAsync(new UserData.Id(userId, key), new PendingWrite.Increment(value.doubleValue(), true));
+    }
+
+    public CompletableFuture<Void> multiplyAsync(UUID userId, String key, Number value) {
+        return this.writeAsync(new UserData.Id(userId, key), new PendingWrite.Multiply(value.doubleValue()));
+    }
+
+    public CompletableFuture<Void> deleteAsync(UUID userId, String key) {
+        return this.writeAsync(new UserData.Id(userId, key), new PendingWrite.Delete());
     }
 
     public void delete(UUID userId) {
+        this.flush();
+        if (this.cache != null) {
+            this.cache.clear();
+        }
         this.collection.deleteMany(Filters.eq("_id.user_id", userId));
     }
 
     public boolean contains(UUID userId, String key) {
         var id = new UserData.Id(userId, key);
+        if (this.cache != null) {
+            return this.get(userId, key).isPresent();
+        }
+        this.flush(id);
         return this.collection.countDocuments(Filters.eq(id), new CountOptions().limit(1)) > 0;
     }
 
     public boolean contains(UUID userId, String key, DataType<?> type) {
         var id = new UserData.Id(userId, key);
+        if (this.cache != null) {
+            return this.get(userId, key).filter(value -> value.type().name().equals(type.name())).isPresent();
+        }
+        this.flush(id);
         return this.collection.countDocuments(
             Filters.and(
                 Filters.eq(id),
@@ -103,11 +198,234 @@ public class UserDataCollection {
         ) > 0;
     }
 
+    public CompletableFuture<Boolean> containsAsync(UUID userId, String key) {
+        var id = new UserData.Id(userId, key);
+        if (this.cache != null) {
+            return this.getAsync(userId, key).thenApply(Optional::isPresent);
+        }
+        return this.existsAsync(id, Filters.eq(id));
+    }
+
+    public CompletableFuture<Boolean> containsAsync(UUID userId, String key, DataType<?> type) {
+        var id = new UserData.Id(userId, key);
+        if (this.cache != null) {
+            return this.getAsync(userId, key).thenApply(value -> value.filter(box -> box.type().name().equals(type.name())).isPresent());
+        }
+        return this.existsAsync(id, Filters.and(Filters.eq(id), Filters.eq("value.type", type.name())));
+    }
+
     public long size() {
+        this.flush();
         return this.collection.countDocuments();
     }
 
     public void clear() {
+        this.flush();
+        if (this.cache != null) {
+            this.cache.clear();
+        }
         this.collection.drop();
     }
+
+    /**
+     * Writes any buffered writes to the database, blocking until they are
+     * written. Does nothing if writes are not buffered.
+     */
+    public void flush() {
+        if (this.writeBehind != null) {
+            this.writeBehind.flush();
+        }
+    }
+
+    private void flush(UserData.Id id) {
+        if (this.writeBehind != null) {
+            this.writeBehind.flush(id);
+        }
+    }
+
+    private Optional<DataBox<?>> find(UserData.Id id) {
+        this.flush(id);
+        var userData = this.collection.find(Filters.eq(id))
+            .limit(1)
+            .first();
+        if (userData == null) {
+            return Optional.empty();
+        } else {
+            return Optional.of(userData.getValue());
+        }
+    }
+
+    private CompletableFuture<Void> flushAsync(UserData.Id id) {
+        return this.writeBehind == null ? CompletableFuture.completedFuture(null) : this.writeBehind.flushAsync(id);
+    }
+
+    private CompletableFuture<Optional<DataBox<?>>> findAsync(UserData.Id id) {
+        return this.flushAsync(id)
+            .thenCompose($ -> Database.first(this.reactiveCollection.find(Filters.eq(id)).first()))
+            .thenApply(userData -> Optional.ofNullable(userData).map(UserData::getValue));
+    }
+
+    private CompletableFuture<Boolean> existsAsync(UserData.Id id, Bson filter) {
+        return this.flushAsync(id)
+            .thenCompose($ -> Database.first(this.reactiveCollection.countDocuments(filter, new CountOptions().limit(1))))
+            .thenApply(count -> count > 0);
+    }
+
+    private void write(UserData.Id id, PendingWrite write) {
+        if (this.cache != null) {
+            this.cache.onWrite(id, write);
+        }
+        boolean written = false;
+        try {
+            if (this.writeBehind == null) {
+                this.writeNow(this.toModel(id, write));
+            } else {
+                this.writeBehind.add(id, write);
+            }
+            written = true;
+        } finally {
+            if (this.cache != null) {
+                this.cache.onWritten(id, written);
+            }
+        }
+    }
+
+    private CompletableFuture<Void> writeAsync(UserData.Id id, PendingWrite write) {
+        if (this.writeBehind != null) {
+            this.write(id, write);
+            return CompletableFuture.completedFuture(null);
+        }
+        var model = this.toModel(id, write);
+        Publisher<?> publisher;
+        if (model instanceof ReplaceOneModel<UserData> replace) {
+            publisher = this.reactiveCollection.replaceOne(replace.getFilter(), replace.getReplacement(), replace.getReplaceOptions());
+        } else if (model instanceof UpdateOneModel<UserData> update) {
+            publisher = this.reactiveCollection.updateOne(update.getFilter(), update.getUpdate(), update.getOptions());
+        } else {
+            publisher = this.reactiveCollection.deleteOne(((DeleteOneModel<UserData>) model).getFilter());
+        }
+        if (this.cache == null) {
+            return Database.first(publisher).thenApply($ -> null);
+        }
+        this.cache.onWrite(id, write);
+        return Database.first(publisher).whenComplete(($, e) -> this.cache.onWritten(id, e == null)).thenApply($ -> null);
+    }
+
+    /**
+     * Performs a write model on its own, so that a failing write throws the
+     * same exception as the equivalent single-document method.
+     *
+     * @param model the model
+     */
+    private void writeNow(WriteModel<UserData> model) {
+        if (model instanceof ReplaceOneModel<UserData> replace) {
+            this.collection.replaceOne(replace.getFilter(), replace.getReplacement(), replace.getReplaceOptions());
+        } else if (model instanceof UpdateOneModel<UserData> update) {
+            this.collection.updateOne(update.getFilter(), update.getUpdate(), update.getOptions());
+        } else if (model instanceof DeleteOneModel<UserData> delete) {
+            this.collection.deleteOne(delete.getFilter());
+        }
+    }
+
+    /**
+     * Creates a single model which performs a list of writes to one piece of
+     * data, in order. More than one write becomes an update pipeline with a
+     * stage for each write.
+     *
+     * @param id     the ID of the data
+     * @param writes the writes
+     * @return the model
+     */
+    private WriteModel<UserData> toModel(UserData.Id id, List<PendingWrite> writes) {
+        if (writes.size() == 1) {
+            return this.toModel(id, writes.get(0));
+        }
+        List<BsonDocument> pipeline = new ArrayList<>(writes.size());
+        boolean upsert = false;
+        for (var write : writes) {
+            pipeline.add(this.toStage(id, write));
+            upsert |= write instanceof PendingWrite.Set
+                || write instanceof PendingWrite.SetIfAbsent
+                || write instanceof PendingWrite.Increment increment && increment.createIfAbsent();
+        }
+        return new UpdateOneModel<>(Filters.eq(id), pipeline, new UpdateOptions().upsert(upsert));
+    }
+
+    private WriteModel<UserData> toModel(UserData.Id id, PendingWrite write) {
+        var filter = Filters.eq(id);
+        if (write instanceof PendingWrite.Set set) {
+            var userData = new UserData(id.userId(), id.key(), set.value());
+            return new ReplaceOneModel<>(filter, userData, new ReplaceOptions().upsert(true));
+        } else if (write instanceof PendingWrite.SetIfAbsent setIfAbsent) {
+            var document = this.encode(new UserData(id.userId(), id.key(), setIfAbsent.value()));
+            return new UpdateOneModel<>(filter, Updates.setOnInsert(document), new UpdateOptions().upsert(true));
+        } else if (write instanceof PendingWrite.Increment increment && increment.createIfAbsent()) {
+            var update = Updates.combine(
+                Updates.set("_id", id),
+                Updates.set("value.type", DataType.NUMBER.name()),
+                Updates.inc("value.value", increment.amount())
+            );
+            return new UpdateOneModel<>(filter, update, new UpdateOptions().upsert(true));
+        } else if (write instanceof PendingWrite.Increment increment) {
+            return new UpdateOneModel<>(filter, Updates.inc("value.value", increment.amount()));
+        } else if (write instanceof PendingWrite.Multiply multiply) {
+            return new UpdateOneModel<>(filter, Updates.mul("value.value", multiply.factor()));
+        } else {
+            return new DeleteOneModel<>(filter);
+        }
+    }
+
+    /**
+     * Creates an update pipeline stage which performs a write. Where the data
+     * does not exist, its document only has an ID, so whether it exists is
+     * whether it has a value.
+     *
+     * @param id    the ID of the data
+     * @param write the write
+     * @return the stage
+     */
+    private BsonDocument toStage(UserData.Id id, PendingWrite write) {
+        var missing = new BsonDocument("$eq", new BsonArray(List.of(
+            new BsonDocument("$type", new BsonString("$value")),
+            new BsonString("missing")
+        )));
+        if (write instanceof PendingWrite.Set set) {
+            var document = this.encode(new UserData(id.userId(), id.key(), set.value()));
+            return new BsonDocument("$replaceWith", new BsonDocument("$literal", document));
+        } else if (write instanceof PendingWrite.SetIfAbsent setIfAbsent) {
+            var document = this.encode(new UserData(id.userId(), id.key(), setIfAbsent.value()));
+            return new BsonDocument("$replaceWith", new BsonDocument("$cond", new BsonArray(List.of(
+                missing,
+                new BsonDocument("$literal", document),
+                new BsonString("$$ROOT")
+            ))));
+        } else if (write instanceof PendingWrite.Increment increment) {
+            BsonValue created = increment.createIfAbsent()
+                ? new BsonDocument("$literal", new BsonDocument("type", new BsonString(DataType.NUMBER.name())).append("value", new BsonDouble(increment.amount())))
+                : new BsonString("$$REMOVE");
+            return setValue(missing, created, "$add", increment.amount());
+        } else if (write instanceof PendingWrite.Multiply multiply) {
+            return setValue(missing, new BsonString("$$REMOVE"), "$multiply", multiply.factor());
+        } else {
+            return new BsonDocument("$unset", new BsonString("value"));
+        }
+    }
+
+    private static BsonDocument setValue(BsonDocument missing, BsonValue ifMissing, String operator, double operand) {
+        var updated = new BsonDocument("$mergeObjects", new BsonArray(List.of(
+            new BsonString("$value"),
+            new BsonDocument("value", new BsonDocument(operator, new BsonArray(List.of(new BsonString("$value.value"), new BsonDouble(operand)))))
+        )));
+        return new BsonDocument("$set", new BsonDocument("value", new BsonDocument("$cond", new BsonArray(List.of(missing, ifMissing, updated)))));
+    }
+
+    private BsonDocument encode(UserData userData) {
+        var document = new BsonDocument();
+        var context = EncoderContext.builder().build();
+        var codec = Database.getCodecRegistry().get(UserData.class);
+        try (var writer = new BsonDocumentWriter(document)) {
+            codec.encode(writer, userData, context);
+        }
+        return document;
+    }
 }
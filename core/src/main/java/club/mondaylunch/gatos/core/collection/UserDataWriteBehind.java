@@ -0,0 +1,337 @@
+package club.mondaylunch.gatos.core.collection;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.WriteModel;
+import org.jetbrains.annotations.Nullable;
+
+import club.mondaylunch.gatos.core.GatosCore;
+import club.mondaylunch.gatos.core.data.DataBox;
+import club.mondaylunch.gatos.core.data.DataType;
+import club.mondaylunch.gatos.core.models.UserData;
+
+/**
+ * Buffers writes to user data, and flushes them to the database together.
+ * <p>
+ * Writes to the same piece of user data are coalesced where the result is the
+ * same: two increments become one, an increment after a set becomes a set of
+ * the new value, and a set or delete replaces everything before it. Every
+ * {@code window}, the writes to each piece of data are merged into a single
+ * write model, and all of them are sent in one unordered {@code bulkWrite}, so
+ * a write which fails only affects the data it was written to.
+ * </p>
+ * <p>
+ * If a piece of data's merged write fails, its writes are retried one at a
+ * time, in order, so that those before the failing write still happen, as they
+ * would without the buffer. Failed writes are logged and dropped. If the
+ * {@code bulkWrite} fails as a whole, for example because the database could
+ * not be reached, everything in it is put back in the buffer, ahead of any
+ * writes made since, to be retried on the next flush.
+ * </p>
+ * <p>
+ * The buffer is also flushed when it holds writes to {@code maxPending}
+ * pieces of data, and when the JVM shuts down.
+ * </p>
+ */
+final class UserDataWriteBehind {
+    private final MongoCollection<UserData> collection;
+    private final BiFunction<UserData.Id, List<PendingWrite>, WriteModel<UserData>> toModel;
+    private final int maxPending;
+    private final ScheduledExecutorService flusher;
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private Map<UserData.Id, List<PendingWrite>> pending = new LinkedHashMap<>();
+
+    /**
+     * Creates a buffer and starts flushing it periodically.
+     *
+     * @param collection   the collection to write to
+     * @param toModel      creates the model which performs a list of writes, in order
+     * @param windowMillis how often to flush, in milliseconds
+     * @param maxPending   how many pieces of data may have writes buffered before the buffer is flushed early
+     */
+    UserDataWriteBehind(MongoCollection<UserData> collection, BiFunction<UserData.Id, List<PendingWrite>, WriteModel<UserData>> toModel, long windowMillis, int maxPending) {
+        this.collection = collection;
+        this.toModel = toModel;
+        this.maxPending = maxPending;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "gatos-user-data-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.flusher.scheduleWithFixedDelay(this::flushQuietly, windowMillis, windowMillis, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flushQuietly, "gatos-user-data-drain"));
+    }
+
+    /**
+     * Buffers a write.
+     *
+     * @param id    the ID of the data to write
+     * @param write the write
+     */
+    void add(UserData.Id id, PendingWrite write) {
+        boolean full;
+        synchronized (this) {
+            append(this.pending.computeIfAbsent(id, $ -> new ArrayList<>(1)), write);
+            full = this.pending.size() >= this.maxPending;
+        }
+        if (full) {
+            this.flusher.execute(this::flushQuietly);
+        }
+    }
+
+    /**
+     * Writes everything buffered to the database, blocking until it is
+     * written.
+     */
+    void flush() {
+        this.flushLock.lock();
+        try {
+            Map<UserData.Id, List<PendingWrite>> writes;
+            synchronized (this) {
+                if (this.pending.isEmpty()) {
+                    return;
+                }
+                writes = this.pending;
+                this.pending = new LinkedHashMap<>();
+            }
+            this.write(writes);
+        } finally {
+            this.flushLock.unlock();
+        }
+    }
+
+    /**
+     * Writes everything buffered for one piece of data to the database,
+     * blocking until it is written.
+     *
+     * @param id the ID of the data
+     */
+    void flush(UserData.Id id) {
+        this.flushLock.lock();
+        try {
+            List<PendingWrite> writes;
+            synchronized (this) {
+                writes = this.pending.remove(id);
+            }
+            if (writes != null) {
+                Map<UserData.Id, List<PendingWrite>> idWrites = new LinkedHashMap<>();
+                idWrites.put(id, writes);
+                this.write(idWrites);
+            }
+        } finally {
+            this.flushLock.unlock();
+        }
+    }
+
+    /**
+     * Writes everything buffered for one piece of data to the database
+     * without blocking, on the flushing thread. If nothing is buffered for it,
+     * and no flush is being written, the returned future is already complete.
+     *
+     * @param id the ID of the data
+     * @return a future which completes once the data's writes are written
+     */
+    CompletableFuture<Void> flushAsync(UserData.Id id) {
+        boolean buffered;
+        synchronized (this) {
+            buffered = this.pending.containsKey(id);
+        }
+        // writes are only taken out of the buffer with the lock held, so if it is free they have been written
+        if (!buffered && !this.flushLock.isLocked()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.runAsync(() -> this.flush(id), this.flusher);
+    }
+
+    private void flushQuietly() {
+        try {
+            this.flush();
+        } catch (RuntimeException e) {
+            GatosCore.LOGGER.error("Failed to flush buffered user data writes, will retry", e);
+        }
+    }
+
+    private void write(Map<UserData.Id, List<PendingWrite>> writes) {
+        List<UserData.Id> ids = new ArrayList<>(writes.keySet());
+        var models = ids.stream().map(id -> this.toModel.apply(id, writes.get(id))).toList();
+        try {
+            this.collection.bulkWrite(models, new BulkWriteOptions().ordered(false));
+        } catch (MongoBulkWriteException e) {
+            if (e.getWriteConcernError() != null) {
+                GatosCore.LOGGER.warn("Buffered user data writes were not acknowledged: {}", e.getWriteConcernError().getMessage());
+            }
+            Map<UserData.Id, List<PendingWrite>> failed = new LinkedHashMap<>();
+            for (var error : e.getWriteErrors()) {
+                var id = ids.get(error.getIndex());
+                failed.put(id, writes.get(id));
+            }
+            this.writeSeparately(failed);
+        } catch (RuntimeException e) {
+            this.requeue(writes);
+            throw e;
+        }
+    }
+
+    /**
+     * Writes each of the writes to each piece of data on its own, in order,
+     * dropping those which fail.
+     *
+     * @param writes the writes, by data ID
+     */
+    private void writeSeparately(Map<UserData.Id, List<PendingWrite>> writes) {
+        var iterator = writes.entrySet().iterator();
+        while (iterator.hasNext()) {
+            var entry = iterator.next();
+            var idWrites = entry.getValue();
+            while (!idWrites.isEmpty()) {
+                var write = idWrites.get(0);
+                try {
+                    this.collection.bulkWrite(List.of(this.toModel.apply(entry.getKey(), List.of(write))));
+                } catch (MongoBulkWriteException e) {
+                    GatosCore.LOGGER.error("Dropping buffered write {} to user data {}: {}", write, entry.getKey(), e.getMessage());
+                } catch (RuntimeException e) {
+                    this.requeue(writes);
+                    throw e;
+                }
+                idWrites.remove(0);
+            }
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Puts writes which could not be sent back in the buffer, before any
+     * writes made to the same data since.
+     *
+     * @param failed the writes which could not be sent
+     */
+    private synchronized void requeue(Map<UserData.Id, List<PendingWrite>> failed) {
+        var newer = this.pending;
+        this.pending = new LinkedHashMap<>(failed);
+        newer.forEach((id, writes) -> {
+            var combined = this.pending.computeIfAbsent(id, $ -> new ArrayList<>(writes.size()));
+            writes.forEach(write -> append(combined, write));
+        });
+    }
+
+    /**
+     * Adds a write to the end of a list of writes to the same data,
+     * coalescing it with the write before it if possible.
+     *
+     * @param writes the writes
+     * @param write  the write to add
+     */
+    private static void append(List<PendingWrite> writes, PendingWrite write) {
+        if (write instanceof PendingWrite.Set || write instanceof PendingWrite.Delete) {
+            writes.clear();
+            writes.add(write);
+        } else if (writes.isEmpty()) {
+            writes.add(write);
+        } else {
+            var merged = writes.get(writes.size() - 1).then(write);
+            if (merged == null) {
+                writes.add(write);
+            } else {
+                writes.set(writes.size() - 1, merged);
+            }
+        }
+    }
+
+    /**
+     * A buffered write to a piece of user data.
+     */
+    sealed interface PendingWrite {
+        /**
+         * Combines this write with one made after it into a single write, if
+         * that has the same result.
+         *
+         * @param next the next write
+         * @return the combined write, or null if they cannot be combined
+         */
+        @Nullable
+        PendingWrite then(PendingWrite next);
+
+        /**
+         * Replaces the data, creating it if it does not exist.
+         *
+         * @param value the new value
+         */
+        record Set(DataBox<?> value) implements PendingWrite {
+            @Override
+            public @Nullable PendingWrite then(PendingWrite next) {
+                if (next instanceof SetIfAbsent) {
+                    return this;
+                } else if (this.value.type() == DataType.NUMBER && next instanceof Increment increment) {
+                    return new Set(DataType.NUMBER.create((Double) this.value.value() + increment.amount()));
+                } else if (this.value.type() == DataType.NUMBER && next instanceof Multiply multiply) {
+                    return new Set(DataType.NUMBER.create((Double) this.value.value() * multiply.factor()));
+                }
+                return null;
+            }
+        }
+
+        /**
+         * Creates the data if it does not exist.
+         *
+         * @param value the new value
+         */
+        record SetIfAbsent(DataBox<?> value) implements PendingWrite {
+            @Override
+            public @Nullable PendingWrite then(PendingWrite next) {
+                return next instanceof SetIfAbsent ? this : null;
+            }
+        }
+
+        /**
+         * Adds to a number, optionally creating it if it does not exist.
+         *
+         * @param amount         the amount to add
+         * @param createIfAbsent whether to create the data if it does not exist
+         */
+        record Increment(double amount, boolean createIfAbsent) implements PendingWrite {
+            @Override
+            public @Nullable PendingWrite then(PendingWrite next) {
+                // once this has run the data exists if it was created, so whether the next write creates it makes no difference
+                if (next instanceof Increment increment && (this.createIfAbsent || !increment.createIfAbsent())) {
+                    return new Increment(this.amount + increment.amount(), this.createIfAbsent);
+                }
+                return null;
+            }
+        }
+
+        /**
+         * Multiplies a number, if it exists.
+         *
+         * @param factor the factor to multiply by
+         */
+        record Multiply(double factor) implements PendingWrite {
+            @Override
+            public @Nullable PendingWrite then(PendingWrite next) {
+                return next instanceof Multiply multiply ? new Multiply(this.factor * multiply.factor()) : null;
+            }
+        }
+
+        /**
+         * Deletes the data.
+         */
+        record Delete() implements PendingWrite {
+            @Override
+            public @Nullable PendingWrite then(PendingWrite next) {
+                // updates which do not create the data do nothing once it has been deleted
+                return next instanceof Multiply || next instanceof Increment increment && !increment.createIfAbsent() ? this : null;
+            }
+        }
+    }
+}
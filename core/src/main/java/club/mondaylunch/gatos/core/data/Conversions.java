@@ -9,6 +9,7 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 
 import com.google.common.collect.Lists;
@@ -38,6 +39,13 @@ public final class Conversions {
         .allowsSelfLoops(true)
         .build();
 
+    /**
+     * The composed conversion function between each pair of {@code DataType}s
+     * that has been looked up so far, or an empty {@code Optional} if there is
+     * no conversion between them. Cleared whenever a conversion is registered.
+     */
+    private static final Map<ConversionPair, Optional<Function<?, ?>>> CONVERSION_FUNCTIONS = new ConcurrentHashMap<>();
+
     /**
      * Register a conversion between two types.
      * A conversion for {@link DataType#listOf() lists}
@@ -70,6 +78,7 @@ public final class Conversions {
      */
     public static <A, B> void registerSimple(DataType<A> typeA, DataType<B> typeB, Function<A, B> conversionFunction) {
         TYPE_CONVERSIONS.putEdgeValue(typeA, typeB, conversionFunction);
+        CONVERSION_FUNCTIONS.clear();
     }
 
     private static <A, B> List<B> convertList(List<A> elements, Function<A, B> conversionFunction) {
@@ -91,34 +100,42 @@ public final class Conversions {
      * @return whether there is a conversion between the two
      */
     public static boolean canConvert(DataType<?> a, DataType<?> b) {
-        if (a.equals(b)) {
-            return true;
-        }
-
-        if (TYPE_CONVERSIONS.hasEdgeConnecting(a, b)) {
-            return true;
-        }
-
-        if (TYPE_CONVERSIONS.nodes().contains(a) && TYPE_CONVERSIONS.nodes().contains(b)) {
-            var traverser = Traverser.forGraph(TYPE_CONVERSIONS);
-            var nodePath = traverser.depthFirstPreOrder(a);
-            for (var node : nodePath) {
-                if (node.equals(b)) {
-                    return true;
-                }
-            }
-        }
-
-        return false;
+        return getConversionFunction(a, b).isPresent();
     }
 
     public static <A, B> DataBox<B> convert(DataBox<A> a, DataType<B> typeB) {
-        var valueA = a.value();
-        if (valueA == null) {
+        if (a.value() == null) {
             throw new ConversionException("Cannot convert null");
         }
         var func = getConversionFunction(a.type(), typeB)
             .orElseThrow(() -> new ConversionException("Cannot convert %s to %s".formatted(a.type(), typeB)));
+        return applyConversion(func, a, typeB);
+    }
+
+    /**
+     * Resolves the conversion between two {@code DataType}s once, so that it
+     * can be applied to many values without searching for a conversion path
+     * each time. The returned function behaves like {@link #convert(DataBox, DataType)}
+     * for boxes of type {@code a}.
+     *
+     * @param a   The type to convert from.
+     * @param b   The type to convert to.
+     * @param <A> The type to convert from.
+     * @param <B> The type to convert to.
+     * @return An {@code Optional} containing the converter, or empty if there
+     * is no conversion between the two types.
+     */
+    public static <A, B> Optional<Function<DataBox<A>, DataBox<B>>> getConverter(DataType<A> a, DataType<B> b) {
+        return getConversionFunction(a, b).map(func -> box -> {
+            if (box.value() == null) {
+                throw new ConversionException("Cannot convert null");
+            }
+            return applyConversion(func, box, b);
+        });
+    }
+
+    private static <A, B> DataBox<B> applyConversion(Function<A, B> func, DataBox<A> a, DataType<B> typeB) {
+        var valueA = a.value();
         B result;
         try {
             result = func.apply(valueA);
@@ -133,7 +150,9 @@ public final class Conversions {
     }
 
     /**
-     * Gets the conversion function between two {@code DataType}s.
+     * Gets the conversion function between two {@code DataType}s. The
+     * function is looked up once per pair of types, and then cached until
+     * another conversion is registered.
      *
      * @param a   The first {@code DataType}.
      * @param b   The second {@code DataType}.
@@ -148,7 +167,25 @@ public final class Conversions {
         if (a.equals(b)) {
             return Optional.of((Function<A, B>) Function.identity());
         }
+        var func = CONVERSION_FUNCTIONS.get(new ConversionPair(a, b));
+        if (func == null) {
+            func = findConversionFunction(a, b);
+            CONVERSION_FUNCTIONS.put(new ConversionPair(a, b), func);
+        }
+        return func.map(f -> (Function<A, B>) f);
+    }
 
+    /**
+     * Searches for the shortest conversion path between two {@code DataType}s,
+     * and composes its conversion functions.
+     *
+     * @param a The first {@code DataType}.
+     * @param b The second {@code DataType}.
+     * @return An {@code Optional} containing the composed conversion function,
+     * or empty if no conversion path between the two {@code DataType}s exists.
+     */
+    @SuppressWarnings("unchecked")
+    private static Optional<Function<?, ?>> findConversionFunction(DataType<?> a, DataType<?> b) {
         if (TYPE_CONVERSIONS.nodes().contains(a) && TYPE_CONVERSIONS.nodes().contains(b)) {
             return getPath(TYPE_CONVERSIONS, a, b).map(conversions -> conversions.stream()
                 .map(Function.class::cast)
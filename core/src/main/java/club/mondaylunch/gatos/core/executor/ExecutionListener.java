@@ -0,0 +1,18 @@
+package club.mondaylunch.gatos.core.executor;
+
+/**
+ * Receives a {@link NodeTrace} for each node of a flow execution once it has
+ * finished computing. Listeners are called on whichever thread finished the
+ * node, so they must be thread-safe and should return quickly.
+ */
+@FunctionalInterface
+public interface ExecutionListener {
+    /**
+     * Called when a node has finished computing, successfully or not. Nodes
+     * which never start, because a node they depend on failed, are not
+     * reported.
+     *
+     * @param trace the trace of the node
+     */
+    void onNodeFinished(NodeTrace trace);
+}
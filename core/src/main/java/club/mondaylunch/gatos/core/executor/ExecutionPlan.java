@@ -0,0 +1,448 @@
+package club.mondaylunch.gatos.core.executor;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
+
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.Unmodifiable;
+
+import club.mondaylunch.gatos.core.data.Conversions;
+import club.mondaylunch.gatos.core.data.DataBox;
+import club.mondaylunch.gatos.core.data.DataType;
+import club.mondaylunch.gatos.core.graph.Graph;
+import club.mondaylunch.gatos.core.graph.Node;
+import club.mondaylunch.gatos.core.graph.connector.NodeConnection;
+import club.mondaylunch.gatos.core.graph.connector.NodeConnector;
+import club.mondaylunch.gatos.core.graph.type.NodeCategory;
+import club.mondaylunch.gatos.core.graph.type.NodeType;
+
+/**
+ * An immutable, pre-analysed form of a flow graph, ready to be run by a
+ * {@link GraphExecutor}.
+ * <p>
+ * Compiling a plan does all the work that only depends on the shape of the
+ * graph - ordering the nodes, resolving which output feeds each input, and
+ * looking up the conversion functions between connector types - so that
+ * executing it does no graph analysis. Every consumed node output is given an
+ * integer slot, and every input refers to the slot it reads from.
+ * </p>
+ * <p>
+ * {@link NodeType.Process#isPure() Pure} nodes which are fed only by other
+ * pure nodes are computed once, when the plan is compiled, as long as their
+ * outputs are immutable. Their outputs are the initial contents of their
+ * slots, and they are never scheduled.
+ * </p>
+ * <p>
+ * Each trigger also gets its own list of steps to schedule: only the nodes
+ * which feed an end node reachable from that trigger. Nodes on dead branches,
+ * or on branches belonging to a different start node, are never computed.
+ * </p>
+ */
+public final class ExecutionPlan {
+    /**
+     * The user ID pure nodes are computed as while compiling a plan. Pure
+     * nodes must not depend on it.
+     */
+    private static final UUID FOLDING_USER_ID = new UUID(0, 0);
+
+    private final @Unmodifiable List<Step> steps;
+    private final @Unmodifiable Map<UUID, Step> startSteps;
+    private final @Unmodifiable Map<UUID, List<Step>> stepsByTrigger;
+    private final @Unmodifiable List<Step> untriggeredSteps;
+    private final int slotCount;
+    private final @Nullable DataBox<?>[] foldedValues;
+    private final boolean[] folded;
+
+    /**
+     * Checks whether a value can safely be shared between executions.
+     *
+     * @param value the value
+     * @return whether no node can change the value
+     */
+    private static boolean isImmutable(@Nullable Object value) {
+        if (value instanceof Optional<?> optional) {
+            return optional.isEmpty() || isImmutable(optional.get());
+        }
+        return value == null
+            || value instanceof String
+            || value instanceof Double
+            || value instanceof Boolean
+            || value instanceof DataType<?>
+            || value instanceof NodeType;
+    }
+
+    /**
+     * Compiles a plan for a graph.
+     *
+     * @param nodes       the nodes to execute, in execution order
+     * @param connections all connections between nodes
+     */
+    public ExecutionPlan(List<Node> nodes, Collection<NodeConnection<?>> connections) {
+        Map<NodeConnector.Input<?>, List<NodeConnection<?>>> connectionsByInput = new HashMap<>();
+        for (var connection : connections) {
+            connectionsByInput.computeIfAbsent(connection.to(), $ -> new ArrayList<>()).add(connection);
+        }
+
+        List<Node> orderedNodes = new ArrayList<>();
+        for (var node : nodes) {
+            if (node.type() instanceof NodeType.WithOutputs) {
+                orderedNodes.add(node);
+            }
+        }
+        for (var node : nodes) {
+            if (node.type().category() == NodeCategory.END) {
+                orderedNodes.add(node);
+            }
+        }
+
+        Map<UUID, Integer> stepIndices = new HashMap<>();
+        for (int i = 0; i < orderedNodes.size(); i++) {
+            stepIndices.put(orderedNodes.get(i).id(), i);
+        }
+
+        Map<UUID, Map<String, Integer>> slotsByNode = new HashMap<>();
+        List<List<InputBinding>> inputsByStep = new ArrayList<>();
+        int slots = 0;
+        for (var node : orderedNodes) {
+            List<InputBinding> bindings = new ArrayList<>();
+            for (var input : node.inputs().values()) {
+                for (var connection : connectionsByInput.getOrDefault(input, List.of())) {
+                    var from = connection.from();
+                    Integer sourceStep = stepIndices.get(from.nodeId());
+                    if (sourceStep == null) {
+                        continue;
+                    }
+                    var sourceSlots = slotsByNode.computeIfAbsent(from.nodeId(), $ -> new HashMap<>());
+                    int slot;
+                    if (sourceSlots.containsKey(from.name())) {
+                        slot = sourceSlots.get(from.name());
+                    } else {
+                        slot = slots++;
+                        sourceSlots.put(from.name(), slot);
+                    }
+                    var sourceType = orderedNodes.get(sourceStep).getOutputWithName(from.name())
+                        .<DataType<?>>map(NodeConnector::type)
+                        .orElse(from.type());
+                    bindings.add(InputBinding.create(input.name(), sourceStep, slot, sourceType, input.type()));
+                }
+            }
+            inputsByStep.add(bindings);
+        }
+
+        var foldedValues = new DataBox<?>[slots];
+        boolean[] folded = new boolean[orderedNodes.size()];
+        for (int i = 0; i < orderedNodes.size(); i++) {
+            var node = orderedNodes.get(i);
+            folded[i] = fold(node, inputsByStep.get(i), slotsByNode.getOrDefault(node.id(), Map.of()), folded, foldedValues);
+        }
+
+        List<Step> steps = new ArrayList<>();
+        Map<UUID, Step> startSteps = new HashMap<>();
+        for (int i = 0; i < orderedNodes.size(); i++) {
+            var node = orderedNodes.get(i);
+            var inputs = inputsByStep.get(i);
+            var dependencies = new LinkedHashSet<Integer>();
+            for (var binding : inputs) {
+                if (!folded[binding.sourceStep()]) {
+                    dependencies.add(binding.sourceStep());
+                }
+            }
+            Map<String, Integer> inputIndices = new HashMap<>();
+            for (int j = 0; j < inputs.size(); j++) {
+                inputIndices.put(inputs.get(j).name(), j);
+            }
+            var outputs = slotsByNode.getOrDefault(node.id(), Map.of()).entrySet().stream()
+                .map(e -> new OutputBinding(e.getKey(), e.getValue()))
+                .toList();
+            var step = new Step(
+                i,
+                node,
+                List.copyOf(inputs),
+                Map.copyOf(inputIndices),
+                List.copyOf(outputs),
+                dependencies.stream().mapToInt(Integer::intValue).toArray());
+            steps.add(step);
+            if (node.type().category() == NodeCategory.START) {
+                startSteps.put(node.id(), step);
+            }
+        }
+
+        this.steps = List.copyOf(steps);
+        this.startSteps = Map.copyOf(startSteps);
+        this.slotCount = slots;
+        this.foldedValues = foldedValues;
+        this.folded = folded;
+
+        Map<UUID, List<Step>> stepsByTrigger = new HashMap<>();
+        for (var startStep : startSteps.values()) {
+            stepsByTrigger.put(startStep.node().id(), this.findLiveSteps(startStep));
+        }
+        this.stepsByTrigger = Map.copyOf(stepsByTrigger);
+        this.untriggeredSteps = this.findLiveSteps(null);
+    }
+
+    /**
+     * Finds the steps which need to be computed when a flow is triggered from
+     * a given start step: every step that feeds an end node reachable from
+     * that start step. With no trigger, every end node is a target.
+     *
+     * @param trigger the step of the triggering start node, or null
+     * @return the steps to compute, in plan order
+     */
+    private List<Step> findLiveSteps(@Nullable Step trigger) {
+        int count = this.steps.size();
+        boolean[] targeted = new boolean[count];
+        if (trigger == null) {
+            Arrays.fill(targeted, true);
+        } else {
+            List<List<Integer>> dependents = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                dependents.add(new ArrayList<>());
+            }
+            for (var step : this.steps) {
+                for (int dependency : step.dependencies()) {
+                    dependents.get(dependency).add(step.index());
+                }
+            }
+            Deque<Integer> queue = new ArrayDeque<>();
+            targeted[trigger.index()] = true;
+            queue.add(trigger.index());
+            while (!queue.isEmpty()) {
+                for (int dependent : dependents.get(queue.poll())) {
+                    if (!targeted[dependent]) {
+                        targeted[dependent] = true;
+                        queue.add(dependent);
+                    }
+                }
+            }
+        }
+
+        boolean[] live = new boolean[count];
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (var step : this.steps) {
+            if (targeted[step.index()] && step.node().type().category() == NodeCategory.END) {
+                live[step.index()] = true;
+                queue.add(step.index());
+            }
+        }
+        while (!queue.isEmpty()) {
+            for (int dependency : this.steps.get(queue.poll()).dependencies()) {
+                if (!live[dependency]) {
+                    live[dependency] = true;
+                    queue.add(dependency);
+                }
+            }
+        }
+
+        List<Step> liveSteps = new ArrayList<>();
+        for (var step : this.steps) {
+            if (live[step.index()] && !this.folded[step.index()]) {
+                liveSteps.add(step);
+            }
+        }
+        return List.copyOf(liveSteps);
+    }
+
+    /**
+     * Tries to compute a node while compiling the plan. This succeeds if the
+     * node is pure, every node feeding it was folded, and it computes all of
+     * its outputs without failing. Only {@link #isImmutable(Object) immutable}
+     * outputs are folded, since folded values are shared by every execution
+     * and some nodes update lists and JSON values in place.
+     *
+     * @param node         the node
+     * @param inputs       where each of the node's connected inputs comes from
+     * @param outputSlots  the slots of the node's consumed outputs, by connector name
+     * @param folded       whether each earlier step was folded
+     * @param foldedValues the slot values of the folded steps, which this node's outputs are added to
+     * @return whether the node was folded
+     */
+    private static boolean fold(
+        Node node,
+        List<InputBinding> inputs,
+        Map<String, Integer> outputSlots,
+        boolean[] folded,
+        @Nullable DataBox<?>[] foldedValues
+    ) {
+        if (!(node.type() instanceof NodeType.Process process) || !process.isPure()) {
+            return false;
+        }
+        Map<String, DataBox<?>> outputValues = new HashMap<>();
+        try {
+            Map<String, DataBox<?>> inputValues = new HashMap<>();
+            for (var binding : inputs) {
+                if (!folded[binding.sourceStep()]) {
+                    return false;
+                }
+                inputValues.put(binding.name(), binding.convert(foldedValues[binding.slot()]));
+            }
+            var outputs = process.compute(FOLDING_USER_ID, inputValues, node.settings(), node.inputTypes());
+            for (var entry : outputs.entrySet()) {
+                var output = entry.getValue();
+                if (!output.isDone() || output.isCompletedExceptionally()) {
+                    return false;
+                }
+                var value = output.join();
+                if (value != null && !isImmutable(value.value())) {
+                    return false;
+                }
+                outputValues.put(entry.getKey(), value);
+            }
+        } catch (RuntimeException e) {
+            return false;
+        }
+        for (var entry : outputSlots.entrySet()) {
+            foldedValues[entry.getValue()] = outputValues.get(entry.getKey());
+        }
+        return true;
+    }
+
+    /**
+     * Compiles a plan for a graph.
+     *
+     * @param graph the graph to compile
+     * @return the compiled plan
+     * @throws IllegalArgumentException if the graph is {@link Graph#validate() invalid}
+     */
+    public static ExecutionPlan compile(Graph graph) {
+        var order = graph.getExecutionOrder().maybeL().orElseThrow(() -> new IllegalArgumentException("Graph is invalid"));
+        return new ExecutionPlan(order, graph.getConnections());
+    }
+
+    /**
+     * Returns every step of this plan, in an order in which each step comes
+     * after all the steps it depends on. End nodes come last.
+     *
+     * @return the steps of this plan
+     */
+    public @Unmodifiable List<Step> steps() {
+        return this.steps;
+    }
+
+    /**
+     * Returns the steps which need to be computed when the flow is triggered
+     * from a start node, in plan order. These are the nodes which feed an end
+     * node reachable from the trigger. If there is no such start node, they
+     * are the nodes which feed any end node. Folded nodes are never included.
+     *
+     * @param triggerNodeId the ID of the triggering start node, or null
+     * @return the steps to compute
+     */
+    public @Unmodifiable List<Step> getLiveSteps(@Nullable UUID triggerNodeId) {
+        if (triggerNodeId == null) {
+            return this.untriggeredSteps;
+        }
+        return this.stepsByTrigger.getOrDefault(triggerNodeId, this.untriggeredSteps);
+    }
+
+    /**
+     * Returns the step for the start node with the given ID.
+     *
+     * @param nodeId the ID of the start node
+     * @return the step, or an empty optional if there is no such start node
+     */
+    public Optional<Step> getStartStep(@Nullable UUID nodeId) {
+        return nodeId == null ? Optional.empty() : Optional.ofNullable(this.startSteps.get(nodeId));
+    }
+
+    /**
+     * Returns the number of value slots an execution of this plan needs.
+     *
+     * @return the number of slots
+     */
+    public int slotCount() {
+        return this.slotCount;
+    }
+
+    /**
+     * Creates the value slots for an execution of this plan, holding the
+     * outputs of every folded node.
+     *
+     * @return a new array of {@link #slotCount()} slots
+     */
+    public @Nullable DataBox<?>[] createValues() {
+        return this.foldedValues.clone();
+    }
+
+    /**
+     * A single node to be computed.
+     *
+     * @param index        the index of this step in the plan
+     * @param node         the node
+     * @param inputs       where each of the node's connected inputs comes from
+     * @param inputIndices the index in {@code inputs} of each input, by connector name
+     * @param outputs      the slots each of the node's consumed outputs are stored in
+     * @param dependencies the indices of the unfolded steps this step must wait for
+     */
+    public record Step(
+        int index,
+        Node node,
+        List<InputBinding> inputs,
+        Map<String, Integer> inputIndices,
+        List<OutputBinding> outputs,
+        int[] dependencies
+    ) {
+    }
+
+    /**
+     * A connected node input.
+     *
+     * @param name       the name of the input connector
+     * @param sourceStep the index of the step producing the value
+     * @param slot       the slot the value is read from
+     * @param sourceType the declared type of the output producing the value
+     * @param type       the type of the input connector
+     * @param converter  the conversion from {@code sourceType} to {@code type},
+     *                   or null if none could be resolved
+     */
+    public record InputBinding(
+        String name,
+        int sourceStep,
+        int slot,
+        DataType<?> sourceType,
+        DataType<?> type,
+        @Nullable Function<DataBox<?>, DataBox<?>> converter
+    ) {
+        @SuppressWarnings("unchecked")
+        private static InputBinding create(String name, int sourceStep, int slot, DataType<?> sourceType, DataType<?> type) {
+            var converter = Conversions.getConverter((DataType<Object>) sourceType, (DataType<Object>) type)
+                .<Function<DataBox<?>, DataBox<?>>>map(func -> box -> func.apply((DataBox<Object>) box))
+                .orElse(null);
+            return new InputBinding(name, sourceStep, slot, sourceType, type, converter);
+        }
+
+        /**
+         * Converts a value produced by the source output to this input's type.
+         * Values whose type differs from the declared output type fall back
+         * to {@link Conversions#convert(DataBox, DataType)}.
+         *
+         * @param value the value to convert
+         * @return the converted value
+         */
+        public DataBox<?> convert(DataBox<?> value) {
+            if (this.converter != null && value.type().equals(this.sourceType)) {
+                return this.converter.apply(value);
+            }
+            return Conversions.convert(value, this.type);
+        }
+    }
+
+    /**
+     * A consumed node output.
+     *
+     * @param name the name of the output connector
+     * @param slot the slot the value is stored in
+     */
+    public record OutputBinding(String name, int slot) {
+    }
+}
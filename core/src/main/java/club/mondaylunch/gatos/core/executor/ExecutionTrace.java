@@ -0,0 +1,45 @@
+package club.mondaylunch.gatos.core.executor;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import com.google.gson.JsonArray;
+
+/**
+ * An {@link ExecutionListener} which collects the traces of every node of a
+ * single flow execution.
+ */
+public final class ExecutionTrace implements ExecutionListener {
+    private final ConcurrentLinkedQueue<NodeTrace> traces = new ConcurrentLinkedQueue<>();
+
+    @Override
+    public void onNodeFinished(NodeTrace trace) {
+        this.traces.add(trace);
+    }
+
+    /**
+     * Returns the traces collected so far, in the order the nodes started.
+     *
+     * @return the node traces
+     */
+    public List<NodeTrace> getNodeTraces() {
+        return this.traces.stream()
+            .sorted(Comparator.comparing(NodeTrace::startedAt))
+            .toList();
+    }
+
+    /**
+     * Serializes the traces collected so far to a JSON array, in the order
+     * the nodes started.
+     *
+     * @return the JSON form of this trace
+     */
+    public JsonArray toJson() {
+        var json = new JsonArray();
+        for (var trace : this.getNodeTraces()) {
+            json.add(trace.toJson());
+        }
+        return json;
+    }
+}
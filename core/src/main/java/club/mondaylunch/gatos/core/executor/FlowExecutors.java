@@ -0,0 +1,54 @@
+package club.mondaylunch.gatos.core.executor;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import club.mondaylunch.gatos.core.Environment;
+import club.mondaylunch.gatos.core.graph.type.ExecutionMode;
+
+/**
+ * The shared executors flow nodes are computed on, one per
+ * {@link ExecutionMode}.
+ */
+public final class FlowExecutors {
+    private static final ExecutorService COMPUTE = Executors.newFixedThreadPool(
+        Math.max(1, Environment.getFlowComputeThreads()),
+        daemonThreads("gatos-flow-compute-"));
+    private static final ExecutorService BLOCKING = Executors.newCachedThreadPool(daemonThreads("gatos-flow-blocking-"));
+
+    private FlowExecutors() {
+    }
+
+    /**
+     * Gets the bounded pool used for {@link ExecutionMode#COMPUTE} nodes.
+     * Its size is set by {@link Environment#getFlowComputeThreads()}.
+     *
+     * @return the compute executor
+     */
+    public static Executor compute() {
+        return COMPUTE;
+    }
+
+    /**
+     * Gets the executor used for {@link ExecutionMode#BLOCKING} nodes. Every
+     * task gets a thread of its own (idle threads are reused), so blocking
+     * calls never hold up the compute pool.
+     *
+     * @return the blocking executor
+     */
+    public static Executor blocking() {
+        return BLOCKING;
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        var counter = new AtomicInteger();
+        return runnable -> {
+            var thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -1,25 +1,25 @@
 package club.mondaylunch.gatos.core.executor;
 
-import java.util.Collection;
-import java.util.HashMap;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 import java.util.function.Supplier;
-import java.util.stream.Collectors;
 
 import org.jetbrains.annotations.Nullable;
-import org.jetbrains.annotations.Unmodifiable;
 
-import club.mondaylunch.gatos.core.data.Conversions;
 import club.mondaylunch.gatos.core.data.DataBox;
 import club.mondaylunch.gatos.core.graph.Graph;
 import club.mondaylunch.gatos.core.graph.Node;
 import club.mondaylunch.gatos.core.graph.connector.NodeConnection;
-import club.mondaylunch.gatos.core.graph.type.NodeCategory;
+import club.mondaylunch.gatos.core.graph.type.ExecutionMode;
 import club.mondaylunch.gatos.core.graph.type.NodeType;
 
 /**
@@ -27,11 +27,43 @@ import club.mondaylunch.gatos.core.graph.type.NodeType;
  * graph}.
  */
 public class GraphExecutor {
-    private final @Unmodifiable Collection<Node> nonEndNodes;
-    private final @Unmodifiable Collection<Node> endNodes;
-    private final @Unmodifiable Collection<Node> startNodes;
-    private final @Unmodifiable Collection<NodeConnection<?>> connections;
-    private final @Unmodifiable Map<Node, Collection<NodeConnection<?>>> nodeDependencies;
+    private static final List<ExecutionListener> GLOBAL_LISTENERS = new CopyOnWriteArrayList<>();
+
+    private final ExecutionPlan plan;
+    private final NodeExecutors executors;
+
+    /**
+     * Creates a new {@code GraphExecutor} for a compiled plan.
+     *
+     * @param plan             the plan to execute
+     * @param computeExecutor  the executor to compute {@link ExecutionMode#COMPUTE} nodes on
+     * @param blockingExecutor the executor to compute {@link ExecutionMode#BLOCKING} nodes on
+     */
+    public GraphExecutor(ExecutionPlan plan, Executor computeExecutor, Executor blockingExecutor) {
+        this.plan = plan;
+        this.executors = new NodeExecutors(computeExecutor, blockingExecutor);
+    }
+
+    /**
+     * Creates a new {@code GraphExecutor} for a compiled plan, which computes
+     * every node on the given executor.
+     *
+     * @param plan     the plan to execute
+     * @param executor the executor to compute nodes on
+     */
+    public GraphExecutor(ExecutionPlan plan, Executor executor) {
+        this(plan, executor, executor);
+    }
+
+    /**
+     * Creates a new {@code GraphExecutor} for a compiled plan, using the
+     * shared {@link FlowExecutors}.
+     *
+     * @param plan the plan to execute
+     */
+    public GraphExecutor(ExecutionPlan plan) {
+        this(plan, FlowExecutors.compute(), FlowExecutors.blocking());
+    }
 
     /**
      * Creates a new GraphExecutor.
@@ -40,15 +72,7 @@ public class GraphExecutor {
      * @param connections a set of all connections between nodes
      */
     public GraphExecutor(List<Node> nodes, Set<NodeConnection<?>> connections) {
-        this.connections = List.copyOf(connections);
-        this.nodeDependencies = nodes.stream().collect(Collectors.toMap(
-            Function.identity(),
-            n -> n.inputs().values().stream().flatMap(
-                    connector -> this.connections.stream().filter(connection -> connection.to().equals(connector)))
-                .toList()));
-        this.nonEndNodes = nodes.stream().filter(n -> n.type() instanceof NodeType.WithOutputs).toList();
-        this.endNodes = nodes.stream().filter(n -> n.type().category() == NodeCategory.END).toList();
-        this.startNodes = nodes.stream().filter(n -> n.type().category() == NodeCategory.START).toList();
+        this(new ExecutionPlan(nodes, connections));
     }
 
     /**
@@ -58,11 +82,31 @@ public class GraphExecutor {
      * @throws IllegalArgumentException If the graph is {@link Graph#validate() invalid}.
      */
     public GraphExecutor(Graph graph) {
-        this(graph.getExecutionOrder().maybeL().orElseThrow(() -> new IllegalArgumentException("Graph is invalid")), graph.getConnections());
+        this(ExecutionPlan.compile(graph));
+    }
+
+    /**
+     * Adds a listener which is told about every node computed by any
+     * {@code GraphExecutor}, for example to aggregate metrics.
+     *
+     * @param listener the listener
+     */
+    public static void addGlobalListener(ExecutionListener listener) {
+        GLOBAL_LISTENERS.add(listener);
+    }
+
+    /**
+     * Removes a listener added with {@link #addGlobalListener(ExecutionListener)}.
+     *
+     * @param listener the listener
+     */
+    public static void removeGlobalListener(ExecutionListener listener) {
+        GLOBAL_LISTENERS.remove(listener);
     }
 
     /**
      * Creates a function which, when run, executes this flow graph asynchronously, from a certain input node using a given input.
+     * Only the nodes which feed an end node reachable from the trigger are computed; see {@link ExecutionPlan#getLiveSteps(UUID)}.
      *
      * @param <T>           the type of the input
      * @param userId        The ID of the user that owns the flow
@@ -70,44 +114,116 @@ public class GraphExecutor {
      * @return an execution function
      */
     public <T> Function<@Nullable T, CompletableFuture<Void>> execute(UUID userId, @Nullable UUID triggerNodeId) {
-        final Node triggerNode;
-        if (triggerNodeId != null) {
-            triggerNode = this.startNodes.stream()
-                .filter(n -> n.id().equals(triggerNodeId))
-                .findAny()
-                .orElse(null);
-        } else {
-            triggerNode = null;
-        }
+        return this.execute(userId, triggerNodeId, null);
+    }
+
+    /**
+     * Creates a function which, when run, executes this flow graph asynchronously, from a certain input node using a given input,
+     * reporting the timing of each node to a listener as well as to the {@link #addGlobalListener(ExecutionListener) global listeners}.
+     *
+     * @param <T>           the type of the input
+     * @param userId        The ID of the user that owns the flow
+     * @param triggerNodeId the UUID of the start node that should take in the input
+     * @param listener      the listener to report node traces to, or null
+     * @return an execution function
+     */
+    public <T> Function<@Nullable T, CompletableFuture<Void>> execute(UUID userId, @Nullable UUID triggerNodeId, @Nullable ExecutionListener listener) {
+        var triggerStep = this.plan.getStartStep(triggerNodeId).orElse(null);
+        var steps = this.plan.getLiveSteps(triggerNodeId);
+        int stepCount = this.plan.steps().size();
 
         return input -> {
-            CompletableFuture<Map<NodeConnection<?>, DataBox<?>>> resultsFuture = CompletableFuture.completedFuture(new HashMap<>());
-            for (var node : this.nonEndNodes) {
-                CompletableFuture<Map<NodeConnection<?>, DataBox<?>>> resultFuture;
-                if (node == triggerNode) {
+            var tracer = listenerFor(listener);
+            var values = this.plan.createValues();
+            @SuppressWarnings("unchecked")
+            CompletableFuture<Void>[] stepFutures = new CompletableFuture[stepCount];
+            var readyTimes = tracer == null ? null : new long[stepCount];
+            List<CompletableFuture<Void>> endFutures = new ArrayList<>();
+            for (var step : steps) {
+                var node = step.node();
+                CompletableFuture<Void> stepFuture;
+                if (step == triggerStep) {
                     @SuppressWarnings("unchecked")
-                    var outputs = (((NodeType.Start<T>) node.type()).compute(userId, input, node.settings()));
-                    resultFuture = this.associateResultsWithConnections(node, allOf(outputs));
+                    var start = (NodeType.Start<T>) node.type();
+                    stepFuture = computeOutputs(step, tracer, System.nanoTime(), values, () -> start.compute(userId, input, node.settings()));
                 } else {
-                    var inputs = this.collectInputsForNode(node, resultsFuture);
-                    resultFuture = this.getNodeResults(userId, node, inputs);
+                    var inputsFuture = collectInputs(step, stepFutures, values, readyTimes);
+                    var executor = this.executors.forMode(node.type().executionMode());
+                    if (node.type() instanceof NodeType.Process process) {
+                        stepFuture = inputsFuture.thenComposeAsync(inputs -> computeOutputs(step, tracer, readyTime(readyTimes, step), values, () ->
+                            process.compute(userId, inputs, node.settings(), node.inputTypes(), this.executors)), executor);
+                    } else if (node.type() instanceof NodeType.WithOutputs withOutputs) {
+                        stepFuture = inputsFuture.thenComposeAsync(inputs -> computeOutputs(step, tracer, readyTime(readyTimes, step), values, () ->
+                            withOutputs.compute(userId, inputs, node.settings(), node.inputTypes())), executor);
+                    } else {
+                        var end = (NodeType.End) node.type();
+                        stepFuture = inputsFuture.thenComposeAsync(inputs -> computeEnd(step, tracer, readyTime(readyTimes, step), () ->
+                            end.compute(userId, inputs, node.settings())), executor);
+                        endFutures.add(stepFuture);
+                    }
                 }
-                resultsFuture = resultsFuture.thenCompose(results -> resultFuture.thenApply(result -> {
-                    results.putAll(result);
-                    return results;
-                }));
+                stepFutures[step.index()] = stepFuture;
             }
-            final var finalResultsFuture = resultsFuture;
-            var computedEndNodeFutures = this.endNodes.stream().map(node -> {
-                var inputsFuture = this.collectInputsForNode(node, finalResultsFuture);
-                return inputsFuture.thenCompose(inputs ->
-                    ((NodeType.End) node.type()).compute(userId, inputs, node.settings())
-                );
-            }).toArray(CompletableFuture[]::new);
-            return CompletableFuture.allOf(computedEndNodeFutures);
+            return CompletableFuture.allOf(endFutures.toArray(CompletableFuture[]::new));
         };
     }
 
+    /**
+     * Executes this flow graph once for each of a list of inputs, sharing the
+     * compiled plan between runs. At most {@code parallelism} runs are in
+     * flight at once; the rest start as earlier ones finish, in list order.
+     *
+     * @param <T>           the type of the inputs
+     * @param userId        the ID of the user that owns the flow
+     * @param triggerNodeId the UUID of the start node that should take in each input
+     * @param inputs        the inputs, one per run
+     * @param parallelism   the maximum number of runs to execute at once
+     * @return a future for each run, in the same order as the inputs
+     * @throws IllegalArgumentException if {@code parallelism} is less than 1
+     */
+    public <T> List<CompletableFuture<Void>> executeBatch(UUID userId, @Nullable UUID triggerNodeId, List<? extends @Nullable T> inputs, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1");
+        }
+        Function<@Nullable T, CompletableFuture<Void>> function = this.execute(userId, triggerNodeId);
+        List<CompletableFuture<Void>> results = new ArrayList<>(inputs.size());
+        for (int i = 0; i < inputs.size(); i++) {
+            results.add(new CompletableFuture<>());
+        }
+        var nextIndex = new AtomicInteger();
+        for (int i = 0; i < Math.min(parallelism, inputs.size()); i++) {
+            this.runNextInBatch(function, inputs, results, nextIndex);
+        }
+        return results;
+    }
+
+    private <T> void runNextInBatch(
+        Function<@Nullable T, CompletableFuture<Void>> function,
+        List<? extends @Nullable T> inputs,
+        List<CompletableFuture<Void>> results,
+        AtomicInteger nextIndex
+    ) {
+        int index = nextIndex.getAndIncrement();
+        if (index >= inputs.size()) {
+            return;
+        }
+        CompletableFuture<Void> run;
+        try {
+            run = function.apply(inputs.get(index));
+        } catch (Exception e) {
+            run = CompletableFuture.failedFuture(e);
+        }
+        // async, so that runs which complete immediately don't recurse
+        run.whenCompleteAsync(($, error) -> {
+            if (error == null) {
+                results.get(index).complete(null);
+            } else {
+                results.get(index).completeExceptionally(error);
+            }
+            this.runNextInBatch(function, inputs, results, nextIndex);
+        }, this.executors.compute());
+    }
+
     /**
      * Convenience overload of {@link #execute(UUID, UUID)} which returns a Supplier instead, and triggers no start node.
      *
@@ -120,96 +236,155 @@ public class GraphExecutor {
     }
 
     /**
-     * Returns a future of the dependencies of a node in
-     * a map associated by their input connector name.
+     * Combines a per-execution listener with the global listeners.
      *
-     * @param node             the node
-     * @param allResultsFuture a future of the map of node connection
-     *                         results, for retrieving input values from
-     * @return a future of the input values, associated by connector name
+     * @param listener the per-execution listener, or null
+     * @return the combined listener, or null if there are no listeners at all
      */
-    private CompletableFuture<Map<String, DataBox<?>>> collectInputsForNode(
-        Node node,
-        CompletableFuture<Map<NodeConnection<?>, DataBox<?>>> allResultsFuture
-    ) {
-        return allResultsFuture.thenApply(allResults -> {
-            Map<String, DataBox<?>> inputs = new HashMap<>();
-            for (var dep : this.nodeDependencies.get(node)) {
-                var resForDep = allResults.get(dep);
-                var depInputName = dep.to().name();
-                inputs.put(depInputName, Conversions.convert(resForDep, dep.to().type()));
+    private static @Nullable ExecutionListener listenerFor(@Nullable ExecutionListener listener) {
+        if (GLOBAL_LISTENERS.isEmpty()) {
+            return listener;
+        }
+        return trace -> {
+            if (listener != null) {
+                listener.onNodeFinished(trace);
             }
-            return inputs;
-        });
+            for (var global : GLOBAL_LISTENERS) {
+                global.onNodeFinished(trace);
+            }
+        };
+    }
+
+    private static long readyTime(long @Nullable [] readyTimes, ExecutionPlan.Step step) {
+        return readyTimes == null ? 0 : readyTimes[step.index()];
     }
 
     /**
-     * Creates future of a map of each of a node's
-     * output connections to their output data.
+     * Computes a node with outputs, then {@link #storeOutputs stores} them,
+     * reporting the node's trace to a listener if there is one.
      *
-     * @param flowId       the UUID of the flow that is being executed
-     * @param node         the node
-     * @param inputsFuture a future of a map of inputs to the node
-     * @return a map from each output connection to that connection's output
+     * @param step       the step being computed
+     * @param listener   the listener, or null if the step isn't being traced
+     * @param readyNanos the time the step's inputs became ready at
+     * @param values     the value slots of this execution
+     * @param compute    computes the node's outputs
+     * @return a future that completes once every output has been computed
      */
-    private CompletableFuture<Map<NodeConnection<?>, DataBox<?>>> getNodeResults(
-        UUID flowId,
-        Node node,
-        CompletableFuture<Map<String, DataBox<?>>> inputsFuture
+    private static CompletableFuture<Void> computeOutputs(
+        ExecutionPlan.Step step,
+        @Nullable ExecutionListener listener,
+        long readyNanos,
+        DataBox<?>[] values,
+        Supplier<Map<String, CompletableFuture<DataBox<?>>>> compute
     ) {
-        var resultsByConnectorNameFuture = inputsFuture.thenApply(inputs -> {
-            Map<String, CompletableFuture<DataBox<?>>> resultsByConnectorName;
-            if (node.type() instanceof NodeType.WithOutputs outputs) {
-                resultsByConnectorName = outputs.compute(flowId, inputs, node.settings(), node.inputTypes());
-            } else {
-                resultsByConnectorName = Map.of();
-            }
-            return resultsByConnectorName;
-        }).thenCompose(GraphExecutor::allOf);
-        return this.associateResultsWithConnections(node, resultsByConnectorNameFuture);
+        if (listener == null) {
+            return storeOutputs(step, compute.get(), values);
+        }
+        var startedAt = Instant.now();
+        long startNanos = System.nanoTime();
+        Map<String, CompletableFuture<DataBox<?>>> outputs;
+        try {
+            outputs = compute.get();
+        } catch (RuntimeException e) {
+            listener.onNodeFinished(NodeTrace.create(step.node(), startedAt, readyNanos, startNanos, System.nanoTime(), Map.of(), e));
+            throw e;
+        }
+        return storeOutputs(step, outputs, values).whenComplete(($, error) ->
+            listener.onNodeFinished(NodeTrace.create(step.node(), startedAt, readyNanos, startNanos, System.nanoTime(), outputs, error)));
     }
 
     /**
-     * Creates future of a map of connections to results
-     * from a map of connector names to results.
+     * Computes an end node, reporting the node's trace to a listener if there
+     * is one.
      *
-     * @param node                         the node
-     * @param resultsByConnectorNameFuture a future of the outputs of the node by connector name
-     * @return the outputs of the node by connection
+     * @param step       the step being computed
+     * @param listener   the listener, or null if the step isn't being traced
+     * @param readyNanos the time the step's inputs became ready at
+     * @param compute    computes the node
+     * @return a future that completes once the node has been computed
      */
-    private CompletableFuture<Map<NodeConnection<?>, DataBox<?>>> associateResultsWithConnections(
-        Node node,
-        CompletableFuture<Map<String, DataBox<?>>> resultsByConnectorNameFuture
+    private static CompletableFuture<Void> computeEnd(
+        ExecutionPlan.Step step,
+        @Nullable ExecutionListener listener,
+        long readyNanos,
+        Supplier<CompletableFuture<Void>> compute
     ) {
-        return resultsByConnectorNameFuture.thenApply(resultsByConnectorName -> {
-            Map<NodeConnection<?>, DataBox<?>> resultsByConnection = new HashMap<>();
-            for (var entry : resultsByConnectorName.entrySet()) {
-                for (var conn : this.getOutputConnectionsByName(node, entry.getKey())) {
-                    resultsByConnection.put(conn, entry.getValue());
-                }
-            }
-            return resultsByConnection;
-        });
+        if (listener == null) {
+            return compute.get();
+        }
+        var startedAt = Instant.now();
+        long startNanos = System.nanoTime();
+        CompletableFuture<Void> result;
+        try {
+            result = compute.get();
+        } catch (RuntimeException e) {
+            listener.onNodeFinished(NodeTrace.create(step.node(), startedAt, readyNanos, startNanos, System.nanoTime(), Map.of(), e));
+            throw e;
+        }
+        return result.whenComplete(($, error) ->
+            listener.onNodeFinished(NodeTrace.create(step.node(), startedAt, readyNanos, startNanos, System.nanoTime(), Map.of(), error)));
     }
 
     /**
-     * Creates an iterable of all connections associated with an output connector on
-     * a node.
+     * Returns a future of the inputs of a step, as a view
+     * associated by their input connector name.
+     * The future completes as soon as the steps this step
+     * depends on have been computed, regardless of any
+     * other nodes in the graph.
      *
-     * @param node the node
-     * @param name the name of the output connector on the node
-     * @return an iterable of all connections from that output connector
+     * @param step        the step
+     * @param stepFutures the completion futures of every step started so far
+     * @param values      the value slots of this execution
+     * @param readyTimes  where to record the time each step's inputs became ready, or null
+     * @return a future of the input values, associated by connector name
      */
-    private Iterable<NodeConnection<?>> getOutputConnectionsByName(Node node, String name) {
-        return node.getOutputWithName(name).stream()
-            .flatMap(c -> this.connections.stream().filter(a -> c.isCompatible(a.from())))
-            .toList();
+    private static CompletableFuture<Map<String, DataBox<?>>> collectInputs(
+        ExecutionPlan.Step step,
+        CompletableFuture<Void>[] stepFutures,
+        DataBox<?>[] values,
+        long @Nullable [] readyTimes
+    ) {
+        var dependencies = step.dependencies();
+        var dependencyFutures = new CompletableFuture<?>[dependencies.length];
+        for (int i = 0; i < dependencies.length; i++) {
+            dependencyFutures[i] = stepFutures[dependencies[i]];
+        }
+        return CompletableFuture.allOf(dependencyFutures).thenApply($ -> {
+            if (readyTimes != null) {
+                readyTimes[step.index()] = System.nanoTime();
+            }
+            var bindings = step.inputs();
+            if (bindings.isEmpty()) {
+                return Map.of();
+            }
+            var inputs = new DataBox<?>[bindings.size()];
+            for (int i = 0; i < inputs.length; i++) {
+                var binding = bindings.get(i);
+                inputs[i] = binding.convert(values[binding.slot()]);
+            }
+            return new InputView(step, inputs);
+        });
     }
 
-    private static <K, V> CompletableFuture<Map<K, V>> allOf(Map<K, CompletableFuture<V>> futuresMap) {
-        var allFuturesResult = CompletableFuture.allOf(futuresMap.values().toArray(CompletableFuture[]::new));
-        return allFuturesResult.thenApply($ -> futuresMap.entrySet().stream()
-            .collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue().join()))
-        );
+    /**
+     * Waits for all of a node's outputs, storing the ones
+     * that are consumed by other nodes in their slots.
+     *
+     * @param step    the step that produced the outputs
+     * @param outputs the futures of the node's outputs by connector name
+     * @param values  the value slots of this execution
+     * @return a future that completes once every output has been computed
+     */
+    private static CompletableFuture<Void> storeOutputs(
+        ExecutionPlan.Step step,
+        Map<String, CompletableFuture<DataBox<?>>> outputs,
+        DataBox<?>[] values
+    ) {
+        return CompletableFuture.allOf(outputs.values().toArray(CompletableFuture[]::new)).thenRun(() -> {
+            for (var binding : step.outputs()) {
+                var output = outputs.get(binding.name());
+                values[binding.slot()] = output == null ? null : output.join();
+            }
+        });
     }
 }
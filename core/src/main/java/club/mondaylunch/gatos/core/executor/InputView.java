@@ -0,0 +1,67 @@
+package club.mondaylunch.gatos.core.executor;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import club.mondaylunch.gatos.core.data.DataBox;
+
+/**
+ * A read-only map of a node's inputs by connector name, backed by an array
+ * of values indexed like {@link ExecutionPlan.Step#inputs()}. Lookups go
+ * through the step's precomputed name index, so no map is built per node.
+ */
+final class InputView extends AbstractMap<String, DataBox<?>> {
+    private final ExecutionPlan.Step step;
+    private final DataBox<?>[] values;
+
+    InputView(ExecutionPlan.Step step, DataBox<?>[] values) {
+        this.step = step;
+        this.values = values;
+    }
+
+    @Override
+    public DataBox<?> get(Object key) {
+        var index = this.step.inputIndices().get(key);
+        return index == null ? null : this.values[index];
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return this.step.inputIndices().containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return this.step.inputIndices().size();
+    }
+
+    @Override
+    public Set<Entry<String, DataBox<?>>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, DataBox<?>>> iterator() {
+                var indices = InputView.this.step.inputIndices().entrySet().iterator();
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return indices.hasNext();
+                    }
+
+                    @Override
+                    public Entry<String, DataBox<?>> next() {
+                        var entry = indices.next();
+                        return Map.entry(entry.getKey(), InputView.this.values[entry.getValue()]);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return InputView.this.size();
+            }
+        };
+    }
+}
@@ -0,0 +1,34 @@
+package club.mondaylunch.gatos.core.executor;
+
+import java.util.concurrent.Executor;
+
+import club.mondaylunch.gatos.core.graph.type.ExecutionMode;
+
+/**
+ * The executors a flow's nodes are computed on, one per
+ * {@link ExecutionMode}. Node types which run work of their own get these
+ * from the {@link GraphExecutor} computing them.
+ *
+ * @param compute  the executor for {@link ExecutionMode#COMPUTE} work
+ * @param blocking the executor for {@link ExecutionMode#BLOCKING} work
+ */
+public record NodeExecutors(Executor compute, Executor blocking) {
+    /**
+     * Gets the shared {@link FlowExecutors}.
+     *
+     * @return the shared executors
+     */
+    public static NodeExecutors shared() {
+        return new NodeExecutors(FlowExecutors.compute(), FlowExecutors.blocking());
+    }
+
+    /**
+     * Gets the executor for work with the given execution mode.
+     *
+     * @param mode the execution mode
+     * @return the executor
+     */
+    public Executor forMode(ExecutionMode mode) {
+        return mode == ExecutionMode.BLOCKING ? this.blocking : this.compute;
+    }
+}
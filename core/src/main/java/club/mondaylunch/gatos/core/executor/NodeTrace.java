@@ -0,0 +1,133 @@
+package club.mondaylunch.gatos.core.executor;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.jetbrains.annotations.Nullable;
+
+import club.mondaylunch.gatos.core.data.DataBox;
+import club.mondaylunch.gatos.core.graph.Node;
+import club.mondaylunch.gatos.core.graph.type.NodeType;
+
+/**
+ * Timing information for the computation of a single node during a flow
+ * execution.
+ *
+ * @param nodeId      the ID of the node
+ * @param type        the name of the node's type
+ * @param startedAt   when the node started computing
+ * @param finishedAt  when all of the node's outputs had been computed
+ * @param queueDelay  how long the node waited for an executor thread after
+ *                    its inputs were ready
+ * @param computeTime how long the node took to compute all of its outputs
+ * @param outputSizes the {@link #sizeOf(DataBox) size} of each successfully
+ *                    computed output, by connector name
+ * @param failure     the cause of the node's failure, or null if it succeeded
+ */
+public record NodeTrace(
+    UUID nodeId,
+    String type,
+    Instant startedAt,
+    Instant finishedAt,
+    Duration queueDelay,
+    Duration computeTime,
+    Map<String, Integer> outputSizes,
+    @Nullable Throwable failure
+) {
+    /**
+     * Creates a trace from the monotonic times recorded while computing a node.
+     *
+     * @param node        the node
+     * @param startedAt   the wall-clock time the node started at
+     * @param readyNanos  the {@link System#nanoTime()} the node's inputs were ready at
+     * @param startNanos  the {@link System#nanoTime()} the node started at
+     * @param finishNanos the {@link System#nanoTime()} the node finished at
+     * @param outputs     the node's output futures
+     * @param failure     the cause of the node's failure, or null
+     * @return the trace
+     */
+    static NodeTrace create(
+        Node node,
+        Instant startedAt,
+        long readyNanos,
+        long startNanos,
+        long finishNanos,
+        Map<String, CompletableFuture<DataBox<?>>> outputs,
+        @Nullable Throwable failure
+    ) {
+        var computeTime = Duration.ofNanos(finishNanos - startNanos);
+        Map<String, Integer> outputSizes = new HashMap<>();
+        for (var entry : outputs.entrySet()) {
+            var output = entry.getValue();
+            if (output.isDone() && !output.isCompletedExceptionally()) {
+                outputSizes.put(entry.getKey(), sizeOf(output.join()));
+            }
+        }
+        return new NodeTrace(
+            node.id(),
+            NodeType.REGISTRY.getName(node.type()).orElse("unknown"),
+            startedAt,
+            startedAt.plus(computeTime),
+            Duration.ofNanos(Math.max(0, startNanos - readyNanos)),
+            computeTime,
+            Map.copyOf(outputSizes),
+            failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure);
+    }
+
+    /**
+     * Returns a cheap estimate of the size of a value: the length of strings,
+     * the number of elements of collections, maps and JSON containers, and 1
+     * for anything else.
+     *
+     * @param box the value
+     * @return the size of the value
+     */
+    public static int sizeOf(@Nullable DataBox<?> box) {
+        if (box == null || box.value() == null) {
+            return 0;
+        }
+        var value = box.value();
+        if (value instanceof CharSequence string) {
+            return string.length();
+        } else if (value instanceof Collection<?> collection) {
+            return collection.size();
+        } else if (value instanceof Map<?, ?> map) {
+            return map.size();
+        } else if (value instanceof JsonArray array) {
+            return array.size();
+        } else if (value instanceof JsonObject object) {
+            return object.size();
+        }
+        return 1;
+    }
+
+    /**
+     * Serializes this trace to JSON. Durations are given in microseconds.
+     *
+     * @return the JSON form of this trace
+     */
+    public JsonObject toJson() {
+        var json = new JsonObject();
+        json.addProperty("node_id", this.nodeId.toString());
+        json.addProperty("type", this.type);
+        json.addProperty("started_at", this.startedAt.toString());
+        json.addProperty("finished_at", this.finishedAt.toString());
+        json.addProperty("queue_delay_us", this.queueDelay.toNanos() / 1000);
+        json.addProperty("compute_time_us", this.computeTime.toNanos() / 1000);
+        var sizes = new JsonObject();
+        this.outputSizes.forEach(sizes::addProperty);
+        json.add("output_sizes", sizes);
+        if (this.failure != null) {
+            json.addProperty("error", String.valueOf(this.failure.getMessage()));
+        }
+        return json;
+    }
+}
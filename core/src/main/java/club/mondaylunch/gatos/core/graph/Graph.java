@@ -16,10 +16,13 @@ import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 
 import org.bson.BsonReader;
+import org.bson.BsonType;
 import org.bson.BsonWriter;
+import org.bson.RawBsonDocument;
 import org.bson.codecs.Codec;
 import org.bson.codecs.DecoderContext;
 import org.bson.codecs.EncoderContext;
+import org.bson.codecs.RawBsonDocumentCodec;
 import org.bson.codecs.configuration.CodecRegistry;
 import org.jetbrains.annotations.Nullable;
 
@@ -49,7 +52,7 @@ public class Graph {
     /**
      * The nodes of this graph.
      */
-    private final Map<UUID, Node> nodes = new HashMap<>();
+    private final LazyNodeMap nodes;
 
     /**
      * The edges of this graph.
@@ -59,6 +62,14 @@ public class Graph {
      * The edges of this graph, easily retrievable by their associated nodes' UUIDs.
      */
     private final Map<UUID, Set<NodeConnection<?>>> connectionsByNode = new HashMap<>();
+    /**
+     * For each node, the nodes its outputs are connected to, along with the number of connections to each.
+     */
+    private final Map<UUID, Map<UUID, Integer>> successorsByNode = new HashMap<>();
+    /**
+     * For each node, the number of distinct nodes connected to its inputs.
+     */
+    private final Map<UUID, Integer> inDegreeByNode = new HashMap<>();
     /**
      * The metadata of each node in the graph.
      */
@@ -67,6 +78,7 @@ public class Graph {
     private final GraphObserver observer = new GraphObserver();
 
     public Graph() {
+        this.nodes = new LazyNodeMap();
     }
 
     public Graph(Collection<Node> nodes, Map<UUID, NodeMetadata> metas, Collection<NodeConnection<?>> connections) {
@@ -80,6 +92,42 @@ public class Graph {
         this.observer.reset();
     }
 
+    /**
+     * Creates a graph from nodes, metadata and connections which were part of
+     * a graph before, such as a saved one, so the nodes' input types already
+     * match their connections and are not worked out again. Nodes are not
+     * decoded, and connections to missing nodes, or to an input which already
+     * has one, are left out.
+     *
+     * @param nodes       the nodes
+     * @param metas       the metadata of each node
+     * @param connections the connections
+     */
+    private Graph(LazyNodeMap nodes, Map<UUID, NodeMetadata> metas, Collection<NodeConnection<?>> connections) {
+        this.nodes = nodes;
+        this.metadataByNode.putAll(metas);
+        Set<NodeConnector.Input<?>> connectedInputs = new HashSet<>();
+        for (var connection : connections) {
+            if (this.nodes.containsKey(connection.from().nodeId())
+                && this.nodes.containsKey(connection.to().nodeId())
+                && connectedInputs.add(connection.to())
+            ) {
+                this.linkConnection(connection);
+            }
+        }
+    }
+
+    /**
+     * Creates a copy of this graph, with the same nodes, connections and
+     * metadata, and no recorded changes. Nodes which have not been decoded
+     * yet are not decoded.
+     *
+     * @return the copy
+     */
+    public Graph copy() {
+        return new Graph(this.nodes.copy(), this.metadataByNode, this.connections);
+    }
+
     /**
      * Returns an immutable set of all nodes in the graph.
      * @return the graph's nodes
@@ -201,15 +249,13 @@ public class Graph {
         if (nodeTo == null) {
             throw new IllegalArgumentException("Node connection cannot be to a nonexistent node.");
         }
-        if (this.connections.stream().anyMatch(conn -> conn.to().equals(connection.to()))) {
+        if (this.getOrCreateConnectionsForNode(nodeTo.id()).stream().anyMatch(conn -> conn.to().equals(connection.to()))) {
             throw new IllegalArgumentException(
                 "Node connection cannot be to a connector which is already part of a connection.");
         }
 
-        this.connections.add(connection);
-        this.getOrCreateConnectionsForNode(nodeFrom.id()).add(connection);
+        this.linkConnection(connection);
         var destinationNodeConnections = this.getOrCreateConnectionsForNode(nodeTo.id());
-        destinationNodeConnections.add(connection);
         this.observer.connectionAdded(connection);
 
         this.modifyNode(nodeTo.id(), n -> n.updateInputTypes(destinationNodeConnections.stream()
@@ -249,23 +295,68 @@ public class Graph {
 
         for (var conn : connections) {
             if (!newConns.contains(conn)) {
-                this.connections.remove(conn);
-                this.getOrCreateConnectionsForNode(conn.from().nodeId()).remove(conn);
-                this.getOrCreateConnectionsForNode(conn.to().nodeId()).remove(conn);
+                this.unlinkConnection(conn);
                 this.observer.connectionRemoved(conn);
             }
         }
 
         for (var conn : newConns) {
-            if (!this.connections.contains(conn)) {
-                this.connections.add(conn);
-                this.getOrCreateConnectionsForNode(conn.from().nodeId()).add(conn);
-                this.getOrCreateConnectionsForNode(conn.to().nodeId()).add(conn);
+            if (this.linkConnection(conn)) {
                 this.observer.connectionAdded(conn);
             }
         }
     }
 
+    /**
+     * Adds a connection to {@link #connections} and every index of it.
+     *
+     * @param connection the connection to add
+     * @return whether the connection was not already present
+     */
+    private boolean linkConnection(NodeConnection<?> connection) {
+        if (!this.connections.add(connection)) {
+            return false;
+        }
+
+        var from = connection.from().nodeId();
+        var to = connection.to().nodeId();
+        this.getOrCreateConnectionsForNode(from).add(connection);
+        this.getOrCreateConnectionsForNode(to).add(connection);
+        int count = this.successorsByNode.computeIfAbsent(from, $ -> new HashMap<>()).merge(to, 1, Integer::sum);
+        if (count == 1) {
+            this.inDegreeByNode.merge(to, 1, Integer::sum);
+        }
+        return true;
+    }
+
+    /**
+     * Removes a connection from {@link #connections} and every index of it.
+     *
+     * @param connection the connection to remove
+     * @return whether the connection was present
+     */
+    private boolean unlinkConnection(NodeConnection<?> connection) {
+        if (!this.connections.remove(connection)) {
+            return false;
+        }
+
+        var from = connection.from().nodeId();
+        var to = connection.to().nodeId();
+        this.getOrCreateConnectionsForNode(from).remove(connection);
+        this.getOrCreateConnectionsForNode(to).remove(connection);
+        var successors = this.successorsByNode.get(from);
+        if (successors.merge(to, -1, Integer::sum) == 0) {
+            successors.remove(to);
+            if (successors.isEmpty()) {
+                this.successorsByNode.remove(from);
+            }
+            if (this.inDegreeByNode.merge(to, -1, Integer::sum) == 0) {
+                this.inDegreeByNode.remove(to);
+            }
+        }
+        return true;
+    }
+
     /**
      * Removes a node connection, if it exists. Beware that a connection you added
      * may not still be in the graph, even if nothing else changed the graph: best
@@ -275,7 +366,7 @@ public class Graph {
      * @param connection the connection to remove
      */
     public void removeConnection(NodeConnection<?> connection) {
-        var removed = this.connections.remove(connection);
+        var removed = this.unlinkConnection(connection);
         this.getOrCreateConnectionsForNode(connection.from().nodeId()).remove(connection);
         var destinationNodeConnections = this.getOrCreateConnectionsForNode(connection.to().nodeId());
         destinationNodeConnections.remove(connection);
@@ -430,40 +521,40 @@ public class Graph {
     /**
      * Performs a topological sort on this graph. Ignores nodes with no connections.
      * If the graph is not
-     * {@link #validate() valid}, this will return an empty Optional.
+     * {@link #validate() valid}, this will return the errors instead.
+     * <p>
+     * This is Kahn's algorithm over the in-degree and successor indexes that the
+     * graph keeps up to date as connections change, so it runs in time linear in
+     * the number of nodes and connections.
+     * </p>
      *
      * @return a topological sort of this graph, or a list of errors
      */
     public Either<List<Node>, List<GraphValidityError>> getExecutionOrder() {
-        Set<UUID> relevantNodes = new HashSet<>(this.nodes.keySet());
-        relevantNodes.removeIf(n -> this.getConnectionsForNode(n).isEmpty());
-        Set<NodeConnection<?>> deduplicatedConnections = new HashSet<>();
-        for (var conn : this.connections) {
-            if (deduplicatedConnections.stream().noneMatch(conn2 -> conn2.to().nodeId().equals(conn.to().nodeId()) && conn2.from().nodeId().equals(conn.from().nodeId()))) {
-                deduplicatedConnections.add(conn);
+        Map<UUID, Integer> inDegrees = new HashMap<>();
+        Deque<UUID> nodesWithoutIncoming = new ArrayDeque<>();
+        for (var entry : this.connectionsByNode.entrySet()) {
+            var nodeId = entry.getKey();
+            if (entry.getValue().isEmpty() || !this.nodes.containsKey(nodeId)) {
+                continue;
+            }
+            int inDegree = this.inDegreeByNode.getOrDefault(nodeId, 0);
+            if (inDegree == 0) {
+                nodesWithoutIncoming.add(nodeId);
+            } else {
+                inDegrees.put(nodeId, inDegree);
             }
         }
 
         boolean hasSeenInput = false;
         boolean hasSeenOutput = false;
 
-        Set<NodeConnection<?>> visitedConnections = new HashSet<>();
-
-        Deque<UUID> nodesWithoutIncoming = new ArrayDeque<>();
-        for (var uuid : relevantNodes) {
-            if (this.getConnectionsForNode(uuid).stream().noneMatch(c -> c.to().nodeId().equals(uuid))) {
-                nodesWithoutIncoming.add(uuid);
-            }
-        }
-
         List<Node> res = new ArrayList<>();
 
         while (!nodesWithoutIncoming.isEmpty()) {
             UUID nodeId = nodesWithoutIncoming.pop();
             var node = this.nodes.get(nodeId);
-            if (!res.contains(node)) {
-                res.add(node);
-            }
+            res.add(node);
 
             if (!hasSeenInput && node.type().category() == NodeCategory.START) {
                 hasSeenInput = true;
@@ -473,20 +564,10 @@ public class Graph {
                 hasSeenOutput = true;
             }
 
-            for (NodeConnection<?> conn : this.getConnectionsForNode(nodeId)) {
-                if (!visitedConnections.contains(conn)
-                    && deduplicatedConnections.contains(conn)
-                    && conn.from().nodeId().equals(nodeId)
-                ) {
-                    visitedConnections.add(conn);
-                    UUID to = conn.to().nodeId();
-                    if (!res.contains(this.getNode(to).orElseThrow())
-                        && this.getConnectionsForNode(to).stream()
-                        .filter(deduplicatedConnections::contains)
-                        .filter(c -> c.to().nodeId().equals(to))
-                        .allMatch(visitedConnections::contains)) {
-                        nodesWithoutIncoming.add(to);
-                    }
+            for (UUID to : this.successorsByNode.getOrDefault(nodeId, Map.of()).keySet()) {
+                if (inDegrees.merge(to, -1, Integer::sum) == 0) {
+                    inDegrees.remove(to);
+                    nodesWithoutIncoming.add(to);
                 }
             }
         }
@@ -501,8 +582,11 @@ public class Graph {
             errors.add(GraphValidityError.noEnd());
         }
 
-        if (!visitedConnections.containsAll(deduplicatedConnections)) {
-            errors.add(GraphValidityError.cycle());
+        // anything left unsorted is on a cycle or downstream of one
+        if (!inDegrees.isEmpty()) {
+            for (var nodeId : this.findNodesOnCycles(inDegrees.keySet())) {
+                errors.add(GraphValidityError.cycle(nodeId));
+            }
         }
 
         if (!errors.isEmpty()) {
@@ -512,6 +596,47 @@ public class Graph {
         return Either.left(res);
     }
 
+    /**
+     * Narrows down the nodes left over by a topological sort to those on a cycle,
+     * by repeatedly discarding nodes with no outgoing connections to the others.
+     * Nodes which are only downstream of a cycle are discarded this way.
+     *
+     * @param unsortedNodes the nodes the topological sort could not order
+     * @return the nodes which lie on, or between, cycles
+     */
+    private Set<UUID> findNodesOnCycles(Set<UUID> unsortedNodes) {
+        Map<UUID, Integer> outDegrees = new HashMap<>();
+        Map<UUID, List<UUID>> predecessors = new HashMap<>();
+        for (var nodeId : unsortedNodes) {
+            int outDegree = 0;
+            for (UUID to : this.successorsByNode.getOrDefault(nodeId, Map.of()).keySet()) {
+                if (unsortedNodes.contains(to)) {
+                    outDegree++;
+                    predecessors.computeIfAbsent(to, $ -> new ArrayList<>()).add(nodeId);
+                }
+            }
+            outDegrees.put(nodeId, outDegree);
+        }
+
+        Deque<UUID> nodesWithoutOutgoing = new ArrayDeque<>();
+        outDegrees.forEach((nodeId, outDegree) -> {
+            if (outDegree == 0) {
+                nodesWithoutOutgoing.add(nodeId);
+            }
+        });
+        while (!nodesWithoutOutgoing.isEmpty()) {
+            UUID nodeId = nodesWithoutOutgoing.pop();
+            outDegrees.remove(nodeId);
+            for (UUID from : predecessors.getOrDefault(nodeId, List.of())) {
+                if (outDegrees.merge(from, -1, Integer::sum) == 0) {
+                    nodesWithoutOutgoing.add(from);
+                }
+            }
+        }
+
+        return outDegrees.keySet();
+    }
+
     /**
      * Determines whether either of a node connection's connectors is present on the
      * given node.
@@ -600,29 +725,39 @@ public class Graph {
         public Graph decode(BsonReader reader, DecoderContext decoderContext) {
             return SerializationUtils.readDocument(reader, () -> {
                 reader.readName("nodes");
-                Set<Node> nodes = SerializationUtils.readSet(reader, decoderContext, Node.class, this.registry);
+                Map<UUID, RawBsonDocument> nodes = this.readNodes(reader, decoderContext);
                 reader.readName("connections");
                 Set<NodeConnection<?>> connections = SerializationUtils.readSet(reader, decoderContext, NodeConnection.class, this.registry);
                 reader.readName("metadata");
                 Map<UUID, NodeMetadata> metadata = SerializationUtils.readMap(reader, decoderContext, NodeMetadata.class, UUID::fromString, this.registry);
 
-                // adding connections in certain ways makes the graph sad, lets filter out connections that would do that
-                var nodeIds = nodes.stream().map(Node::id).collect(Collectors.toSet());
-                // list for faster iteration b/c we're gonna be doing a lot of streams
-                List<NodeConnection<?>> filteredConnections = new ArrayList<>();
-                for (var conn : connections) {
-                    if (nodeIds.contains(conn.from().nodeId())
-                        && nodeIds.contains(conn.to().nodeId())
-                        && filteredConnections.stream().noneMatch(c -> c.to().equals(conn.to()))
-                    ) {
-                        filteredConnections.add(conn);
-                    }
-                }
-
-                return new Graph(nodes, metadata, filteredConnections);
+                // adding connections in certain ways makes the graph sad, the graph leaves out connections that would do that
+                return new Graph(new LazyNodeMap(nodes, this.registry.get(Node.class)), metadata, connections);
             });
         }
 
+        /**
+         * Reads nodes as raw BSON, by ID, so that they are only decoded when used.
+         * @param reader         the BSON reader
+         * @param decoderContext the decoder context
+         * @return the raw nodes, by ID
+         */
+        private Map<UUID, RawBsonDocument> readNodes(BsonReader reader, DecoderContext decoderContext) {
+            var rawCodec = new RawBsonDocumentCodec();
+            Map<UUID, RawBsonDocument> nodes = new HashMap<>();
+            reader.readStartArray();
+            while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                var node = decoderContext.decodeWithChildContext(rawCodec, reader);
+                // the ID is always written first
+                var nodeReader = node.asBsonReader();
+                nodeReader.readStartDocument();
+                nodeReader.readName("id");
+                nodes.put(decoderContext.decodeWithChildContext(this.registry.get(UUID.class), nodeReader), node);
+            }
+            reader.readEndArray();
+            return nodes;
+        }
+
         @Override
         public void encode(BsonWriter writer, Graph value, EncoderContext encoderContext) {
             SerializationUtils.writeDocument(writer, () -> {
@@ -1,7 +1,6 @@
 package club.mondaylunch.gatos.core.graph;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -9,17 +8,16 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
-import com.mongodb.BasicDBObject;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.model.Filters;
-import com.mongodb.client.model.UpdateOneModel;
-import com.mongodb.client.model.Updates;
-import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
 import org.bson.codecs.pojo.annotations.BsonProperty;
 import org.bson.conversions.Bson;
 
+import club.mondaylunch.gatos.core.Database;
 import club.mondaylunch.gatos.core.graph.connector.NodeConnection;
 import club.mondaylunch.gatos.core.models.Flow;
 
@@ -185,39 +183,68 @@ public class GraphObserver {
     }
 
     /**
-     * Creates {@link Bson} updates for the graph
-     * from the changes seen by this observer
-     * since the last time the observer was
-     * {@link #reset() reset}, and applies it to
-     * the collection.
+     * Applies the changes seen by this observer
+     * since the last time it was
+     * {@link #reset() reset} to a flow in the
+     * collection, and increments the flow's
+     * revision.
      *
      * @param flowId     The ID of the flow to update.
      * @param collection The collection to update.
      */
     public void updateFlow(UUID flowId, MongoCollection<Flow> collection) {
-        this.validate();
-        List<Bson> bsonUpdates = new ArrayList<>();
-        List<WriteModel<Flow>> writeModelUpdates = new ArrayList<>();
-        var flowIdFilter = Filters.eq(flowId);
-
-        this.updateAddNode(bsonUpdates);
-        this.updateModifyNode(flowIdFilter, writeModelUpdates);
-        this.updateRemoveNode(bsonUpdates);
-
-        this.updateAddConnection(bsonUpdates);
-        this.updateModifyConnection(flowIdFilter, writeModelUpdates);
-        this.updateRemoveConnection(bsonUpdates);
-
-        this.updateAddMetadata(bsonUpdates);
-        this.updateModifyMetadata(bsonUpdates);
-        this.updateRemoveMetadata(bsonUpdates);
+        this.updateFlow(Filters.eq(flowId), collection);
+    }
 
-        for (var update : bsonUpdates) {
-            writeModelUpdates.add(new UpdateOneModel<>(flowIdFilter, update));
+    /**
+     * Applies the changes seen by this observer
+     * to the flow matching a filter, as for
+     * {@link #updateFlow(UUID, MongoCollection)}.
+     * <p>
+     * All the changes, and the revision
+     * increment, are made by a single update
+     * pipeline, so they are applied atomically:
+     * either the flow matches the filter and
+     * gets every change, or it gets none.
+     * Conditions such as ownership or the
+     * expected revision can be put in the
+     * filter, rather than checked with a
+     * separate query.
+     * </p>
+     *
+     * @param flowFilter The filter matching the flow to update.
+     * @param collection The collection to update.
+     * @return {@code false} if there were changes
+     * to write but no flow matched the filter,
+     * {@code true} otherwise.
+     */
+    public boolean updateFlow(Bson flowFilter, MongoCollection<Flow> collection) {
+        this.validate();
+        if (!this.hasChanges()) {
+            return true;
         }
-        if (!writeModelUpdates.isEmpty()) {
-            collection.bulkWrite(writeModelUpdates);
+        return collection.updateOne(flowFilter, this.createUpdatePipeline()).getMatchedCount() > 0;
+    }
+
+    /**
+     * Applies the changes seen by this observer
+     * to the flow matching a filter without
+     * blocking, through the reactive driver, as
+     * for {@link #updateFlow(Bson, MongoCollection)}.
+     *
+     * @param flowFilter The filter matching the flow to update.
+     * @param collection The reactive collection to update.
+     * @return A future of {@code false} if there
+     * were changes to write but no flow matched
+     * the filter, {@code true} otherwise.
+     */
+    public CompletableFuture<Boolean> updateFlowAsync(Bson flowFilter, com.mongodb.reactivestreams.client.MongoCollection<Flow> collection) {
+        this.validate();
+        if (!this.hasChanges()) {
+            return CompletableFuture.completedFuture(true);
         }
+        return Database.first(collection.updateOne(flowFilter, this.createUpdatePipeline()))
+            .thenApply(result -> result.getMatchedCount() > 0);
     }
 
     /**
@@ -289,89 +316,106 @@ public class GraphObserver {
 
     // Database updates
 
-    private void updateAddNode(Collection<Bson> updates) {
-        if (!this.addedNodes.isEmpty()) {
-            var addedNodes = Updates.pushEach("graph.nodes", new ArrayList<>(this.addedNodes.values()));
-            updates.add(addedNodes);
-        }
-    }
-
-    private void updateModifyNode(Bson flowIdFilter, Collection<WriteModel<Flow>> updates) {
-        for (var modified : this.modifiedNodes.values()) {
-            var filter = Filters.and(flowIdFilter, Filters.eq("graph.nodes.id", modified.id()));
-            var update = Updates.set("graph.nodes.$", modified);
-            updates.add(new UpdateOneModel<>(filter, update));
-        }
-    }
-
-    private void updateRemoveNode(Collection<Bson> updates) {
-        if (!this.removedNodes.isEmpty()) {
-            var filter = Filters.in("id", this.removedNodes.keySet());
-            var removedNodes = Updates.pullByFilter(new BasicDBObject("graph.nodes", filter));
-            updates.add(removedNodes);
-        }
-    }
-
-    private void updateAddConnection(Collection<Bson> updates) {
-        if (!this.addedConnections.isEmpty()) {
-            var addedNodes = Updates.pushEach("graph.connections", new ArrayList<>(this.addedConnections.values()));
-            updates.add(addedNodes);
-        }
+    /**
+     * Checks whether this observer has seen any changes
+     * to nodes or connections since it was last reset.
+     *
+     * @return {@code true} if there are changes other than to metadata.
+     */
+    public boolean hasNodeOrConnectionChanges() {
+        return !this.addedNodes.isEmpty()
+            || !this.modifiedNodes.isEmpty()
+            || !this.removedNodes.isEmpty()
+            || !this.addedConnections.isEmpty()
+            || !this.modifiedConnections.isEmpty()
+            || !this.removedConnections.isEmpty();
     }
 
-    private void updateModifyConnection(Bson flowIdFilter, Collection<WriteModel<Flow>> updates) {
-        for (var modified : this.modifiedConnections.values()) {
-            var filter = Filters.and(
-                flowIdFilter,
-                Filters.eq("graph.connections.output.node_id", modified.from().nodeId()),
-                Filters.eq("graph.connections.output.name", modified.from().name()),
-                Filters.eq("graph.connections.input.node_id", modified.to().nodeId()),
-                Filters.eq("graph.connections.input.name", modified.to().name())
-            );
-            var update = Updates.set("graph.connections.$", modified);
-            updates.add(new UpdateOneModel<>(filter, update));
-        }
+    /**
+     * Checks whether this observer has seen any
+     * changes since it was last reset.
+     *
+     * @return {@code true} if there are changes.
+     */
+    public boolean hasChanges() {
+        return this.hasNodeOrConnectionChanges()
+            || !this.addedMetadata.isEmpty()
+            || !this.modifiedMetadata.isEmpty()
+            || !this.removedMetadata.isEmpty();
     }
 
-    private void updateRemoveConnection(Collection<Bson> updates) {
-        var filters = this.removedConnections.values()
-            .stream()
-            .map(removed -> Filters.and(
-                Filters.eq("output.node_id", removed.from().nodeId()),
-                Filters.eq("output.name", removed.from().name()),
-                Filters.eq("input.node_id", removed.to().nodeId()),
-                Filters.eq("input.name", removed.to().name())
-            ))
-            .toList();
-        if (!filters.isEmpty()) {
-            var filter = Filters.or(filters);
-            var removedConnections = Updates.pullByFilter(new BasicDBObject("graph.connections", filter));
-            updates.add(removedConnections);
+    /**
+     * Creates an update pipeline which applies
+     * every change at once. Modified nodes and
+     * connections are removed from their array
+     * along with removed ones, and added back
+     * with the added ones, as the order of the
+     * arrays does not matter.
+     *
+     * @return The update pipeline.
+     */
+    private List<Bson> createUpdatePipeline() {
+        var set = new Document();
+        if (!this.addedNodes.isEmpty() || !this.modifiedNodes.isEmpty() || !this.removedNodes.isEmpty()) {
+            List<UUID> replacedIds = new ArrayList<>(this.modifiedNodes.keySet());
+            replacedIds.addAll(this.removedNodes.keySet());
+            List<Node> newNodes = new ArrayList<>(this.addedNodes.values());
+            newNodes.addAll(this.modifiedNodes.values());
+            var isReplaced = new Document("$in", List.of("$$this.id", literal(replacedIds)));
+            set.append("graph.nodes", replaceElements("$graph.nodes", isReplaced, newNodes));
         }
-    }
-
-    private void updateAddMetadata(Collection<Bson> updates) {
-        for (var entry : this.addedMetadata.entrySet()) {
-            setMetadata(entry.getKey(), entry.getValue(), updates);
+        if (!this.addedConnections.isEmpty() || !this.modifiedConnections.isEmpty() || !this.removedConnections.isEmpty()) {
+            List<List<Object>> replacedKeys = new ArrayList<>();
+            this.modifiedConnections.keySet().forEach(id -> replacedKeys.add(id.toKey()));
+            this.removedConnections.keySet().forEach(id -> replacedKeys.add(id.toKey()));
+            List<NodeConnection<?>> newConnections = new ArrayList<>(this.addedConnections.values());
+            newConnections.addAll(this.modifiedConnections.values());
+            var key = List.of("$$this.output.node_id", "$$this.output.name", "$$this.input.node_id", "$$this.input.name");
+            var isReplaced = new Document("$in", List.of(key, literal(replacedKeys)));
+            set.append("graph.connections", replaceElements("$graph.connections", isReplaced, newConnections));
         }
-    }
-
-    private void updateModifyMetadata(Collection<Bson> updates) {
-        for (var entry : this.modifiedMetadata.entrySet()) {
-            setMetadata(entry.getKey(), entry.getValue(), updates);
+        this.addedMetadata.forEach((nodeId, metadata) -> set.append("graph.metadata." + nodeId, literal(metadata)));
+        this.modifiedMetadata.forEach((nodeId, metadata) -> set.append("graph.metadata." + nodeId, literal(metadata)));
+        set.append("revision", new Document("$add", List.of(new Document("$ifNull", List.of("$revision", 0L)), 1L)));
+
+        List<Bson> pipeline = new ArrayList<>();
+        pipeline.add(new Document("$set", set));
+        if (!this.removedMetadata.isEmpty()) {
+            var removedPaths = this.removedMetadata.keySet().stream()
+                .map(nodeId -> "graph.metadata." + nodeId)
+                .toList();
+            pipeline.add(new Document("$unset", removedPaths));
         }
+        return pipeline;
     }
 
-    private static void setMetadata(UUID nodeId, NodeMetadata metadata, Collection<Bson> updates) {
-        var update = Updates.set("graph.metadata." + nodeId, metadata);
-        updates.add(update);
+    /**
+     * Creates an expression for an array with
+     * the elements matching a condition removed,
+     * and new elements appended.
+     *
+     * @param arrayPath   The path of the array, prefixed with {@code $}.
+     * @param removeIf    The condition, on {@code $$this}.
+     * @param newElements The elements to append.
+     * @return The expression.
+     */
+    private static Document replaceElements(String arrayPath, Document removeIf, List<?> newElements) {
+        var kept = new Document("$filter", new Document("input", new Document("$ifNull", List.of(arrayPath, List.of())))
+            .append("cond", new Document("$not", List.of(removeIf))));
+        return new Document("$concatArrays", List.of(kept, literal(newElements)));
     }
 
-    private void updateRemoveMetadata(List<Bson> updates) {
-        for (var nodeId : this.removedMetadata.keySet()) {
-            var update = Updates.unset("graph.metadata." + nodeId);
-            updates.add(update);
-        }
+    /**
+     * Wraps a value so that an update pipeline
+     * does not interpret any of it, such as
+     * strings starting with {@code $}, as an
+     * expression.
+     *
+     * @param value The value.
+     * @return The wrapped value.
+     */
+    private static Document literal(Object value) {
+        return new Document("$literal", value);
     }
 
     /**
@@ -476,6 +520,17 @@ public class GraphObserver {
         ConnectionId(NodeConnection<?> connection) {
             this(connection.from().nodeId(), connection.from().name(), connection.to().nodeId(), connection.to().name());
         }
+
+        /**
+         * Gets the values identifying the connection
+         * in the database, in the order of
+         * {@code [output.node_id, output.name, input.node_id, input.name]}.
+         *
+         * @return The key.
+         */
+        List<Object> toKey() {
+            return List.of(this.fromId, this.fromName, this.toId, this.toName);
+        }
     }
 
     public record GraphChanges(@BsonProperty("removed_nodes") Set<String> removedNodes,
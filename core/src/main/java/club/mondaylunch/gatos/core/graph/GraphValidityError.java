@@ -24,8 +24,8 @@ public record GraphValidityError(@Nullable UUID relatedNode, String message) {
         return new GraphValidityError(null, "No path from a start node to an end node.");
     }
 
-    public static GraphValidityError cycle() {
-        return new GraphValidityError(null, "Cycle detected.");
+    public static GraphValidityError cycle(UUID nodeId) {
+        return new GraphValidityError(nodeId, "Cycle detected: node is part of a cycle.");
     }
 
     public static <T> Collection<GraphValidityError> ensureSetting(Node node, String key, DataType<T> type, Function<T, @Nullable String> validator) {
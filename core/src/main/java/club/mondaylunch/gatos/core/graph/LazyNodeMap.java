@@ -0,0 +1,113 @@
+package club.mondaylunch.gatos.core.graph;
+
+import java.util.AbstractMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The nodes of a graph, by ID, where nodes loaded from the database are kept
+ * as raw BSON until they are first used.
+ * <p>
+ * Checking whether a node exists and counting nodes never decodes anything,
+ * and getting, replacing or removing a node only decodes that node. Anything
+ * which goes through every node, such as iterating or comparing graphs,
+ * decodes all of them.
+ * </p>
+ */
+final class LazyNodeMap extends AbstractMap<UUID, Node> {
+    private final Map<UUID, Node> decoded;
+    private final Map<UUID, RawBsonDocument> encoded;
+    private final @Nullable Codec<Node> codec;
+
+    /**
+     * Creates an empty map.
+     */
+    LazyNodeMap() {
+        this(new HashMap<>(), new HashMap<>(), null);
+    }
+
+    /**
+     * Creates a map of encoded nodes.
+     *
+     * @param encoded the encoded nodes, by ID
+     * @param codec   the codec to decode them with
+     */
+    LazyNodeMap(Map<UUID, RawBsonDocument> encoded, Codec<Node> codec) {
+        this(new HashMap<>(), new HashMap<>(encoded), codec);
+    }
+
+    private LazyNodeMap(Map<UUID, Node> decoded, Map<UUID, RawBsonDocument> encoded, @Nullable Codec<Node> codec) {
+        this.decoded = decoded;
+        this.encoded = encoded;
+        this.codec = codec;
+    }
+
+    /**
+     * Creates a copy of this map, without decoding anything. Nodes still
+     * encoded in this map are decoded separately by each map.
+     *
+     * @return the copy
+     */
+    LazyNodeMap copy() {
+        return new LazyNodeMap(new HashMap<>(this.decoded), new HashMap<>(this.encoded), this.codec);
+    }
+
+    @Override
+    public int size() {
+        return this.decoded.size() + this.encoded.size();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return this.decoded.containsKey(key) || this.encoded.containsKey(key);
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        return value instanceof Node node && node.equals(this.get(node.id()));
+    }
+
+    @Override
+    public @Nullable Node get(Object key) {
+        var node = this.decoded.get(key);
+        if (node == null) {
+            var document = this.encoded.get(key);
+            if (document != null) {
+                node = this.codec.decode(document.asBsonReader(), DecoderContext.builder().build());
+                this.encoded.remove(key);
+                this.decoded.put(node.id(), node);
+            }
+        }
+        return node;
+    }
+
+    @Override
+    public @Nullable Node put(UUID key, Node value) {
+        var previous = this.get(key);
+        this.decoded.put(key, value);
+        return previous;
+    }
+
+    @Override
+    public @Nullable Node remove(Object key) {
+        var previous = this.get(key);
+        this.decoded.remove(key);
+        return previous;
+    }
+
+    @Override
+    public Set<Entry<UUID, Node>> entrySet() {
+        for (var id : List.copyOf(this.encoded.keySet())) {
+            this.get(id);
+        }
+        return this.decoded.entrySet();
+    }
+}
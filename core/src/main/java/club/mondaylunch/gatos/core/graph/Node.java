@@ -293,13 +293,15 @@ public final class Node {
                     reader.readName("input_types");
                     Map<String, DataType<?>> inputTypes = SerializationUtils.readMap(reader, decoderContext, DataType.class, Function.identity(), this.registry);
                     var inputs = NodeType.inputsOrEmpty(type, id, settings, inputTypes);
+                    // outputs can depend on the input types, which is why they are saved
+                    var validInputTypes = filterValidInputTypes(inputTypes, inputs.stream().collect(Collectors.toMap(NodeConnector::name, Function.identity())));
                     return new Node(
                         id,
                         type,
                         settings,
                         inputs,
-                        NodeType.outputsOrEmpty(type, id, settings, Map.of()),
-                        filterValidInputTypes(inputTypes, inputs.stream().collect(Collectors.toMap(NodeConnector::name, Function.identity())))
+                        NodeType.outputsOrEmpty(type, id, settings, validInputTypes),
+                        validInputTypes
                     );
                 } else {
                     reader.readName("inputs");
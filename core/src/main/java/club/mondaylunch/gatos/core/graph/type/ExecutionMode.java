@@ -0,0 +1,18 @@
+package club.mondaylunch.gatos.core.graph.type;
+
+/**
+ * How a node's computation should be scheduled when a flow is executed.
+ */
+public enum ExecutionMode {
+    /**
+     * The node does CPU-bound work and never blocks. It is computed on the
+     * bounded flow compute pool.
+     */
+    COMPUTE,
+    /**
+     * The node blocks while computing, e.g. on a database or network call.
+     * It is computed on an executor that gives each task its own thread, so
+     * it cannot starve the compute pool.
+     */
+    BLOCKING
+}
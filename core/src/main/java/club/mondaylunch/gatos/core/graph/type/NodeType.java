@@ -16,6 +16,7 @@ import club.mondaylunch.gatos.core.Either;
 import club.mondaylunch.gatos.core.Registry;
 import club.mondaylunch.gatos.core.data.DataBox;
 import club.mondaylunch.gatos.core.data.DataType;
+import club.mondaylunch.gatos.core.executor.NodeExecutors;
 import club.mondaylunch.gatos.core.graph.Graph;
 import club.mondaylunch.gatos.core.graph.GraphValidityError;
 import club.mondaylunch.gatos.core.graph.Node;
@@ -73,6 +74,17 @@ public interface NodeType {
      */
     Collection<GraphValidityError> isValid(Node node, Either<Flow, Graph> flowOrGraph);
 
+    /**
+     * How a node of this type should be scheduled when a flow is executed.
+     * Node types whose compute function blocks should return
+     * {@link ExecutionMode#BLOCKING}, and then may compute synchronously.
+     *
+     * @return the execution mode of this node type
+     */
+    default ExecutionMode executionMode() {
+        return ExecutionMode.COMPUTE;
+    }
+
     /**
      * Extended by node types which have input connectors.
      */
@@ -194,6 +206,42 @@ public interface NodeType {
         public final NodeCategory category() {
             return NodeCategory.PROCESS;
         }
+
+        /**
+         * Whether this node type is pure: its outputs depend only on its inputs
+         * and settings, it has no side effects, it does not modify its inputs,
+         * and it computes its outputs synchronously. Nodes of pure types whose
+         * inputs are all known when a flow is compiled are computed then,
+         * rather than on every execution.
+         *
+         * @return whether this node type is pure
+         */
+        public boolean isPure() {
+            return false;
+        }
+
+        /**
+         * (Asynchronously) compute the outputs of this node, as
+         * {@link #compute(UUID, Map, Map, Map)} does. Node types which run
+         * work of their own should override this to run it on the given
+         * executors, which are those the flow is being computed on.
+         *
+         * @param userId     the ID of the user who owns the flow this node is a part of
+         * @param inputs     a map of input connector name to value
+         * @param settings   a map of node settings
+         * @param inputTypes what type of output connector the input connectors to this node are connected to, if any
+         * @param executors  the executors the flow is being computed on
+         * @return a CompletableFuture of each output in a map by name
+         */
+        public Map<String, CompletableFuture<DataBox<?>>> compute(
+            UUID userId,
+            Map<String, DataBox<?>> inputs,
+            Map<String, DataBox<?>> settings,
+            Map<String, DataType<?>> inputTypes,
+            NodeExecutors executors
+        ) {
+            return this.compute(userId, inputs, settings, inputTypes);
+        }
     }
 
     /**
@@ -1,5 +1,6 @@
 package club.mondaylunch.gatos.core.models;
 
+import java.util.Collection;
 import java.util.Objects;
 import java.util.UUID;
 
@@ -9,6 +10,7 @@ import org.bson.codecs.pojo.annotations.BsonProperty;
 import club.mondaylunch.gatos.core.collection.FlowCollection;
 import club.mondaylunch.gatos.core.executor.GraphExecutor;
 import club.mondaylunch.gatos.core.graph.Graph;
+import club.mondaylunch.gatos.core.graph.Node;
 import club.mondaylunch.gatos.core.graph.type.NodeCategory;
 import club.mondaylunch.gatos.core.graph.type.NodeType;
 
@@ -38,6 +40,12 @@ public class Flow extends BaseModel {
 
     private Graph graph = new Graph();
 
+    /**
+     * Revision of the graph, incremented by the database each time the graph
+     * is changed.
+     */
+    private long revision;
+
     public Flow(UUID id, String name, UUID authorId) {
         super(id);
         this.name = name;
@@ -119,13 +127,43 @@ public class Flow extends BaseModel {
         this.graph = graph;
     }
 
+    /**
+     * Get the graph revision.
+     *
+     * @return graph revision
+     */
+    public long getRevision() {
+        return this.revision;
+    }
+
+    /**
+     * Set the graph revision. This is only changed in the database by saving
+     * changes to the graph.
+     *
+     * @param revision graph revision
+     */
+    public void setRevision(long revision) {
+        this.revision = revision;
+    }
+
     public void setupTriggers() {
-        this.graph.observer().getRemovedNodes().stream()
+        this.setupTriggers(this.graph.observer().getRemovedNodes());
+    }
+
+    /**
+     * Tears down the triggers of start nodes removed from the graph, then
+     * sets up the triggers of the graph's start nodes if the graph is valid,
+     * or tears them down if it is not.
+     *
+     * @param removedNodes the nodes removed from the graph
+     */
+    public void setupTriggers(Collection<Node> removedNodes) {
+        removedNodes.stream()
             .filter(n -> n.type().category() == NodeCategory.START)
             .forEach(n -> ((NodeType.Start<?>) n.type()).teardownFlow(this, n));
 
         if (this.graph.validate(this).isEmpty()) {
-            var executor = new GraphExecutor(this.graph);
+            var executor = new GraphExecutor(objects.getExecutionPlan(this));
             this.graph.nodes().stream()
                 .filter(n -> n.type().category() == NodeCategory.START)
                 .forEach(n -> ((NodeType.Start<?>) n.type()).setupFlow(this, executor.execute(this.getAuthorId(), n.id())::apply, n));
@@ -165,6 +203,7 @@ public class Flow extends BaseModel {
             + ", description='" + this.description
             + ", authorId=" + this.authorId
             + ", graph=" + this.graph
+            + ", revision=" + this.revision
             + '}';
     }
 }
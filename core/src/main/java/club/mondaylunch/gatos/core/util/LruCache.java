@@ -0,0 +1,63 @@
+package club.mondaylunch.gatos.core.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A thread-safe, size-bounded cache which evicts the least recently used
+ * value once it is full.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+public final class LruCache<K, V> {
+    private final Map<K, V> entries;
+
+    /**
+     * Creates a cache.
+     *
+     * @param maxSize the maximum number of values to keep
+     */
+    public LruCache(int maxSize) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return this.size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Gets a cached value, marking it as the most recently used.
+     *
+     * @param key the key
+     * @return the value, or null if it is not cached
+     */
+    public synchronized @Nullable V get(K key) {
+        return this.entries.get(key);
+    }
+
+    /**
+     * Caches a value, unless one is already cached for the key, evicting the
+     * least recently used value if the cache is full.
+     *
+     * @param key   the key
+     * @param value the value
+     * @return the value now cached for the key
+     */
+    public synchronized V putIfAbsent(K key, V value) {
+        var existing = this.entries.putIfAbsent(key, value);
+        return existing == null ? value : existing;
+    }
+
+    /**
+     * Gets the number of cached values.
+     *
+     * @return the number of values
+     */
+    public synchronized int size() {
+        return this.entries.size();
+    }
+}
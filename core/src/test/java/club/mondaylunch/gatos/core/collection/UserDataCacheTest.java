@@ -0,0 +1,54 @@
+package club.mondaylunch.gatos.core.collection;
+
+import java.util.Optional;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import club.mondaylunch.gatos.core.collection.UserDataWriteBehind.PendingWrite;
+import club.mondaylunch.gatos.core.data.DataType;
+import club.mondaylunch.gatos.core.models.UserData;
+
+public class UserDataCacheTest {
+    private static final UserData.Id ID = new UserData.Id(UUID.randomUUID(), "count");
+
+    @Test
+    public void readFinishedDuringWriteIsNotCached() {
+        var cache = new UserDataCache(16, 60_000);
+        cache.onWrite(ID, new PendingWrite.Increment(1, true));
+        long stamp = cache.stamp();
+        cache.put(ID, Optional.of(DataType.NUMBER.create(1.0)), stamp);
+        cache.onWritten(ID, true);
+        Assertions.assertNull(cache.get(ID));
+    }
+
+    @Test
+    public void readStartedDuringWriteIsNotCached() {
+        var cache = new UserDataCache(16, 60_000);
+        cache.put(ID, Optional.of(DataType.NUMBER.create(1.0)), cache.stamp());
+        cache.onWrite(ID, new PendingWrite.Set(DataType.NUMBER.create(2.0)));
+        long stamp = cache.stamp();
+        cache.onWritten(ID, true);
+        cache.put(ID, Optional.of(DataType.NUMBER.create(1.0)), stamp);
+        Assertions.assertEquals(Optional.of(DataType.NUMBER.create(2.0)), cache.get(ID));
+    }
+
+    @Test
+    public void readStartedAfterWriteIsCached() {
+        var cache = new UserDataCache(16, 60_000);
+        cache.onWrite(ID, new PendingWrite.Increment(1, true));
+        cache.onWritten(ID, true);
+        cache.put(ID, Optional.of(DataType.NUMBER.create(2.0)), cache.stamp());
+        Assertions.assertEquals(Optional.of(DataType.NUMBER.create(2.0)), cache.get(ID));
+    }
+
+    @Test
+    public void failedWriteIsEvicted() {
+        var cache = new UserDataCache(16, 60_000);
+        cache.onWrite(ID, new PendingWrite.Set(DataType.NUMBER.create(2.0)));
+        Assertions.assertEquals(Optional.of(DataType.NUMBER.create(2.0)), cache.get(ID));
+        cache.onWritten(ID, false);
+        Assertions.assertNull(cache.get(ID));
+    }
+}
@@ -1,6 +1,8 @@
 package club.mondaylunch.gatos.core.collection.test;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 import org.junit.jupiter.api.AfterEach;
@@ -8,6 +10,7 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import club.mondaylunch.gatos.core.collection.FlowCollection;
 import club.mondaylunch.gatos.core.data.DataType;
 import club.mondaylunch.gatos.core.graph.Graph;
 import club.mondaylunch.gatos.core.graph.Node;
@@ -541,6 +544,123 @@ public class GraphSerializationTest {
         Assertions.assertEquals(metadata3, finalGraph.getOrCreateMetadataForNode(node3.id()));
     }
 
+    @Test
+    public void savingChangesIncrementsRevision() {
+        var flow = createFlow();
+        var id = flow.getId();
+        Flow.objects.insert(flow);
+        var retrievedFlow = Flow.objects.get(id);
+        Assertions.assertEquals(0, retrievedFlow.getRevision());
+        retrievedFlow.getGraph().addNode(TestNodeTypes.NO_INPUTS);
+        Flow.objects.updateGraph(retrievedFlow);
+        Assertions.assertEquals(1, retrievedFlow.getRevision());
+        Assertions.assertEquals(1, Flow.objects.get(id).getRevision());
+        Flow.objects.updateGraph(retrievedFlow);
+        Assertions.assertEquals(1, Flow.objects.get(id).getRevision());
+    }
+
+    @Test
+    public void cannotSaveChangesToOutdatedFlow() {
+        var flow = createFlow();
+        var id = flow.getId();
+        Flow.objects.insert(flow);
+        var firstFlow = Flow.objects.get(id);
+        var secondFlow = Flow.objects.get(id);
+        var node = firstFlow.getGraph().addNode(TestNodeTypes.NO_INPUTS);
+        Flow.objects.updateGraph(firstFlow);
+        secondFlow.getGraph().addNode(TestNodeTypes.END);
+        Assertions.assertThrows(FlowCollection.RevisionConflictException.class, () -> Flow.objects.updateGraph(secondFlow));
+        var finalGraph = Flow.objects.get(id).getGraph();
+        Assertions.assertEquals(1, finalGraph.nodeCount());
+        assertContainsNodes(finalGraph, node);
+    }
+
+    @Test
+    public void canCopyLoadedGraph() {
+        var flow = createFlow();
+        var graph = flow.getGraph();
+        var node1 = graph.addNode(TestNodeTypes.NO_INPUTS);
+        var node2 = graph.addNode(TestNodeTypes.PROCESS);
+        graph.addConnection(NodeConnection.create(node1, "start_output", node2, "process_input"));
+        graph.modifyMetadata(node1.id(), nodeMetadata -> nodeMetadata.withX(1));
+        Flow.objects.insert(flow);
+        var retrievedGraph = Flow.objects.get(flow.getId()).getGraph();
+        var copy = retrievedGraph.copy();
+        Assertions.assertEquals(graph, copy);
+        Assertions.assertEquals(graph, retrievedGraph);
+        Assertions.assertFalse(copy.observer().hasChanges());
+    }
+
+    @Test
+    public void canModifyMetadataOfLoadedGraph() {
+        var flow = createFlow();
+        var graph = flow.getGraph();
+        var node1 = graph.addNode(TestNodeTypes.NO_INPUTS);
+        var node2 = graph.addNode(TestNodeTypes.END);
+        graph.addConnection(NodeConnection.create(node1, "start_output", node2, "end_input"));
+        Flow.objects.insert(flow);
+        var retrievedFlow = Flow.objects.get(flow.getId());
+        var metadata = retrievedFlow.getGraph().modifyMetadata(node2.id(), nodeMetadata -> nodeMetadata.withX(2));
+        Flow.objects.updateGraph(retrievedFlow);
+        var finalGraph = Flow.objects.get(flow.getId()).getGraph();
+        Assertions.assertEquals(metadata, finalGraph.getOrCreateMetadataForNode(node2.id()));
+        Assertions.assertEquals(2, finalGraph.nodeCount());
+        Assertions.assertEquals(1, finalGraph.connectionCount());
+        assertContainsNodes(finalGraph, node1, node2);
+    }
+
+    @Test
+    public void canGetNodeWithoutLoadingFlow() {
+        var flow = createFlow();
+        var graph = flow.getGraph();
+        var node1 = graph.addNode(TestNodeTypes.NO_INPUTS);
+        var node2 = graph.addNode(TestNodeTypes.PROCESS);
+        graph.addConnection(NodeConnection.create(node1, "start_output", node2, "process_input"));
+        Flow.objects.insert(flow);
+        var retrievedGraph = Flow.objects.get(flow.getId()).getGraph();
+        Assertions.assertEquals(retrievedGraph.getNode(node2.id()), Flow.objects.getNode(flow.getId(), flow.getAuthorId(), node2.id()));
+        Assertions.assertEquals(Optional.empty(), Flow.objects.getNode(flow.getId(), flow.getAuthorId(), UUID.randomUUID()));
+    }
+
+    @Test
+    public void canGetConnectionsWithoutLoadingFlow() {
+        var flow = createFlow();
+        var graph = flow.getGraph();
+        var node1 = graph.addNode(TestNodeTypes.NO_INPUTS);
+        var node2 = graph.addNode(TestNodeTypes.PROCESS);
+        var node3 = graph.addNode(TestNodeTypes.END);
+        var connection1 = NodeConnection.create(node1, "start_output", node2, "process_input");
+        var connection2 = NodeConnection.create(node2, "process_output", node3, "end_input");
+        graph.addConnection(connection1);
+        graph.addConnection(connection2);
+        Flow.objects.insert(flow);
+        Assertions.assertEquals(Optional.of(Set.of(connection1, connection2)), Flow.objects.getConnections(flow.getId(), flow.getAuthorId(), node2.id()));
+        Assertions.assertEquals(Optional.of(Set.of(connection2)), Flow.objects.getConnections(flow.getId(), flow.getAuthorId(), node3.id()));
+        Assertions.assertEquals(Optional.empty(), Flow.objects.getConnections(flow.getId(), flow.getAuthorId(), UUID.randomUUID()));
+    }
+
+    @Test
+    public void canGetMetadataWithoutLoadingFlow() {
+        var flow = createFlow();
+        var graph = flow.getGraph();
+        var node1 = graph.addNode(TestNodeTypes.NO_INPUTS);
+        var node2 = graph.addNode(TestNodeTypes.END);
+        var metadata1 = graph.modifyMetadata(node1.id(), nodeMetadata -> nodeMetadata.withX(1));
+        Flow.objects.insert(flow);
+        Assertions.assertEquals(Optional.of(metadata1), Flow.objects.getMetadata(flow.getId(), flow.getAuthorId(), node1.id()));
+        Assertions.assertEquals(Optional.of(new NodeMetadata(0, 0)), Flow.objects.getMetadata(flow.getId(), flow.getAuthorId(), node2.id()));
+        Assertions.assertEquals(Optional.empty(), Flow.objects.getMetadata(flow.getId(), flow.getAuthorId(), UUID.randomUUID()));
+    }
+
+    @Test
+    public void cannotGetNodeOfAnotherAuthorsFlow() {
+        var flow = createFlow();
+        var node = flow.getGraph().addNode(TestNodeTypes.NO_INPUTS);
+        Flow.objects.insert(flow);
+        Assertions.assertThrows(FlowCollection.FlowNotFoundException.class, () -> Flow.objects.getNode(flow.getId(), UUID.randomUUID(), node.id()));
+        Assertions.assertThrows(FlowCollection.FlowNotFoundException.class, () -> Flow.objects.getNode(UUID.randomUUID(), flow.getAuthorId(), node.id()));
+    }
+
     private static Flow createFlow() {
         return new Flow(UUID.randomUUID(), "Test Flow", UUID.randomUUID());
     }
@@ -11,6 +11,7 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import club.mondaylunch.gatos.core.collection.UserDataCollection;
 import club.mondaylunch.gatos.core.data.DataBox;
 import club.mondaylunch.gatos.core.data.DataType;
 import club.mondaylunch.gatos.core.models.JsonObjectReference;
@@ -247,4 +248,92 @@ public class UserDataCollectionTest {
         var data = DataType.NUMBER.create(value);
         assertSetData(flowId, key, data);
     }
+
+    @Test
+    public void bufferedWritesAreCoalescedAndVisibleToReads() {
+        var buffered = new UserDataCollection(60_000, 0);
+        var id = UUID.randomUUID();
+        buffered.set(id, "count", DataType.NUMBER.create(1.0));
+        for (int i = 0; i < 10; i++) {
+            buffered.incrementOrSet(id, "count", 1);
+        }
+        buffered.multiply(id, "count", 2);
+        buffered.incrementOrSet(id, "other", 5);
+        Assertions.assertEquals(DataType.NUMBER.create(22.0), buffered.get(id, "count").orElseThrow());
+        Assertions.assertTrue(UserData.objects.get(id, "other").isEmpty());
+        buffered.flush();
+        Assertions.assertEquals(DataType.NUMBER.create(5.0), UserData.objects.get(id, "other").orElseThrow());
+    }
+
+    @Test
+    public void bufferedWritesAreVisibleToAsyncReads() {
+        var buffered = new UserDataCollection(60_000, 0);
+        var id = UUID.randomUUID();
+        buffered.set(id, "count", DataType.NUMBER.create(1.0));
+        buffered.incrementOrSet(id, "count", 2);
+        Assertions.assertEquals(DataType.NUMBER.create(3.0), buffered.getAsync(id, "count").join().orElseThrow());
+        Assertions.assertTrue(buffered.containsAsync(id, "count").join());
+        Assertions.assertFalse(buffered.containsAsync(id, "other").join());
+    }
+
+    @Test
+    public void bufferedDeleteDropsEarlierWrites() {
+        var buffered = new UserDataCollection(60_000, 0);
+        var id = UUID.randomUUID();
+        UserData.objects.set(id, "test", DataType.STRING.create("Test data"));
+        buffered.set(id, "test", DataType.STRING.create("Test data 2"));
+        buffered.delete(id, "test");
+        buffered.increment(id, "test", 1);
+        Assertions.assertFalse(buffered.contains(id, "test"));
+    }
+
+    @Test
+    public void bufferedWritesWhichCannotBeCoalescedAreAppliedInOrder() {
+        var buffered = new UserDataCollection(60_000, 0);
+        var id = UUID.randomUUID();
+        buffered.multiply(id, "count", 3);
+        buffered.setIfAbsent(id, "count", DataType.NUMBER.create(2.0));
+        buffered.incrementOrSet(id, "count", 1);
+        buffered.multiply(id, "count", 4);
+        buffered.flush();
+        Assertions.assertEquals(DataType.NUMBER.create(12.0), UserData.objects.get(id, "count").orElseThrow());
+    }
+
+    @Test
+    public void failingBufferedWriteDoesNotBlockOtherWrites() {
+        var buffered = new UserDataCollection(60_000, 0);
+        var id = UUID.randomUUID();
+        UserData.objects.set(id, "text", DataType.STRING.create("Test data"));
+        buffered.set(id, "before", DataType.NUMBER.create(1.0));
+        buffered.setIfAbsent(id, "text", DataType.NUMBER.create(1.0));
+        buffered.increment(id, "text", 1);
+        buffered.set(id, "after", DataType.NUMBER.create(2.0));
+        buffered.flush();
+        Assertions.assertEquals(DataType.STRING.create("Test data"), UserData.objects.get(id, "text").orElseThrow());
+        Assertions.assertEquals(DataType.NUMBER.create(1.0), UserData.objects.get(id, "before").orElseThrow());
+        Assertions.assertEquals(DataType.NUMBER.create(2.0), UserData.objects.get(id, "after").orElseThrow());
+    }
+
+    @Test
+    public void cachedReadsSeeLocalWrites() {
+        var cached = new UserDataCollection(0, 60_000);
+        var id = UUID.randomUUID();
+        Assertions.assertFalse(cached.contains(id, "count"));
+        cached.incrementOrSet(id, "count", 2);
+        Assertions.assertEquals(DataType.NUMBER.create(2.0), cached.get(id, "count").orElseThrow());
+        cached.multiply(id, "count", 3);
+        Assertions.assertEquals(DataType.NUMBER.create(6.0), cached.get(id, "count").orElseThrow());
+        cached.delete(id, "count");
+        Assertions.assertTrue(cached.get(id, "count").isEmpty());
+    }
+
+    @Test
+    public void cachedReadsDoNotSeeOtherWritersUntilExpiry() {
+        var cached = new UserDataCollection(0, 60_000);
+        var id = UUID.randomUUID();
+        UserData.objects.set(id, "test", DataType.STRING.create("Test data"));
+        Assertions.assertEquals(DataType.STRING.create("Test data"), cached.get(id, "test").orElseThrow());
+        UserData.objects.set(id, "test", DataType.STRING.create("Test data 2"));
+        Assertions.assertEquals(DataType.STRING.create("Test data"), cached.get(id, "test").orElseThrow());
+    }
 }
@@ -20,6 +20,7 @@ public class ConversionsTest {
     private static final DataType<Foo> FOO_TYPE = DataType.register("foo", Foo.class);
     private static final DataType<Bar> BAR_TYPE = DataType.register("bar", Bar.class);
     private static final DataType<Baz> BAZ_TYPE = DataType.register("baz", Baz.class);
+    private static final DataType<Qux> QUX_TYPE = DataType.register("qux", Qux.class);
 
     @Test
     public void canRegisterConversion() {
@@ -67,6 +68,18 @@ public class ConversionsTest {
         );
     }
 
+    @Test
+    public void registeringConversionInvalidatesCachedLookups() {
+        Assertions.assertFalse(Conversions.canConvert(FOO_TYPE, QUX_TYPE));
+        Assertions.assertTrue(Conversions.getConverter(FOO_TYPE, QUX_TYPE).isEmpty());
+        Conversions.register(FOO_TYPE, QUX_TYPE, foo -> new Qux(foo.name()));
+        Assertions.assertTrue(Conversions.canConvert(FOO_TYPE, QUX_TYPE));
+        var foo = FOO_TYPE.create(new Foo("hello!"));
+        Assertions.assertEquals(QUX_TYPE.create(new Qux("hello!")), Conversions.convert(foo, QUX_TYPE));
+        Conversions.register(FOO_TYPE, QUX_TYPE, foo1 -> new Qux(foo1.name() + "?"));
+        Assertions.assertEquals(QUX_TYPE.create(new Qux("hello!?")), Conversions.convert(foo, QUX_TYPE));
+    }
+
     @Test
     public void nullConversionFails() {
         Conversions.register(FOO_TYPE, BAZ_TYPE, foo -> null);
@@ -247,4 +260,7 @@ public class ConversionsTest {
 
     private record Baz(String name) {
     }
+
+    private record Qux(String name) {
+    }
 }
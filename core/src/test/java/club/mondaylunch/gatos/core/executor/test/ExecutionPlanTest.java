@@ -0,0 +1,195 @@
+package club.mondaylunch.gatos.core.executor.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import club.mondaylunch.gatos.core.data.DataBox;
+import club.mondaylunch.gatos.core.data.DataType;
+import club.mondaylunch.gatos.core.executor.ExecutionPlan;
+import club.mondaylunch.gatos.core.graph.Graph;
+import club.mondaylunch.gatos.core.graph.connector.NodeConnection;
+import club.mondaylunch.gatos.core.graph.connector.NodeConnector;
+import club.mondaylunch.gatos.core.graph.type.NodeType;
+import club.mondaylunch.gatos.testshared.graph.type.test.TestNodeTypes;
+
+public class ExecutionPlanTest {
+    @Test
+    public void endNodesComeLast() {
+        var graph = new Graph();
+        var end = graph.addNode(TestNodeTypes.END);
+        var start = graph.addNode(TestNodeTypes.NO_INPUTS);
+        var process = graph.addNode(TestNodeTypes.PROCESS);
+        graph.addConnection(NodeConnection.create(start, "start_output", process, "process_input"));
+        graph.addConnection(NodeConnection.create(process, "process_output", end, "end_input"));
+
+        var plan = new ExecutionPlan(List.of(end, start, process), graph.getConnections());
+        var steps = plan.steps();
+        Assertions.assertEquals(3, steps.size());
+        Assertions.assertEquals(start, steps.get(0).node());
+        Assertions.assertEquals(process, steps.get(1).node());
+        Assertions.assertEquals(end, steps.get(2).node());
+        Assertions.assertArrayEquals(new int[]{0}, steps.get(1).dependencies());
+        Assertions.assertArrayEquals(new int[]{1}, steps.get(2).dependencies());
+    }
+
+    @Test
+    public void outputFeedingManyInputsSharesSlot() {
+        var graph = new Graph();
+        var start = graph.addNode(TestNodeTypes.NO_INPUTS);
+        var multi = graph.addNode(TestNodeTypes.MULTIPLE_CONNECTIONS);
+        var end = graph.addNode(TestNodeTypes.END);
+        graph.addConnection(NodeConnection.create(start, "start_output", multi, "input_1"));
+        graph.addConnection(NodeConnection.create(start, "start_output", multi, "input_2"));
+        graph.addConnection(NodeConnection.create(multi, "output_3", end, "end_input"));
+
+        var plan = new ExecutionPlan(List.of(start, multi, end), graph.getConnections());
+        Assertions.assertEquals(2, plan.slotCount());
+        var multiStep = plan.steps().get(1);
+        Assertions.assertEquals(2, multiStep.inputs().size());
+        Assertions.assertEquals(multiStep.inputs().get(0).slot(), multiStep.inputs().get(1).slot());
+        Assertions.assertArrayEquals(new int[]{0}, multiStep.dependencies());
+        Assertions.assertEquals(1, multiStep.outputs().size());
+        Assertions.assertEquals("output_3", multiStep.outputs().get(0).name());
+    }
+
+    @Test
+    public void nodesNotFeedingAnEndNodeAreNotLive() {
+        var graph = new Graph();
+        var start = graph.addNode(TestNodeTypes.NO_INPUTS);
+        var process = graph.addNode(TestNodeTypes.PROCESS);
+        var deadProcess = graph.addNode(TestNodeTypes.PROCESS);
+        var end = graph.addNode(TestNodeTypes.END);
+        graph.addConnection(NodeConnection.create(start, "start_output", process, "process_input"));
+        graph.addConnection(NodeConnection.create(start, "start_output", deadProcess, "process_input"));
+        graph.addConnection(NodeConnection.create(process, "process_output", end, "end_input"));
+
+        var plan = new ExecutionPlan(List.of(start, process, deadProcess, end), graph.getConnections());
+        Assertions.assertEquals(4, plan.steps().size());
+        var live = plan.getLiveSteps(null).stream().map(ExecutionPlan.Step::node).toList();
+        Assertions.assertEquals(List.of(start, process, end), live);
+    }
+
+    @Test
+    public void pureNodesFedOnlyByPureNodesAreFolded() {
+        var computations = new AtomicInteger();
+        var constant = new PureAddNodeType(computations);
+        var graph = new Graph();
+        var first = graph.addNode(constant);
+        first = graph.modifyNode(first.id(), node -> node.modifySetting("value_to_add", DataType.NUMBER.create(2.)));
+        var second = graph.addNode(constant);
+        second = graph.modifyNode(second.id(), node -> node.modifySetting("value_to_add", DataType.NUMBER.create(3.)));
+        var process = graph.addNode(TestNodeTypes.PROCESS);
+        var end = graph.addNode(TestNodeTypes.END);
+        var otherEnd = graph.addNode(TestNodeTypes.END);
+        graph.addConnection(NodeConnection.create(first, "out", second, "in"));
+        graph.addConnection(NodeConnection.create(second, "out", end, "end_input"));
+        graph.addConnection(NodeConnection.create(process, "process_output", otherEnd, "end_input"));
+
+        var plan = new ExecutionPlan(List.of(first, second, process, end, otherEnd), graph.getConnections());
+        Assertions.assertEquals(2, computations.get());
+        var live = plan.getLiveSteps(null);
+        Assertions.assertEquals(List.of(process, end, otherEnd), live.stream().map(ExecutionPlan.Step::node).toList());
+        var endStep = live.get(1);
+        Assertions.assertArrayEquals(new int[0], endStep.dependencies());
+        var values = plan.createValues();
+        Assertions.assertEquals(DataType.NUMBER.create(5.), values[endStep.inputs().get(0).slot()]);
+        Assertions.assertNotSame(values, plan.createValues());
+    }
+
+    @Test
+    public void pureNodesWithMutableOutputsAreNotFolded() {
+        var graph = new Graph();
+        var list = graph.addNode(new PureListNodeType());
+        var end = graph.addNode(TestNodeTypes.END_STRING);
+        graph.addConnection(NodeConnection.create(list, "out", end, "end_input"));
+
+        var plan = new ExecutionPlan(List.of(list, end), graph.getConnections());
+        var live = plan.getLiveSteps(null);
+        Assertions.assertEquals(List.of(list, end), live.stream().map(ExecutionPlan.Step::node).toList());
+        Assertions.assertNull(plan.createValues()[live.get(1).inputs().get(0).slot()]);
+    }
+
+    @Test
+    public void invalidGraphCannotBeCompiled() {
+        var graph = new Graph();
+        graph.addNode(TestNodeTypes.PROCESS);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ExecutionPlan.compile(graph));
+    }
+
+    private static final class PureAddNodeType extends NodeType.Process {
+        private final AtomicInteger computations;
+
+        private PureAddNodeType(AtomicInteger computations) {
+            this.computations = computations;
+        }
+
+        @Override
+        public Set<NodeConnector.Input<?>> inputs(UUID nodeId, Map<String, DataBox<?>> settings, Map<String, DataType<?>> inputTypes) {
+            return Set.of(
+                new NodeConnector.Input<>(nodeId, "in", DataType.NUMBER));
+        }
+
+        @Override
+        public Set<NodeConnector.Output<?>> outputs(UUID nodeId, Map<String, DataBox<?>> settings, Map<String, DataType<?>> inputTypes) {
+            return Set.of(
+                new NodeConnector.Output<>(nodeId, "out", DataType.NUMBER));
+        }
+
+        @Override
+        public Map<String, DataBox<?>> settings() {
+            return Map.of(
+                "value_to_add", DataType.NUMBER.create(0.));
+        }
+
+        @Override
+        public boolean isPure() {
+            return true;
+        }
+
+        @Override
+        public Map<String, CompletableFuture<DataBox<?>>> compute(UUID userId, Map<String, DataBox<?>> inputs,
+                                                                  Map<String, DataBox<?>> settings, Map<String, DataType<?>> inputTypes) {
+            this.computations.incrementAndGet();
+            double value = DataBox.get(settings, "value_to_add", DataType.NUMBER).orElseThrow()
+                + DataBox.get(inputs, "in", DataType.NUMBER).orElse(0.);
+            return Map.of("out", CompletableFuture.completedFuture(DataType.NUMBER.create(value)));
+        }
+    }
+
+    private static final class PureListNodeType extends NodeType.Process {
+        @Override
+        public Set<NodeConnector.Input<?>> inputs(UUID nodeId, Map<String, DataBox<?>> settings, Map<String, DataType<?>> inputTypes) {
+            return Set.of();
+        }
+
+        @Override
+        public Set<NodeConnector.Output<?>> outputs(UUID nodeId, Map<String, DataBox<?>> settings, Map<String, DataType<?>> inputTypes) {
+            return Set.of(
+                new NodeConnector.Output<>(nodeId, "out", DataType.NUMBER.listOf()));
+        }
+
+        @Override
+        public Map<String, DataBox<?>> settings() {
+            return Map.of();
+        }
+
+        @Override
+        public boolean isPure() {
+            return true;
+        }
+
+        @Override
+        public Map<String, CompletableFuture<DataBox<?>>> compute(UUID userId, Map<String, DataBox<?>> inputs,
+                                                                  Map<String, DataBox<?>> settings, Map<String, DataType<?>> inputTypes) {
+            return Map.of("out", CompletableFuture.completedFuture(DataType.NUMBER.listOf().create(new ArrayList<>(List.of(1.)))));
+        }
+    }
+}
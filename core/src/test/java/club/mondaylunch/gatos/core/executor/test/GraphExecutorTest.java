@@ -1,9 +1,13 @@
 package club.mondaylunch.gatos.core.executor.test;
 
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
@@ -16,11 +20,15 @@ import org.junit.jupiter.api.Test;
 
 import club.mondaylunch.gatos.core.data.DataBox;
 import club.mondaylunch.gatos.core.data.DataType;
+import club.mondaylunch.gatos.core.executor.ExecutionPlan;
+import club.mondaylunch.gatos.core.executor.ExecutionTrace;
 import club.mondaylunch.gatos.core.executor.GraphExecutor;
+import club.mondaylunch.gatos.core.executor.NodeTrace;
 import club.mondaylunch.gatos.core.graph.Graph;
 import club.mondaylunch.gatos.core.graph.Node;
 import club.mondaylunch.gatos.core.graph.connector.NodeConnection;
 import club.mondaylunch.gatos.core.graph.connector.NodeConnector;
+import club.mondaylunch.gatos.core.graph.type.ExecutionMode;
 import club.mondaylunch.gatos.core.graph.type.NodeType;
 import club.mondaylunch.gatos.core.models.Flow;
 
@@ -237,6 +245,139 @@ public class GraphExecutorTest {
         Assertions.assertEquals("48.0", result2.get());
     }
 
+    @Test
+    public void independentBranchesDoNotWaitForEachOther() throws Exception {
+        var graph = new Graph();
+        var gate = new CompletableFuture<DataBox<?>>();
+        AtomicInteger result1 = new AtomicInteger();
+        var output1 = graph.addNode(new OutputIntNodeType(result1));
+        AtomicInteger result2 = new AtomicInteger();
+        var output2 = graph.addNode(new OutputIntNodeType(result2));
+
+        var input = graph.addNode(INPUT_NUM);
+        graph.modifyNode(input.id(), node -> node.modifySetting("value", DataType.NUMBER.create(10.)));
+        var waiter = graph.addNode(new GatedNumNodeType(gate, false));
+        var opener = graph.addNode(new GatedNumNodeType(gate, true));
+
+        connectInt(graph, input, "out", waiter, "in");
+        connectInt(graph, input, "out", opener, "in");
+        connectInt(graph, waiter, "out", output1, "in");
+        connectInt(graph, opener, "out", output2, "in");
+
+        var executionOrderedNodes = graph.getExecutionOrder();
+        Assertions.assertTrue(executionOrderedNodes.isLeft());
+        var graphExecutor = new GraphExecutor(executionOrderedNodes.left(), graph.getConnections());
+
+        graphExecutor.execute(UUID.randomUUID()).get().get(5, TimeUnit.SECONDS);
+        Assertions.assertEquals(10, result1.get());
+        Assertions.assertEquals(10, result2.get());
+    }
+
+    @Test
+    public void nodesRunOnExecutorForTheirMode() {
+        var graph = new Graph();
+        AtomicInteger result = new AtomicInteger();
+        var output = graph.addNode(new OutputIntNodeType(result));
+        var input = graph.addNode(INPUT_NUM);
+        graph.modifyNode(input.id(), node -> node.modifySetting("value", DataType.NUMBER.create(10.)));
+        var blockingThread = new AtomicReference<String>();
+        var blocking = graph.addNode(new ThreadRecordingNodeType(ExecutionMode.BLOCKING, blockingThread));
+        var computeThread = new AtomicReference<String>();
+        var compute = graph.addNode(new ThreadRecordingNodeType(ExecutionMode.COMPUTE, computeThread));
+
+        connectInt(graph, input, "out", blocking, "in");
+        connectInt(graph, blocking, "out", compute, "in");
+        connectInt(graph, compute, "out", output, "in");
+
+        var graphExecutor = new GraphExecutor(
+            ExecutionPlan.compile(graph),
+            runnable -> new Thread(runnable, "test-compute").start(),
+            runnable -> new Thread(runnable, "test-blocking").start());
+
+        graphExecutor.execute(UUID.randomUUID()).get().join();
+        Assertions.assertEquals(10, result.get());
+        Assertions.assertEquals("test-blocking", blockingThread.get());
+        Assertions.assertEquals("test-compute", computeThread.get());
+    }
+
+    @Test
+    public void batchRunsReportPerItemResultsInOrder() {
+        var graph = new Graph();
+        var inFlight = new AtomicInteger();
+        var maxInFlight = new AtomicInteger();
+        var outputs = new ConcurrentLinkedQueue<Integer>();
+        var input = graph.addNode(new TriggerNumNodeType(inFlight, maxInFlight));
+        var adder = graph.addNode(ADD_NUMS_SLOWLY);
+        graph.modifyNode(adder.id(), node -> node.modifySetting("value_to_add", DataType.NUMBER.create(1.)));
+        var output = graph.addNode(new CollectIntNodeType(outputs, inFlight));
+        connectInt(graph, input, "out", adder, "in");
+        connectInt(graph, adder, "out", output, "in");
+
+        var graphExecutor = new GraphExecutor(ExecutionPlan.compile(graph));
+        var results = graphExecutor.executeBatch(UUID.randomUUID(), input.id(), List.of(1., 2., -1., 4., 5.), 2);
+        Assertions.assertEquals(5, results.size());
+        CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).exceptionally($ -> null).join();
+        for (int i = 0; i < results.size(); i++) {
+            Assertions.assertEquals(i == 2, results.get(i).isCompletedExceptionally());
+        }
+        Assertions.assertEquals(Set.of(2, 3, 5, 6), Set.copyOf(outputs));
+        Assertions.assertTrue(maxInFlight.get() <= 2);
+    }
+
+    @Test
+    public void onlyBranchesOfTheTriggerAreComputed() {
+        var graph = new Graph();
+        var inFlight = new AtomicInteger();
+        var triggered = graph.addNode(new TriggerNumNodeType(inFlight, new AtomicInteger()));
+        var other = graph.addNode(new TriggerNumNodeType(inFlight, new AtomicInteger()));
+        var triggeredOutputs = new ConcurrentLinkedQueue<Integer>();
+        var triggeredOutput = graph.addNode(new CollectIntNodeType(triggeredOutputs, inFlight));
+        var otherOutputs = new ConcurrentLinkedQueue<Integer>();
+        var otherOutput = graph.addNode(new CollectIntNodeType(otherOutputs, inFlight));
+        var deadThread = new AtomicReference<String>();
+        var deadAdder = graph.addNode(new ThreadRecordingNodeType(ExecutionMode.COMPUTE, deadThread));
+        connectInt(graph, triggered, "out", triggeredOutput, "in");
+        connectInt(graph, triggered, "out", deadAdder, "in");
+        connectInt(graph, other, "out", otherOutput, "in");
+
+        var plan = ExecutionPlan.compile(graph);
+        Assertions.assertEquals(List.of(triggered, triggeredOutput), plan.getLiveSteps(triggered.id()).stream().map(ExecutionPlan.Step::node).toList());
+        // the other start node would fail if computed without an input
+        new GraphExecutor(plan).<Double>execute(UUID.randomUUID(), triggered.id()).apply(4.).join();
+        Assertions.assertEquals(List.of(4), List.copyOf(triggeredOutputs));
+        Assertions.assertTrue(otherOutputs.isEmpty());
+        Assertions.assertNull(deadThread.get());
+    }
+
+    @Test
+    public void executionTraceRecordsEveryNode() {
+        var graph = new Graph();
+        var input = graph.addNode(new TriggerNumNodeType(new AtomicInteger(), new AtomicInteger()));
+        var adder = graph.addNode(ADD_NUMS_SLOWLY);
+        var output = graph.addNode(new CollectIntNodeType(new ConcurrentLinkedQueue<>(), new AtomicInteger()));
+        connectInt(graph, input, "out", adder, "in");
+        connectInt(graph, adder, "out", output, "in");
+        var graphExecutor = new GraphExecutor(ExecutionPlan.compile(graph));
+
+        var trace = new ExecutionTrace();
+        graphExecutor.<Double>execute(UUID.randomUUID(), input.id(), trace).apply(3.).join();
+        var nodeTraces = trace.getNodeTraces();
+        Assertions.assertEquals(List.of(input.id(), adder.id(), output.id()), nodeTraces.stream().map(NodeTrace::nodeId).toList());
+        var adderTrace = nodeTraces.get(1);
+        Assertions.assertNull(adderTrace.failure());
+        Assertions.assertTrue(adderTrace.computeTime().toMillis() >= 100);
+        Assertions.assertFalse(adderTrace.finishedAt().isBefore(adderTrace.startedAt()));
+        Assertions.assertEquals(Map.of("out", 1), adderTrace.outputSizes());
+
+        var failedTrace = new ExecutionTrace();
+        var failed = graphExecutor.<Double>execute(UUID.randomUUID(), input.id(), failedTrace).apply(-1.);
+        Assertions.assertThrows(Exception.class, failed::join);
+        var failedTraces = failedTrace.getNodeTraces();
+        Assertions.assertEquals(1, failedTraces.size());
+        Assertions.assertInstanceOf(IllegalArgumentException.class, failedTraces.get(0).failure());
+        Assertions.assertEquals(Map.of(), failedTraces.get(0).outputSizes());
+    }
+
     @SuppressWarnings("SameParameterValue")
     private static void connectInt(Graph graph, Node a, String connectorA, Node b, String connectorB) {
         var conn = NodeConnection.create(
@@ -355,6 +496,86 @@ public class GraphExecutorTest {
         }
     }
 
+    /**
+     * Either waits for a gate to open before passing its input through, or opens the gate.
+     */
+    private static final class GatedNumNodeType extends NodeType.Process {
+        private final CompletableFuture<DataBox<?>> gate;
+        private final boolean opens;
+
+        private GatedNumNodeType(CompletableFuture<DataBox<?>> gate, boolean opens) {
+            this.gate = gate;
+            this.opens = opens;
+        }
+
+        @Override
+        public Set<NodeConnector.Input<?>> inputs(UUID nodeId, Map<String, DataBox<?>> settings, Map<String, DataType<?>> inputTypes) {
+            return Set.of(
+                new NodeConnector.Input<>(nodeId, "in", DataType.NUMBER));
+        }
+
+        @Override
+        public Set<NodeConnector.Output<?>> outputs(UUID nodeId, Map<String, DataBox<?>> settings, Map<String, DataType<?>> inputTypes) {
+            return Set.of(
+                new NodeConnector.Output<>(nodeId, "out", DataType.NUMBER));
+        }
+
+        @Override
+        public Map<String, DataBox<?>> settings() {
+            return Map.of();
+        }
+
+        @Override
+        public Map<String, CompletableFuture<DataBox<?>>> compute(UUID userId, Map<String, DataBox<?>> inputs,
+                                                                  Map<String, DataBox<?>> settings, Map<String, DataType<?>> inputTypes) {
+            var in = inputs.get("in");
+            if (this.opens) {
+                this.gate.complete(in);
+                return Map.of("out", CompletableFuture.completedFuture(in));
+            }
+            return Map.of("out", this.gate.thenApply($ -> in));
+        }
+    }
+
+    private static final class ThreadRecordingNodeType extends NodeType.Process {
+        private final ExecutionMode mode;
+        private final AtomicReference<String> threadName;
+
+        private ThreadRecordingNodeType(ExecutionMode mode, AtomicReference<String> threadName) {
+            this.mode = mode;
+            this.threadName = threadName;
+        }
+
+        @Override
+        public ExecutionMode executionMode() {
+            return this.mode;
+        }
+
+        @Override
+        public Set<NodeConnector.Input<?>> inputs(UUID nodeId, Map<String, DataBox<?>> settings, Map<String, DataType<?>> inputTypes) {
+            return Set.of(
+                new NodeConnector.Input<>(nodeId, "in", DataType.NUMBER));
+        }
+
+        @Override
+        public Set<NodeConnector.Output<?>> outputs(UUID nodeId, Map<String, DataBox<?>> settings, Map<String, DataType<?>> inputTypes) {
+            return Set.of(
+                new NodeConnector.Output<>(nodeId, "out", DataType.NUMBER));
+        }
+
+        @Override
+        public Map<String, DataBox<?>> settings() {
+            return Map.of();
+        }
+
+        @Override
+        public Map<String, CompletableFuture<DataBox<?>>> compute(UUID userId, Map<String, DataBox<?>> inputs,
+                                                                  Map<String, DataBox<?>> settings, Map<String, DataType<?>> inputTypes) {
+            this.threadName.set(Thread.currentThread().getName());
+            return Map.of("out", CompletableFuture.completedFuture(inputs.get("in")));
+        }
+    }
+
     private static final class InputNumNodeType extends NodeType.Start<Object> {
         @Override
         public Set<NodeConnector.Output<?>> outputs(UUID nodeId, Map<String, DataBox<?>> settings, Map<String, DataType<?>> inputTypes) {
@@ -385,6 +606,72 @@ public class GraphExecutorTest {
         }
     }
 
+    private static final class TriggerNumNodeType extends NodeType.Start<Double> {
+        private final AtomicInteger inFlight;
+        private final AtomicInteger maxInFlight;
+
+        private TriggerNumNodeType(AtomicInteger inFlight, AtomicInteger maxInFlight) {
+            this.inFlight = inFlight;
+            this.maxInFlight = maxInFlight;
+        }
+
+        @Override
+        public Set<NodeConnector.Output<?>> outputs(UUID nodeId, Map<String, DataBox<?>> settings, Map<String, DataType<?>> inputTypes) {
+            return Set.of(
+                new NodeConnector.Output<>(nodeId, "out", DataType.NUMBER));
+        }
+
+        @Override
+        public Map<String, DataBox<?>> settings() {
+            return Map.of();
+        }
+
+        @Override
+        public Map<String, CompletableFuture<DataBox<?>>> compute(UUID userId, @Nullable Double input, Map<String, DataBox<?>> settings) {
+            if (input == null || input < 0) {
+                return Map.of("out", CompletableFuture.failedFuture(new IllegalArgumentException("Negative input")));
+            }
+            this.maxInFlight.accumulateAndGet(this.inFlight.incrementAndGet(), Math::max);
+            return Map.of("out", CompletableFuture.completedFuture(DataType.NUMBER.create(input)));
+        }
+
+        @Override
+        public void setupFlow(Flow flow, Consumer<@Nullable Double> function, Node node) {
+        }
+
+        @Override
+        public void teardownFlow(Flow flow, Node node) {
+        }
+    }
+
+    private static final class CollectIntNodeType extends NodeType.End {
+        private final Queue<Integer> results;
+        private final AtomicInteger inFlight;
+
+        private CollectIntNodeType(Queue<Integer> results, AtomicInteger inFlight) {
+            this.results = results;
+            this.inFlight = inFlight;
+        }
+
+        @Override
+        public Set<NodeConnector.Input<?>> inputs(UUID nodeId, Map<String, DataBox<?>> settings, Map<String, DataType<?>> inputTypes) {
+            return Set.of(
+                new NodeConnector.Input<>(nodeId, "in", DataType.NUMBER));
+        }
+
+        @Override
+        public Map<String, DataBox<?>> settings() {
+            return Map.of();
+        }
+
+        @Override
+        public CompletableFuture<Void> compute(UUID userId, Map<String, DataBox<?>> inputs, Map<String, DataBox<?>> settings) {
+            this.results.add(DataBox.get(inputs, "in", DataType.NUMBER).orElseThrow().intValue());
+            this.inFlight.decrementAndGet();
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
     private static final class OutputIntNodeType extends NodeType.End {
         public final AtomicInteger result;
 
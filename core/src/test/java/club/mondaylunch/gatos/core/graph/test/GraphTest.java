@@ -10,6 +10,7 @@ import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import org.jetbrains.annotations.Nullable;
 import org.junit.jupiter.api.Assertions;
@@ -418,6 +419,28 @@ public class GraphTest {
         Assertions.assertTrue(errors.stream().anyMatch(e -> e.message().toLowerCase(Locale.ROOT).contains("cycle")));
     }
 
+    @Test
+    public void cycleErrorsNameNodesOnCycle() {
+        var graph = new Graph();
+        var input = graph.addNode(START_TWO_OUTPUTS_NODE_TYPE);
+        var middle1 = graph.addNode(new TestNodeType(2, DataType.NUMBER));
+        var middle2 = graph.addNode(TEST_NUMBER_NODE_TYPE);
+        var output = graph.addNode(END_NODE_TYPE);
+        graph.addConnection(NodeConnection.create(input, "out1", middle1, "in1"));
+        graph.addConnection(NodeConnection.create(middle1, "out", middle2, "in"));
+        graph.addConnection(NodeConnection.create(middle2, "out", output, "in"));
+        graph.addConnection(NodeConnection.create(middle2, "out", middle1, "in2"));
+        var cycleNodes = graph.validate().stream()
+            .filter(e -> e.message().toLowerCase(Locale.ROOT).contains("cycle"))
+            .map(GraphValidityError::relatedNode)
+            .collect(Collectors.toSet());
+        Assertions.assertEquals(Set.of(middle1.id(), middle2.id()), cycleNodes);
+
+        graph.removeConnection(graph.getConnection(middle2.id(), "out", middle1.id(), "in2").orElseThrow());
+        graph.addConnection(NodeConnection.create(input, "out2", middle1, "in2"));
+        Assertions.assertTrue(graph.getExecutionOrder().isLeft());
+    }
+
     @Test
     public void graphWithTwoIntoOneIsValid() {
         var graph = new Graph();
@@ -10,7 +10,6 @@ import java.util.concurrent.CompletableFuture;
 import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.entities.Member;
 import net.dv8tion.jda.api.entities.Role;
-import net.dv8tion.jda.api.utils.concurrent.Task;
 
 import club.mondaylunch.gatos.core.Either;
 import club.mondaylunch.gatos.core.GatosUtils;
@@ -74,8 +73,10 @@ public class UsersWithRoleNodeType extends NodeType.Process {
         if (role == null) {
             throw new IllegalStateException("Role not found: " + roleId);
         }
-        Task<List<Member>> task = guild.findMembersWithRoles(role);
-        CompletableFuture<List<Member>> future = CompletableFuture.supplyAsync(task::get);
+        CompletableFuture<List<Member>> future = new CompletableFuture<>();
+        guild.findMembersWithRoles(role)
+            .onSuccess(future::complete)
+            .onError(future::completeExceptionally);
 
         return Map.of(
             "user_ids", future.thenApply(members -> members.stream().map(Member::getId).toList()).thenApply(DiscordDataTypes.USER_ID.listOf()::create)